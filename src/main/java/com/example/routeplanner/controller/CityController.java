@@ -1,10 +1,14 @@
 package com.example.routeplanner.controller;
 
 import com.example.routeplanner.city.CityMap;
-import com.example.routeplanner.dto.CityCellDTO;
+import com.example.routeplanner.dto.GridCellDTO;
+import com.example.routeplanner.service.CityLayoutCache;
+import com.example.routeplanner.service.CityLayoutEncoding;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -13,38 +17,54 @@ import java.util.List;
 public class CityController {
 
     private final CityMap cityMap;
+    private final CityLayoutCache cityLayoutCache;
 
-    public CityController(CityMap cityMap) {
+    public CityController(CityMap cityMap, CityLayoutCache cityLayoutCache) {
         this.cityMap = cityMap;
+        this.cityLayoutCache = cityLayoutCache;
     }
 
-    // Returns the city layout as a flat list of cells.
-
+    // Returns the city layout, by default as a flat list of cells; ?encoding=rle or ?encoding=bytes give the
+    // compact forms (see CityLayoutDTO). Served from ready bytes with an ETag, so If-None-Match gets a 304
+    // while the layout is unchanged; traffic and obstacle updates do not change it.
     @GetMapping("/layout")
-    public List<CityCellDTO> getCityLayout() {
-        var cellTypes = cityMap.getCellTypes();
-        int height = cityTypesHeight(cellTypes);
-        int width = cityTypesWidth(cellTypes);
-
-        List<CityCellDTO> cells = new ArrayList<>(width * height);
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                var type = cellTypes[y][x];
-                String typeName = type != null ? type.name() : "ROAD";
-                cells.add(new CityCellDTO(x, y, typeName));
-            }
+    public ResponseEntity<?> getCityLayout(@RequestParam(value = "encoding", required = false) String encoding) {
+        CityLayoutEncoding parsed;
+        try {
+            parsed = encoding == null ? CityLayoutEncoding.CELLS : CityLayoutEncoding.valueOf(encoding.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body("encoding must be cells, rle or bytes");
         }
 
-        return cells;
+        CityLayoutCache.Encoded layout = cityLayoutCache.get(parsed);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .eTag(layout.etag())
+                .body(layout.body());
     }
 
-    // helpers
-    private int cityTypesHeight(CityMap.CellType[][] cellTypes) {
-        return cellTypes.length;
-    }
+    // Update obstacles / traffic weights of city cells.
+    // Cached routes and courier routes through the changed cells are invalidated by the route cache.
+    @PostMapping("/cells")
+    public ResponseEntity<?> updateCells(@RequestBody List<GridCellDTO> cells) {
+        if (cells == null || cells.isEmpty()) {
+            return ResponseEntity.badRequest().body("At least one cell is required");
+        }
+
+        var grid = cityMap.getGrid();
+        for (GridCellDTO cell : cells) {
+            if (!grid.inBounds(cell.x(), cell.y())) {
+                return ResponseEntity.badRequest()
+                        .body("Cell out of bounds: (" + cell.x() + ", " + cell.y() + ")");
+            }
+        }
+
+        for (GridCellDTO cell : cells) {
+            grid.setObstacle(cell.x(), cell.y(), cell.obstacle());
+            grid.setWeight(cell.x(), cell.y(), cell.weight());
+        }
 
-    private int cityTypesWidth(CityMap.CellType[][] cellTypes) {
-        return cellTypes.length > 0 ? cellTypes[0].length : 0;
+        return ResponseEntity.ok().build();
     }
 }
@@ -0,0 +1,40 @@
+package com.example.routeplanner.controller;
+
+import com.example.routeplanner.dto.DispatchStatsDTO;
+import com.example.routeplanner.dto.OptimizerRunDTO;
+import com.example.routeplanner.dto.OptimizerStatsDTO;
+import com.example.routeplanner.service.DispatchScheduler;
+import com.example.routeplanner.service.FleetOptimizer;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/dispatch")
+@CrossOrigin(origins = "*")
+public class DispatchController {
+
+    private final DispatchScheduler dispatchScheduler;
+    private final FleetOptimizer fleetOptimizer;
+
+    public DispatchController(DispatchScheduler dispatchScheduler, FleetOptimizer fleetOptimizer) {
+        this.dispatchScheduler = dispatchScheduler;
+        this.fleetOptimizer = fleetOptimizer;
+    }
+
+    // Queue depth, batch sizes and order-to-assignment latency of the async dispatcher
+    @GetMapping("/stats")
+    public DispatchStatsDTO stats() {
+        return dispatchScheduler.stats();
+    }
+
+    // Run the fleet optimizer once now, e.g. when the background job is off
+    @PostMapping("/optimize")
+    public OptimizerRunDTO optimize() {
+        return fleetOptimizer.runOnce();
+    }
+
+    // Distance saved and CPU time of the fleet optimizer, in total and for its last run
+    @GetMapping("/optimizer")
+    public OptimizerStatsDTO optimizerStats() {
+        return fleetOptimizer.stats();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.routeplanner.controller;
+
+import com.example.routeplanner.dto.ChangeFeedDTO;
+import com.example.routeplanner.service.ChangeFeed;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/events")
+@CrossOrigin(origins = "*")
+public class EventController {
+
+    private final ChangeFeed changeFeed;
+
+    public EventController(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    // Server-sent events for every order change and courier move after ?since (or the Last-Event-ID an
+    // EventSource sends when it reconnects). Without either the stream opens with a RESET event: fetch
+    // /api/orders and /api/couriers, then apply the events that follow it.
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestParam(value = "since", required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        try {
+            return ResponseEntity.ok(changeFeed.subscribe(since != null ? since : lastEventId));
+        } catch (IllegalStateException ex) {
+            // too many streams open; the stream's content type leaves no room for a message
+            return ResponseEntity.status(503).header("Retry-After", "5").build();
+        }
+    }
+
+    // Sequence numbers in the buffer, open streams and how many streams had to start over
+    @GetMapping("/stats")
+    public ChangeFeedDTO stats() {
+        return changeFeed.stats();
+    }
+}
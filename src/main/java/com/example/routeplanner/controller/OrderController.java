@@ -1,26 +1,49 @@
 package com.example.routeplanner.controller;
 
+import com.example.routeplanner.dto.BatchAssignmentDTO;
 import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.dto.OrderArchiveDTO;
 import com.example.routeplanner.dto.OrderDTO;
+import com.example.routeplanner.dto.OrderImportDTO;
+import com.example.routeplanner.dto.OrderPageDTO;
+import com.example.routeplanner.model.OrderStatus;
 import com.example.routeplanner.service.OrderService;
 import com.example.routeplanner.dto.OrderAssignmentDTO;
+import com.example.routeplanner.service.BatchDispatchService;
 import com.example.routeplanner.service.DispatchService;
+import com.example.routeplanner.service.OrderImportFormat;
+import com.example.routeplanner.service.OrderImportService;
+import com.example.routeplanner.service.ZoneDispatchService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.InputStream;
 
 @RestController
 @RequestMapping("/api/orders")
 @CrossOrigin(origins = "*")
 public class OrderController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final OrderService orderService;
     private final DispatchService dispatchService;
+    private final BatchDispatchService batchDispatchService;
+    private final ZoneDispatchService zoneDispatchService;
+    private final OrderImportService orderImportService;
 
-    public OrderController(OrderService orderService, DispatchService dispatchService) {
+    public OrderController(OrderService orderService,
+                           DispatchService dispatchService,
+                           BatchDispatchService batchDispatchService,
+                           ZoneDispatchService zoneDispatchService,
+                           OrderImportService orderImportService) {
         this.orderService = orderService;
         this.dispatchService = dispatchService;
+        this.batchDispatchService = batchDispatchService;
+        this.zoneDispatchService = zoneDispatchService;
+        this.orderImportService = orderImportService;
     }
 
     // Create a new order
@@ -31,19 +54,77 @@ public class OrderController {
             return ResponseEntity.ok(dto);
         } catch (IllegalArgumentException ex) {
             return ResponseEntity.badRequest().body(ex.getMessage());
+        } catch (IllegalStateException ex) {
+            // dispatch queue full: ask the client to back off
+            return ResponseEntity.status(503).header("Retry-After", "1").body(ex.getMessage());
+        } catch (Exception ex) {
+            return ResponseEntity.internalServerError()
+                    .body("Unexpected error: " + ex.getMessage());
+        }
+    }
+
+    // Create many orders from an NDJSON or CSV upload, read as it streams in. The format comes from
+    // ?format=ndjson|csv, else from the Content-Type (text/csv means CSV, anything else NDJSON).
+    // Bad lines do not stop the import; they are listed in the summary.
+    @PostMapping("/import")
+    public ResponseEntity<?> importOrders(@RequestParam(value = "format", required = false) String format,
+                                          @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                          InputStream body) {
+        OrderImportFormat parsed;
+        if (format != null) {
+            try {
+                parsed = OrderImportFormat.valueOf(format.toUpperCase());
+            } catch (IllegalArgumentException ex) {
+                return ResponseEntity.badRequest().body("format must be ndjson or csv");
+            }
+        } else {
+            parsed = contentType != null && contentType.toLowerCase().contains("csv")
+                    ? OrderImportFormat.CSV
+                    : OrderImportFormat.NDJSON;
+        }
+        try {
+            OrderImportDTO summary = orderImportService.importOrders(body, parsed);
+            return ResponseEntity.ok(summary);
         } catch (Exception ex) {
             return ResponseEntity.internalServerError()
                     .body("Unexpected error: " + ex.getMessage());
         }
     }
 
-    // List all orders
+    // List orders, optionally only those with the given status, courier and/or restaurant.
+    // With limit and/or after (an order id) it returns one page and the cursor for the next one;
+    // without either it returns every matching order as a plain list, as it always has.
     @GetMapping
-    public List<OrderDTO> list() {
-        return orderService.listOrders();
+    public ResponseEntity<?> list(@RequestParam(value = "status", required = false) String status,
+                                  @RequestParam(value = "courierId", required = false) String courierId,
+                                  @RequestParam(value = "restaurantId", required = false) String restaurantId,
+                                  @RequestParam(value = "after", required = false) Long after,
+                                  @RequestParam(value = "limit", required = false) Integer limit) {
+        OrderStatus parsed;
+        try {
+            parsed = status == null ? null : OrderStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body("Unknown status: " + status);
+        }
+        try {
+            if (after == null && limit == null) {
+                return ResponseEntity.ok(orderService.listOrders(parsed, courierId, restaurantId));
+            }
+            OrderPageDTO page = orderService.listOrders(parsed, courierId, restaurantId, after,
+                    limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE));
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
+    // How many delivered orders were moved to the archive and what they take up
+    @GetMapping("/archive")
+    public OrderArchiveDTO archive() {
+        return orderService.archiveStats();
     }
 
-    // Get one order by ID
+    // Get one order by ID, archived ones included
     @GetMapping("/{id}")
     public ResponseEntity<?> getOne(@PathVariable("id") long id) {
         try {
@@ -76,6 +157,32 @@ public class OrderController {
         }
     }
 
+    // Assign all NEW orders at once with a min-cost courier/order matching
+    @PostMapping("/assign-batch")
+    public ResponseEntity<?> assignBatch() {
+        try {
+            BatchAssignmentDTO result = batchDispatchService.assignNewOrders();
+            return ResponseEntity.ok(result);
+        } catch (IllegalStateException ex) {
+            // e.g. no couriers available
+            return ResponseEntity.status(409).body(ex.getMessage());
+        } catch (Exception ex) {
+            return ResponseEntity.internalServerError()
+                    .body("Unexpected error: " + ex.getMessage());
+        }
+    }
 
-
+    // Like assign-batch, but each dispatch zone is matched on its own worker, with handoffs across zones
+    @PostMapping("/assign-zoned")
+    public ResponseEntity<?> assignZoned() {
+        try {
+            BatchAssignmentDTO result = zoneDispatchService.assignNewOrders();
+            return ResponseEntity.ok(result);
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(409).body(ex.getMessage());
+        } catch (Exception ex) {
+            return ResponseEntity.internalServerError()
+                    .body("Unexpected error: " + ex.getMessage());
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package com.example.routeplanner.controller;
+
+import com.example.routeplanner.dto.WriteAheadLogDTO;
+import com.example.routeplanner.service.WriteAheadLog;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/persistence")
+@CrossOrigin(origins = "*")
+public class PersistenceController {
+
+    private final WriteAheadLog writeAheadLog;
+
+    public PersistenceController(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    // Records written, fsyncs, snapshots and what the last start recovered
+    @GetMapping("/wal")
+    public WriteAheadLogDTO wal() {
+        return writeAheadLog.stats();
+    }
+
+    // Snapshot the state now so the log before it can be dropped
+    @PostMapping("/wal/snapshot")
+    public ResponseEntity<?> snapshot() {
+        try {
+            writeAheadLog.snapshot();
+            return ResponseEntity.ok(writeAheadLog.stats());
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(409).body(ex.getMessage());
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.example.routeplanner.city.CityMap;
 import com.example.routeplanner.dto.RouteFromRestaurantRequest;
 import com.example.routeplanner.dto.RouteRequest;
 import com.example.routeplanner.dto.RouteResponse;
+import com.example.routeplanner.service.DistanceFieldCache;
 import com.example.routeplanner.service.RouteService;
 import com.example.routeplanner.strategy.DeliveryStrategyRegistry;
 import org.springframework.http.ResponseEntity;
@@ -22,12 +23,15 @@ public class RouteController {
     private final RouteService routeService;
     private final CityMap cityMap;
     private final DeliveryStrategyRegistry deliveryStrategyRegistry;
+    private final DistanceFieldCache distanceFieldCache;
 
 
-    public RouteController(RouteService routeService, CityMap cityMap, DeliveryStrategyRegistry deliveryStrategyRegistry) {
+    public RouteController(RouteService routeService, CityMap cityMap, DeliveryStrategyRegistry deliveryStrategyRegistry,
+                           DistanceFieldCache distanceFieldCache) {
         this.routeService = routeService;
         this.cityMap = cityMap;
         this.deliveryStrategyRegistry = deliveryStrategyRegistry;
+        this.distanceFieldCache = distanceFieldCache;
     }
 
     @PostMapping("/route")
@@ -104,8 +108,24 @@ public class RouteController {
             int currentX = restaurant.x();
             int currentY = restaurant.y();
 
-            List<DeliveryStopDTO> orderedStops =
-                    deliveryStrategy.orderStops(req.stops(), currentX, currentY);
+            for (DeliveryStopDTO stop : req.stops()) {
+                if (!grid.inBounds(stop.x(), stop.y())) {
+                    return ResponseEntity.badRequest()
+                            .body("Stop out of bounds: (" + stop.x() + ", " + stop.y() + ")");
+                }
+            }
+
+            // Rank stops by road cost on the city grid
+            var costs = distanceFieldCache.costOracle();
+            int[] order = deliveryStrategy.orderStops(req.stops(), null, currentX, currentY, costs);
+            Double improvement = deliveryStrategyRegistry.improvementOverNearestNeighbor(
+                    deliveryStrategy, req.stops(), null, currentX, currentY, costs, order
+            );
+
+            List<DeliveryStopDTO> orderedStops = new java.util.ArrayList<>(order.length);
+            for (int index : order) {
+                orderedStops.add(req.stops().get(index));
+            }
 
             List<PointDTO> fullPath = new java.util.ArrayList<>();
             double totalDistance = 0.0;
@@ -118,11 +138,6 @@ public class RouteController {
                 int targetX = stop.x();
                 int targetY = stop.y();
 
-                if (!grid.inBounds(targetX, targetY)) {
-                    return ResponseEntity.badRequest()
-                            .body("Stop out of bounds: (" + targetX + ", " + targetY + ")");
-                }
-
                 var legResponse = routeService.computeRouteOnGrid(
                         grid,
                         currentX,
@@ -162,7 +177,8 @@ public class RouteController {
                     fullPath,
                     totalDistance,
                     totalVisitedNodes,
-                    totalTimeMs
+                    totalTimeMs,
+                    improvement
             );
 
             return ResponseEntity.ok(response);
@@ -1,6 +1,9 @@
 package com.example.routeplanner.controller;
 
-import com.example.routeplanner.service.CourierService;
+import com.example.routeplanner.dto.SimulationClockDTO;
+import com.example.routeplanner.service.FastForwardMode;
+import com.example.routeplanner.service.SimulationClock;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -8,14 +11,61 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin(origins = "*")
 public class SimulationController {
 
-    private final CourierService courierService;
+    private final SimulationClock simulationClock;
 
-    public SimulationController(CourierService courierService) {
-        this.courierService = courierService;
+    public SimulationController(SimulationClock simulationClock) {
+        this.simulationClock = simulationClock;
     }
 
     @PostMapping("/step")
     public void step() {
-        courierService.stepAllCouriers();
+        simulationClock.tick();
+    }
+
+    // Tick rate, achieved ticks per second and per-tick latency of the server-side clock
+    @GetMapping("/clock")
+    public SimulationClockDTO clock() {
+        return simulationClock.stats();
+    }
+
+    @PostMapping("/clock/resume")
+    public SimulationClockDTO resume() {
+        simulationClock.resume();
+        return simulationClock.stats();
+    }
+
+    @PostMapping("/clock/pause")
+    public SimulationClockDTO pause() {
+        simulationClock.pause();
+        return simulationClock.stats();
+    }
+
+    @PostMapping("/clock/multiplier")
+    public ResponseEntity<?> multiplier(@RequestParam("value") double value) {
+        try {
+            simulationClock.setMultiplier(value);
+            return ResponseEntity.ok(simulationClock.stats());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
+    // Run N ticks unthrottled, tick by tick or event to event, and report how fast they went
+    @PostMapping("/clock/fast-forward")
+    public ResponseEntity<?> fastForward(@RequestParam("ticks") int ticks,
+                                         @RequestParam(value = "mode", defaultValue = "STEP") String mode) {
+        try {
+            return ResponseEntity.ok(simulationClock.fastForward(ticks, parseMode(mode)));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
+    private static FastForwardMode parseMode(String mode) {
+        try {
+            return FastForwardMode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("mode must be STEP or EVENTS");
+        }
     }
 }
@@ -0,0 +1,12 @@
+package com.example.routeplanner.dto;
+
+import java.util.List;
+
+public record BatchAssignmentDTO(
+        List<OrderAssignmentDTO> assignments,
+        List<Long> unassignedOrderIds,
+        double totalAddedCost,     // extra road cost added to couriers' routes
+        int rounds,
+        long timeMs
+) {
+}
@@ -0,0 +1,13 @@
+package com.example.routeplanner.dto;
+
+// One entry of the change feed. type is ORDER (order holds the order as it is after the change; a new order
+// comes with status NEW), COURIER (courier holds where it moved to) or RESET: the stream could not continue
+// from where the client was, so it should fetch the full state again and apply the events after sequence.
+// Events carry absolute state, so applying one twice does no harm.
+public record ChangeEventDTO(
+        long sequence,
+        String type,
+        OrderDTO order,
+        CourierPositionDTO courier
+) {
+}
@@ -0,0 +1,12 @@
+package com.example.routeplanner.dto;
+
+// State of the change feed: the range of sequence numbers still in the buffer, open streams and how often
+// a stream fell so far behind that it had to be told to start over
+public record ChangeFeedDTO(
+        long latestSequence,
+        long oldestSequence,
+        int capacity,
+        int subscribers,
+        long resets
+) {
+}
@@ -0,0 +1,18 @@
+package com.example.routeplanner.dto;
+
+import java.util.List;
+
+// The city layout in a compact form. Cells are numbered into types (0 is types[0], ...), row by row from y = 0.
+// With encoding "rle" each entry of rows is one row as type, count, type, count, ...;
+// with "bytes" cells is the base64 of one byte per cell. The other field is null.
+// version is a checksum of the cell types, the same one the layout's ETag carries.
+public record CityLayoutDTO(
+        int width,
+        int height,
+        String version,
+        List<String> types,
+        String encoding,
+        List<int[]> rows,
+        String cells
+) {
+}
@@ -0,0 +1,4 @@
+package com.example.routeplanner.dto;
+
+public record CourierPositionDTO(String id, int x, int y) {
+}
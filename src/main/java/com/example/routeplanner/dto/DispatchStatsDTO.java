@@ -0,0 +1,12 @@
+package com.example.routeplanner.dto;
+
+public record DispatchStatsDTO(
+        boolean asyncEnabled,
+        int queueDepth,
+        int queueCapacity,
+        long rejectedOrders,
+        HistogramDTO queueDepthAtDrain,
+        HistogramDTO batchSize,
+        HistogramDTO dispatchLatencyMicros   // order created -> assigned
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.routeplanner.dto;
+
+public record FastForwardDTO(
+        int ticks,
+        String mode,
+        long events,
+        double elapsedMs,
+        double ticksPerSecond
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.routeplanner.dto;
+
+public record HistogramDTO(
+        long count,
+        double mean,
+        long p50,
+        long p95,
+        long p99,
+        long max
+) {
+}
@@ -6,6 +6,10 @@ public record MultiStopRouteResponse(
         List<PointDTO> path,
         double totalDistance,
         int visitedNodes,
-        long timeMs
+        long timeMs,
+        Double improvementVsNearestNeighbor // distance saved compared to NEAREST_NEIGHBOR, null if not compared
 ) {
+    public MultiStopRouteResponse(List<PointDTO> path, double totalDistance, int visitedNodes, long timeMs) {
+        this(path, totalDistance, visitedNodes, timeMs, null);
+    }
 }
@@ -0,0 +1,12 @@
+package com.example.routeplanner.dto;
+
+public record OptimizerRunDTO(
+        int rounds,
+        long movesEvaluated,
+        int movesApplied,
+        int movesStale,         // better moves dropped because a plan changed before they could be applied
+        double distanceSaved,   // road cost removed from the couriers' plans
+        double cpuTimeMs,       // summed over every thread that worked on the run
+        double wallTimeMs
+) {
+}
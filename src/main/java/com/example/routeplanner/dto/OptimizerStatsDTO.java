@@ -0,0 +1,12 @@
+package com.example.routeplanner.dto;
+
+public record OptimizerStatsDTO(
+        boolean scheduled,
+        long intervalMs,
+        long budgetMs,
+        long runs,
+        double totalDistanceSaved,
+        double totalCpuTimeMs,
+        OptimizerRunDTO lastRun
+) {
+}
@@ -0,0 +1,11 @@
+package com.example.routeplanner.dto;
+
+// Size of the delivered-order archive; storage is "heap" or the archive file
+public record OrderArchiveDTO(
+        long archivedOrders,
+        long recordBytes,
+        long indexBytes,
+        String storage,
+        int keepDelivered
+) {
+}
@@ -0,0 +1,18 @@
+package com.example.routeplanner.dto;
+
+import java.util.List;
+
+// Summary of a bulk order import. Only the first errors are listed (errorsTruncated says when some were left
+// out); rejected counts all of them. firstOrderId and lastOrderId are null when nothing was imported.
+public record OrderImportDTO(
+        long lines,
+        long imported,
+        long rejected,
+        List<OrderImportErrorDTO> errors,
+        boolean errorsTruncated,
+        Long firstOrderId,
+        Long lastOrderId,
+        long elapsedMs,
+        long ordersPerSecond
+) {
+}
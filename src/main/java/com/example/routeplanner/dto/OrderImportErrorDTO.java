@@ -0,0 +1,8 @@
+package com.example.routeplanner.dto;
+
+// One rejected line of a bulk order import; line numbers start at 1
+public record OrderImportErrorDTO(
+        long line,
+        String message
+) {
+}
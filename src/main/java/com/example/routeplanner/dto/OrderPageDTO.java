@@ -0,0 +1,10 @@
+package com.example.routeplanner.dto;
+
+import java.util.List;
+
+// One page of orders; pass nextCursor as "after" to get the next page, null on the last page
+public record OrderPageDTO(
+        List<OrderDTO> orders,
+        Long nextCursor
+) {
+}
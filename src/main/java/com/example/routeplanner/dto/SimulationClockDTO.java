@@ -0,0 +1,11 @@
+package com.example.routeplanner.dto;
+
+public record SimulationClockDTO(
+        boolean running,
+        double tickRate,                // ticks per second at multiplier 1
+        double multiplier,
+        long ticks,                     // all ticks so far, including manual steps and fast-forward
+        double achievedTicksPerSecond,  // since the clock was last resumed
+        HistogramDTO tickLatencyMicros
+) {
+}
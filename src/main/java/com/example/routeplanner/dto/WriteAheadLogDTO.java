@@ -0,0 +1,20 @@
+package com.example.routeplanner.dto;
+
+// State of the write-ahead log: records appended and made durable, group commit efficiency, snapshots and
+// what the last start recovered
+public record WriteAheadLogDTO(
+        boolean enabled,
+        String directory,
+        long generation,
+        long recordsAppended,
+        long recordsDurable,
+        long bytesWritten,
+        long fsyncs,
+        double recordsPerFsync,
+        long snapshots,
+        double lastSnapshotMs,
+        long recoveredRecords,
+        double recoveryMs,
+        boolean failed
+) {
+}
@@ -0,0 +1,85 @@
+package com.example.routeplanner.metrics;
+
+import com.example.routeplanner.dto.HistogramDTO;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free histogram of non-negative long values (latencies, sizes).
+// Each power of two is split into 4 buckets, so a reported percentile is the upper bound of its bucket
+// and at most ~25% above the true value; recording is a couple of atomic adds.
+public class Histogram {
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = SUB_BUCKETS + 62 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucketOf(v));
+        count.increment();
+        sum.add(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public HistogramDTO snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long maxValue = max.get();
+        if (total == 0) {
+            return new HistogramDTO(0, 0.0, 0, 0, 0, 0);
+        }
+        return new HistogramDTO(
+                total,
+                (double) sum.sum() / count.sum(),
+                percentile(snapshot, total, 0.50, maxValue),
+                percentile(snapshot, total, 0.95, maxValue),
+                percentile(snapshot, total, 0.99, maxValue),
+                maxValue
+        );
+    }
+
+    private static long percentile(long[] snapshot, long total, double p, long maxValue) {
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    // Values 0..3 get a bucket each; above that, bucket = 4 per power of two plus the next two bits
+    static int bucketOf(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exp - 2)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exp - 2) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exp - 2)) - 1;
+    }
+}
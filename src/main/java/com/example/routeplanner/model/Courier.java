@@ -1,7 +1,11 @@
 package com.example.routeplanner.model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Courier {
 
@@ -9,11 +13,18 @@ public class Courier {
     private final String name;
 
     // Current position on the grid
-    private int currentX;
-    private int currentY;
+    private volatile int currentX;
+    private volatile int currentY;
 
-    // IDs of assigned orders
-    private final List<Long> assignedOrderIds = new ArrayList<>();
+    // IDs of assigned orders; copy-on-write so DTOs and route previews can read it without the lock
+    private final List<Long> assignedOrderIds = new CopyOnWriteArrayList<>();
+
+    // Guards the plan (route, stops, position) while it is read for scoring or changed.
+    // Each courier has its own lock, so dispatchers working on different couriers never wait on each other.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Bumped on every plan or position change, so a dispatcher can tell if its scoring went stale
+    private volatile long planVersion;
 
     public Courier(String id, String name, int currentX, int currentY) {
         this.id = id;
@@ -54,14 +65,130 @@ public class Courier {
         assignedOrderIds.add(orderId);
     }
 
-    private List<int[]> activeRoute = new ArrayList<>();
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+    public long getPlanVersion() {
+        return planVersion;
+    }
+
+    // Called under the lock whenever the courier moves or its plan changes
+    public void bumpPlanVersion() {
+        planVersion++;
+    }
+
+    // Route cells still to drive, packed as x, y pairs; the courier is about to move onto the pair at routeCursor.
+    // A step only moves the cursor, so it costs O(1) and allocates nothing.
+    private int[] route = new int[0];
+    private int routeCursor;
+    // Running sum of the cost of entering each route cell: routeCosts[i] is what the first i cells cost
+    private double[] routeCosts = new double[1];
+
+    // Pickups and drop-offs still ahead, in the order the active route visits them
+    private List<PlannedStop> plannedStops = new ArrayList<>();
 
+    // Read-only snapshot of the cells still ahead; later steps or plan changes do not show up in it
     public List<int[]> getActiveRoute() {
-        return activeRoute;
+        return new RouteView(route, routeCursor / 2);
+    }
+
+    public int getRemainingRouteLength() {
+        return (route.length - routeCursor) / 2;
+    }
+
+    // Road cost of the next `cells` route cells, as they cost when the plan was set. O(1).
+    public double getRouteCostAhead(int cells) {
+        int from = routeCursor / 2;
+        int to = Math.min(from + Math.max(0, cells), routeCosts.length - 1);
+        return routeCosts[to] - routeCosts[from];
+    }
+
+    // Move onto the next route cell; false if the route is already finished. Caller holds the lock.
+    public boolean stepAlongRoute() {
+        if (routeCursor >= route.length) {
+            return false;
+        }
+        currentX = route[routeCursor];
+        currentY = route[routeCursor + 1];
+        routeCursor += 2;
+        return true;
     }
 
+    // Move cells route cells ahead in one go (at most to the end of the route); returns how many it moved.
+    // Caller holds the lock.
+    public int jumpAlongRoute(int cells) {
+        int moved = Math.min(cells, getRemainingRouteLength());
+        if (moved <= 0) {
+            return 0;
+        }
+        routeCursor += 2 * moved;
+        currentX = route[routeCursor - 2];
+        currentY = route[routeCursor - 1];
+        return moved;
+    }
+
+    // Set a route without planned stops (the orders are all delivered when it ends)
     public void setActiveRoute(List<int[]> activeRoute) {
-        this.activeRoute = activeRoute != null ? new ArrayList<>(activeRoute) : new ArrayList<>();
+        this.route = pack(activeRoute);
+        this.routeCosts = new double[route.length / 2 + 1]; // nothing scores a route without stops
+        this.routeCursor = 0;
+        this.plannedStops = new ArrayList<>();
+        planVersion++;
+    }
+
+    public List<PlannedStop> getPlannedStops() {
+        return plannedStops;
+    }
+
+    // Set a route together with the cost of entering each of its cells and the stops it visits;
+    // the stop leg lengths must add up to the route length
+    public void setPlan(List<int[]> activeRoute, double[] cellCosts, List<PlannedStop> plannedStops) {
+        if (cellCosts.length != activeRoute.size()) {
+            throw new IllegalArgumentException("Need one cost per route cell");
+        }
+        this.route = pack(activeRoute);
+        this.routeCosts = new double[cellCosts.length + 1];
+        for (int i = 0; i < cellCosts.length; i++) {
+            routeCosts[i + 1] = routeCosts[i] + cellCosts[i];
+        }
+        this.routeCursor = 0;
+        this.plannedStops = new ArrayList<>(plannedStops);
+        planVersion++;
     }
 
+    private static int[] pack(List<int[]> cells) {
+        if (cells == null) {
+            return new int[0];
+        }
+        int[] packed = new int[cells.size() * 2];
+        for (int i = 0; i < cells.size(); i++) {
+            packed[2 * i] = cells.get(i)[0];
+            packed[2 * i + 1] = cells.get(i)[1];
+        }
+        return packed;
+    }
+
+    // The packed array is never written after it is set, so a view of it stays valid without the lock
+    private static final class RouteView extends AbstractList<int[]> {
+        private final int[] packed;
+        private final int from;
+
+        RouteView(int[] packed, int from) {
+            this.packed = packed;
+            this.from = from;
+        }
+
+        @Override
+        public int[] get(int index) {
+            Objects.checkIndex(index, size());
+            int at = 2 * (from + index);
+            return new int[]{packed[at], packed[at + 1]};
+        }
+
+        @Override
+        public int size() {
+            return packed.length / 2 - from;
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package com.example.routeplanner.model;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Grid {
 
@@ -8,6 +10,10 @@ public class Grid {
     private final double[][] weights;   // cost to enter a cell
     private final boolean[][] obstacles; // true = blocked
 
+    // Listeners that want to know when a cell's cost changes (e.g. route caches)
+    private final List<GridChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long version = 0;
+
     public Grid(int width, int height) {
         this.width = width;
         this.height = height;
@@ -48,13 +54,17 @@ public class Grid {
     public void setWeight(int x, int y, double weight) {
         if (!inBounds(x, y)) return;
         if (weight <= 0) weight = 1.0; // keep it sane
+        double oldCost = enterCost(x, y);
         weights[y][x] = weight;
+        fireIfChanged(x, y, oldCost);
     }
 
     // Mark a cell as obstacle (true) or walkable (false). Ignore the calls that are out of bounds.
     public void setObstacle(int x, int y, boolean isObstacle) {
         if (!inBounds(x, y)) return;
+        double oldCost = enterCost(x, y);
         obstacles[y][x] = isObstacle;
+        fireIfChanged(x, y, oldCost);
     }
 
     // checks if a cell is blocked
@@ -62,4 +72,31 @@ public class Grid {
         if (!inBounds(x, y)) return true; // treat out-of-bounds as blocked
         return obstacles[y][x];
     }
+
+    // Incremented on every effective cell change, so callers can tell if the grid changed
+    public long getVersion() {
+        return version;
+    }
+
+    public void addChangeListener(GridChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeChangeListener(GridChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Cost of entering a cell, obstacles count as infinite
+    private double enterCost(int x, int y) {
+        return obstacles[y][x] ? Double.POSITIVE_INFINITY : weights[y][x];
+    }
+
+    private void fireIfChanged(int x, int y, double oldCost) {
+        double newCost = enterCost(x, y);
+        if (oldCost == newCost) return;
+        version++;
+        for (GridChangeListener listener : listeners) {
+            listener.onCellChanged(x, y, oldCost, newCost);
+        }
+    }
 }
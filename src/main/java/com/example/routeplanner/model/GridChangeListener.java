@@ -0,0 +1,8 @@
+package com.example.routeplanner.model;
+
+// Notified when the cost of entering a grid cell changes.
+// Costs are the cell weight, or +infinity when the cell is an obstacle.
+public interface GridChangeListener {
+
+    void onCellChanged(int x, int y, double oldCost, double newCost);
+}
@@ -1,5 +1,9 @@
 package com.example.routeplanner.model;
 
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
 public class Order {
 
     private final long id;
@@ -7,8 +11,26 @@ public class Order {
     private final int x;
     private final int y;
     private final String label;     //"Customer 1", "Order 11"
-    private OrderStatus status;
-    private String assignedCourierId; // null if not assigned
+
+    // Status and courier change together, so concurrent dispatchers can claim an order with one CAS.
+    // Every change numbers itself, so its listener call can wait for the ones before it.
+    private record State(OrderStatus status, String assignedCourierId, long sequence) {}
+
+    private final AtomicReference<State> state = new AtomicReference<>(new State(OrderStatus.NEW, null, 0));
+
+    // Told about every status or courier change, e.g. to keep the order indexes current. Calls for one order
+    // come one at a time and in the order the changes happened, but the order may have changed again since,
+    // so the new state is passed in rather than read from the order.
+    public interface ChangeListener {
+        void changed(Order order, OrderStatus oldStatus, String oldCourierId, OrderStatus status, String courierId);
+    }
+
+    private volatile ChangeListener changeListener;
+
+    // Sequence of the last change the listener was told about, and whether a listener call (or an exclusive
+    // action) is running. Guarded by this, which is only held to check and update them.
+    private long told;
+    private boolean busy;
 
     public Order(long id, String restaurantId, int x, int y, String label) {
         this.id = id;
@@ -16,8 +38,10 @@ public class Order {
         this.x = x;
         this.y = y;
         this.label = label;
-        this.status = OrderStatus.NEW;
-        this.assignedCourierId = null;
+    }
+
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
     }
 
     public long getId() {
@@ -41,18 +65,118 @@ public class Order {
     }
 
     public OrderStatus getStatus() {
-        return status;
+        return state.get().status();
     }
 
     public void setStatus(OrderStatus status) {
-        this.status = status;
+        State current = state.get();
+        while (!transition(current, status, current.assignedCourierId())) {
+            current = state.get();
+        }
     }
 
     public String getAssignedCourierId() {
-        return assignedCourierId;
+        return state.get().assignedCourierId();
     }
 
     public void setAssignedCourierId(String assignedCourierId) {
-        this.assignedCourierId = assignedCourierId;
+        State current = state.get();
+        while (!transition(current, current.status(), assignedCourierId)) {
+            current = state.get();
+        }
+    }
+
+    // Move from expected to next status; false if another thread changed the status first
+    public boolean compareAndSetStatus(OrderStatus expected, OrderStatus next) {
+        State current = state.get();
+        while (current.status() == expected) {
+            if (transition(current, next, current.assignedCourierId())) {
+                return true;
+            }
+            current = state.get();
+        }
+        return false;
+    }
+
+    // NEW -> ASSIGNED to the given courier; false if the order was no longer NEW
+    public boolean tryAssign(String courierId) {
+        State current = state.get();
+        while (current.status() == OrderStatus.NEW) {
+            if (transition(current, OrderStatus.ASSIGNED, courierId)) {
+                return true;
+            }
+            current = state.get();
+        }
+        return false;
+    }
+
+    // Undo tryAssign, e.g. when the route could not be installed
+    public boolean unassign(String courierId) {
+        State current = state.get();
+        if (current.status() != OrderStatus.ASSIGNED || !courierId.equals(current.assignedCourierId())) {
+            return false;
+        }
+        return transition(current, OrderStatus.NEW, null);
+    }
+
+    // ASSIGNED to one courier -> ASSIGNED to another, e.g. when the fleet optimizer moves the order
+    public boolean reassign(String fromCourierId, String toCourierId) {
+        State current = state.get();
+        if (current.status() != OrderStatus.ASSIGNED || !fromCourierId.equals(current.assignedCourierId())) {
+            return false;
+        }
+        return transition(current, OrderStatus.ASSIGNED, toCourierId);
+    }
+
+    // Run the action with no listener call running; changes made meanwhile are told after it returns.
+    // E.g. to tell listeners about a new order before any change to it, or to move it out of the store.
+    public <T> T exclusively(Supplier<T> action) {
+        awaitTold(() -> state.get().sequence());
+        try {
+            return action.get();
+        } finally {
+            release(told);
+        }
+    }
+
+    // Every change goes through here: one CAS, then the listener, called without holding any lock once the
+    // changes before it were told. The caller only waits if another thread changed the same order just before.
+    private boolean transition(State expected, OrderStatus status, String courierId) {
+        State next = new State(status, courierId, expected.sequence() + 1);
+        if (!state.compareAndSet(expected, next)) {
+            return false;
+        }
+        awaitTold(expected::sequence);
+        try {
+            ChangeListener listener = changeListener;
+            if (listener != null) {
+                listener.changed(this, expected.status(), expected.assignedCourierId(), status, courierId);
+            }
+        } finally {
+            release(next.sequence());
+        }
+        return true;
+    }
+
+    // Wait until every change up to the given sequence was told and nothing else runs, then take the turn
+    private synchronized void awaitTold(LongSupplier sequence) {
+        boolean interrupted = false;
+        while (busy || told != sequence.getAsLong()) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        busy = true;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void release(long toldNow) {
+        told = toldNow;
+        busy = false;
+        notifyAll();
     }
 }
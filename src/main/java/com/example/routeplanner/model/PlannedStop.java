@@ -0,0 +1,54 @@
+package com.example.routeplanner.model;
+
+// A pickup (at the restaurant) or drop-off (at the customer) on a courier's planned route.
+// The courier's active route is the concatenation of the legs leading to each planned stop,
+// so legLength says how many route cells belong to the leg that ends at this stop.
+public class PlannedStop {
+
+    private final long orderId;
+    private final boolean pickup;
+    private final int x;
+    private final int y;
+
+    private int legLength; // route cells from the previous stop up to and including this one
+    private double legCost; // road cost of that leg
+
+    public PlannedStop(long orderId, boolean pickup, int x, int y) {
+        this.orderId = orderId;
+        this.pickup = pickup;
+        this.x = x;
+        this.y = y;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public boolean isPickup() {
+        return pickup;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getLegLength() {
+        return legLength;
+    }
+
+    public void setLegLength(int legLength) {
+        this.legLength = legLength;
+    }
+
+    public double getLegCost() {
+        return legCost;
+    }
+
+    public void setLegCost(double legCost) {
+        this.legCost = legCost;
+    }
+}
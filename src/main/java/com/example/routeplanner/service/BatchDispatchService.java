@@ -0,0 +1,169 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.BatchAssignmentDTO;
+import com.example.routeplanner.dto.OrderAssignmentDTO;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+// Assigns all NEW orders in one go instead of greedily in arrival order.
+// Each round builds a courier x order matrix of marginal insertion costs (computed in parallel) and solves
+// it as a min-cost assignment, so every courier takes at most one order per round. Each round waits until
+// its routes are installed (see DispatchService.commitAssignment), so rounds repeat against the updated plans
+// until every order is placed or no courier can reach the rest. totalAddedCost is what the installed
+// insertions added, which differs from the matrix when a courier moved in between.
+@Service
+public class BatchDispatchService {
+
+    private final OrderService orderService;
+    private final CourierService courierService;
+    private final CityMap cityMap;
+    private final RoutePlanner routePlanner;
+    private final DispatchService dispatchService;
+
+    public BatchDispatchService(OrderService orderService,
+                                CourierService courierService,
+                                CityMap cityMap,
+                                RoutePlanner routePlanner,
+                                DispatchService dispatchService) {
+        this.orderService = orderService;
+        this.courierService = courierService;
+        this.cityMap = cityMap;
+        this.routePlanner = routePlanner;
+        this.dispatchService = dispatchService;
+    }
+
+    public BatchAssignmentDTO assignNewOrders() {
+        return assignOrders(orderService.listOrderEntities(OrderStatus.NEW));
+    }
+
+    // Assign the given NEW orders together
+    public BatchAssignmentDTO assignOrders(List<Order> orders) {
+        List<Courier> couriers = courierService.listCourierEntities();
+        if (couriers.isEmpty() && !orders.isEmpty()) {
+            throw new IllegalStateException("No couriers available for assignment");
+        }
+        return assignOrders(orders, couriers);
+    }
+
+    // Assign the given NEW orders among the given couriers only; orders none of them can take stay unassigned
+    public BatchAssignmentDTO assignOrders(List<Order> orders, List<Courier> couriers) {
+        long start = System.currentTimeMillis();
+
+        List<Order> pending = new ArrayList<>();
+        List<CityMap.Restaurant> restaurants = new ArrayList<>();
+        List<Long> unassigned = new ArrayList<>();
+        for (Order order : orders) {
+            var restaurant = cityMap.findRestaurantById(order.getRestaurantId());
+            if (restaurant.isEmpty()) {
+                unassigned.add(order.getId());
+                continue;
+            }
+            pending.add(order);
+            restaurants.add(restaurant.get());
+        }
+
+        List<OrderAssignmentDTO> assignments = new ArrayList<>();
+        double totalAddedCost = 0.0;
+        int rounds = 0;
+
+        while (!pending.isEmpty() && !couriers.isEmpty()) {
+            rounds++;
+            int orderCount = pending.size();
+            List<Order> batch = pending;
+            List<CityMap.Restaurant> rests = restaurants;
+
+            // Per-order fields first (one set per order), then every courier/order pair, both in parallel
+            List<RoutePlanner.OrderCosts> orderCosts = IntStream.range(0, orderCount).parallel()
+                    .mapToObj(o -> routePlanner.orderCosts(
+                            rests.get(o).x(), rests.get(o).y(), batch.get(o).getX(), batch.get(o).getY()))
+                    .toList();
+
+            // Each courier's plan is read once per round under its lock, then scored against every order
+            RoutePlanner.Insertion[][] insertions = new RoutePlanner.Insertion[couriers.size()][orderCount];
+            double[][] cost = new double[couriers.size()][orderCount];
+            IntStream.range(0, couriers.size()).parallel().forEach(c -> {
+                Courier courier = couriers.get(c);
+                RoutePlanner.PlanCosts plan;
+                long planVersion;
+                courier.getLock().lock();
+                try {
+                    plan = routePlanner.planCosts(courier);
+                    planVersion = courier.getPlanVersion();
+                } finally {
+                    courier.getLock().unlock();
+                }
+                for (int o = 0; o < orderCount; o++) {
+                    RoutePlanner.Insertion insertion = RoutePlanner.bestInsertion(
+                            plan.cells(), plan.legCosts(), orderCosts.get(o), planVersion);
+                    insertions[c][o] = insertion;
+                    cost[c][o] = insertion == null ? Double.POSITIVE_INFINITY : insertion.addedCost();
+                }
+            });
+
+            int[] match = HungarianAssignment.solve(cost);
+
+            boolean[] placed = new boolean[orderCount];
+            List<DispatchService.Commit> commits = new ArrayList<>();
+            List<Integer> committedOrders = new ArrayList<>();
+            for (int c = 0; c < couriers.size(); c++) {
+                int o = match[c];
+                if (o < 0) continue;
+                CityMap.Restaurant restaurant = rests.get(o);
+                try {
+                    // A courier that moved since the matrix was built gets its insertion recomputed
+                    commits.add(dispatchService.commitAssignment(
+                            batch.get(o), couriers.get(c), insertions[c][o], restaurant.x(), restaurant.y(), true
+                    ));
+                    committedOrders.add(o);
+                } catch (IllegalArgumentException ex) {
+                    placed[o] = true; // assigned by another dispatcher meanwhile
+                }
+            }
+
+            // The next round scores against these plans, so wait until they are installed
+            for (int i = 0; i < commits.size(); i++) {
+                try {
+                    RoutePlanner.Insertion installed = commits.get(i).routeInstalled().join();
+                    assignments.add(commits.get(i).assignment());
+                    totalAddedCost += installed.addedCost();
+                    placed[committedOrders.get(i)] = true;
+                } catch (CompletionException ex) {
+                    // courier could no longer reach it and the order is NEW again; try again next round
+                }
+            }
+
+            pending = new ArrayList<>();
+            restaurants = new ArrayList<>();
+            for (int o = 0; o < orderCount; o++) {
+                if (!placed[o]) {
+                    pending.add(batch.get(o));
+                    restaurants.add(rests.get(o));
+                }
+            }
+            if (pending.size() == orderCount) {
+                break; // nobody can reach the remaining orders
+            }
+        }
+
+        for (Order order : pending) {
+            unassigned.add(order.getId());
+        }
+        orderService.awaitDurable();
+
+        return new BatchAssignmentDTO(
+                assignments,
+                unassigned,
+                totalAddedCost,
+                rounds,
+                System.currentTimeMillis() - start
+        );
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.dto.ChangeEventDTO;
+import com.example.routeplanner.dto.ChangeFeedDTO;
+import com.example.routeplanner.dto.CourierPositionDTO;
+import com.example.routeplanner.dto.OrderDTO;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Every order change and courier move, numbered and kept in a fixed-size ring buffer, so clients can follow
+// the world as a stream of deltas instead of polling the full lists. Publishing only takes a short lock to
+// number the change and drop it into the ring. A dispatcher wakes every flushMs and hands each stream that
+// is behind to a sender, which writes everything new in one flush. A stream whose sender cannot keep up
+// (or a client resuming from a sequence the ring no longer holds) gets a RESET event instead of the missed
+// changes and carries on from the newest one; the changes it skipped are already in the state it refetches.
+@Service
+public class ChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+    private static final int MAX_EVENTS_PER_SEND = 1000;
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    // What changed, as it was right after the change. Orders themselves never change but for status and courier.
+    private record Change(long sequence, Order order, OrderStatus status, String assignedCourierId,
+                          String courierId, int x, int y) {}
+
+    // Events after the sequence a stream asked for, or reset when the ring no longer holds them all
+    record Read(List<ChangeEventDTO> events, boolean reset, long latest) {}
+
+    private final OrderService orderService;
+    private final CourierService courierService;
+    private final int flushMs;
+    private final int maxSubscribers;
+
+    // Guarded by this
+    private final Change[] ring;
+    private final int mask;
+    private long latest; // sequence of the newest change, 0 before the first
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong resets = new AtomicLong();
+    private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "change-feed-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledExecutorService dispatcher;
+
+    public ChangeFeed(OrderService orderService,
+                      CourierService courierService,
+                      @Value("${routeplanner.events.capacity:65536}") int capacity,
+                      @Value("${routeplanner.events.flush-ms:100}") int flushMs,
+                      @Value("${routeplanner.events.max-subscribers:100}") int maxSubscribers) {
+        this.orderService = orderService;
+        this.courierService = courierService;
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        this.ring = new Change[size < capacity ? size << 1 : size];
+        this.mask = ring.length - 1;
+        this.flushMs = Math.max(1, flushMs);
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    @PostConstruct
+    public void start() {
+        orderService.addOrderListener(this::orderChanged);
+        courierService.addMoveListener(this::courierMoved);
+
+        dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(() -> {
+            try {
+                dispatch();
+            } catch (RuntimeException ex) {
+                log.warn("Change feed dispatch failed", ex);
+            }
+        }, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    // A stream of the changes after since; without since it starts with a RESET at the newest change.
+    // Sequence numbers start over with every start of the service.
+    public SseEmitter subscribe(Long since) {
+        SseEmitter emitter = new SseEmitter(0L); // no timeout, heartbeats find connections that went away
+        subscribe(emitter, since);
+        return emitter;
+    }
+
+    void subscribe(SseEmitter emitter, Long since) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("Too many event streams open, try again later");
+        }
+        Subscriber subscriber = new Subscriber(emitter, since == null ? -1 : since);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(ex -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        if (subscriber.pumping.compareAndSet(false, true)) {
+            senders.execute(() -> pump(subscriber));
+        }
+    }
+
+    public synchronized long latestSequence() {
+        return latest;
+    }
+
+    public ChangeFeedDTO stats() {
+        long newest;
+        synchronized (this) {
+            newest = latest;
+        }
+        return new ChangeFeedDTO(
+                newest,
+                Math.max(1, newest - ring.length + 1),
+                ring.length,
+                subscribers.size(),
+                resets.get()
+        );
+    }
+
+    // At most max events after the given sequence, oldest first
+    Read read(long after, int max) {
+        List<Change> changes;
+        long newest;
+        synchronized (this) {
+            newest = latest;
+            long oldest = Math.max(1, newest - ring.length + 1);
+            if (after + 1 < oldest || after > newest) {
+                return new Read(List.of(), true, newest);
+            }
+            int count = (int) Math.min(max, newest - after);
+            changes = new ArrayList<>(count);
+            for (long sequence = after + 1; sequence <= after + count; sequence++) {
+                changes.add(ring[(int) sequence & mask]);
+            }
+        }
+        List<ChangeEventDTO> events = new ArrayList<>(changes.size());
+        for (Change change : changes) {
+            events.add(toDTO(change));
+        }
+        return new Read(events, false, newest);
+    }
+
+    // Called in each order's change sequence, so changes of one order are numbered in the order they happened
+    private void orderChanged(Order order, OrderStatus oldStatus, String oldCourierId,
+                              OrderStatus status, String courierId) {
+        synchronized (this) {
+            latest++;
+            ring[(int) latest & mask] = new Change(latest, order, status, courierId, null, 0, 0);
+        }
+    }
+
+    // Runs under the courier's lock
+    private void courierMoved(Courier courier) {
+        String id = courier.getId();
+        int x = courier.getCurrentX();
+        int y = courier.getCurrentY();
+        synchronized (this) {
+            latest++;
+            ring[(int) latest & mask] = new Change(latest, null, null, null, id, x, y);
+        }
+    }
+
+    private void dispatch() {
+        long newest = latestSequence();
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            boolean due = subscriber.cursor < newest || now - subscriber.lastSendNanos > HEARTBEAT_NANOS;
+            // A sender still busy with this stream picks up the new changes itself
+            if (due && subscriber.pumping.compareAndSet(false, true)) {
+                senders.execute(() -> pump(subscriber));
+            }
+        }
+    }
+
+    // Send the stream everything it has not seen yet; only one sender works on a stream at a time
+    private void pump(Subscriber subscriber) {
+        try {
+            while (true) {
+                Read read = read(subscriber.cursor, MAX_EVENTS_PER_SEND);
+                if (read.reset()) {
+                    // A new stream starts with one; any other means the stream missed changes
+                    if (subscriber.cursor >= 0) {
+                        resets.incrementAndGet();
+                    }
+                    send(subscriber, List.of(new ChangeEventDTO(read.latest(), "RESET", null, null)));
+                    subscriber.cursor = read.latest();
+                } else if (!read.events().isEmpty()) {
+                    send(subscriber, read.events());
+                    subscriber.cursor = read.events().get(read.events().size() - 1).sequence();
+                } else {
+                    if (System.nanoTime() - subscriber.lastSendNanos > HEARTBEAT_NANOS) {
+                        subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+                        subscriber.lastSendNanos = System.nanoTime();
+                    }
+                    return;
+                }
+            }
+        } catch (IOException | IllegalStateException ex) {
+            // The client went away or the stream was completed; the container finishes the request
+            subscribers.remove(subscriber);
+        } finally {
+            subscriber.pumping.set(false);
+        }
+    }
+
+    private static void send(Subscriber subscriber, List<ChangeEventDTO> events) throws IOException {
+        Set<ResponseBodyEmitter.DataWithMediaType> items = new LinkedHashSet<>();
+        for (ChangeEventDTO event : events) {
+            items.addAll(SseEmitter.event()
+                    .id(Long.toString(event.sequence()))
+                    .name(event.type().toLowerCase())
+                    .data(event)
+                    .build());
+        }
+        subscriber.emitter.send(items);
+        subscriber.lastSendNanos = System.nanoTime();
+    }
+
+    private static ChangeEventDTO toDTO(Change change) {
+        if (change.order() == null) {
+            return new ChangeEventDTO(change.sequence(), "COURIER", null,
+                    new CourierPositionDTO(change.courierId(), change.x(), change.y()));
+        }
+        Order order = change.order();
+        return new ChangeEventDTO(change.sequence(), "ORDER",
+                new OrderDTO(order.getId(), order.getRestaurantId(), order.getX(), order.getY(), order.getLabel(),
+                        change.status().name(), change.assignedCourierId()),
+                null);
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final AtomicBoolean pumping = new AtomicBoolean();
+        volatile long cursor; // sequence of the last change sent, -1 before the first RESET
+        volatile long lastSendNanos = System.nanoTime();
+
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.CityCellDTO;
+import com.example.routeplanner.dto.CityLayoutDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+// The city layout, serialized once in every encoding, so a request is a lookup and a copy of ready bytes
+// instead of a fresh object per cell and a JSON write. Cell types are fixed once CityMap is built (traffic and
+// obstacle updates change the Grid, not the layout), so the cache is never rebuilt. Each form has an ETag
+// made from a checksum of the cell types, so clients that have it get a 304 for as long as the layout is
+// the same, across restarts too.
+@Service
+public class CityLayoutCache {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    // One encoded layout, ready to send
+    public record Encoded(byte[] body, String etag) {}
+
+    private final CityMap cityMap;
+    private volatile Map<CityLayoutEncoding, Encoded> encoded;
+
+    public CityLayoutCache(CityMap cityMap) {
+        this.cityMap = cityMap;
+    }
+
+    public Encoded get(CityLayoutEncoding encoding) {
+        Map<CityLayoutEncoding, Encoded> current = encoded;
+        if (current == null) {
+            current = build();
+        }
+        return current.get(encoding);
+    }
+
+    private synchronized Map<CityLayoutEncoding, Encoded> build() {
+        if (encoded != null) {
+            return encoded;
+        }
+        CityMap.CellType[][] cellTypes = cityMap.getCellTypes();
+        int height = cellTypes.length;
+        int width = height > 0 ? cellTypes[0].length : 0;
+
+        byte[] bytes = bytes(cellTypes, width, height);
+        CRC32C checksum = new CRC32C();
+        checksum.update(width);
+        checksum.update(bytes);
+        String version = Long.toHexString(checksum.getValue());
+
+        Map<CityLayoutEncoding, Encoded> built = new EnumMap<>(CityLayoutEncoding.class);
+        built.put(CityLayoutEncoding.CELLS, encode(cells(cellTypes, width, height), version, CityLayoutEncoding.CELLS));
+        built.put(CityLayoutEncoding.RLE, encode(new CityLayoutDTO(width, height, version, typeNames(), "rle",
+                runs(cellTypes, width, height), null), version, CityLayoutEncoding.RLE));
+        built.put(CityLayoutEncoding.BYTES, encode(new CityLayoutDTO(width, height, version, typeNames(), "bytes",
+                null, Base64.getEncoder().encodeToString(bytes)), version, CityLayoutEncoding.BYTES));
+
+        encoded = built;
+        return built;
+    }
+
+    private static List<CityCellDTO> cells(CityMap.CellType[][] cellTypes, int width, int height) {
+        List<CityCellDTO> cells = new ArrayList<>(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                cells.add(new CityCellDTO(x, y, type(cellTypes[y][x]).name()));
+            }
+        }
+        return cells;
+    }
+
+    private static List<int[]> runs(CityMap.CellType[][] cellTypes, int width, int height) {
+        List<int[]> rows = new ArrayList<>(height);
+        int[] row = new int[2 * width];
+        for (int y = 0; y < height; y++) {
+            int length = 0;
+            for (int x = 0; x < width; x++) {
+                int type = type(cellTypes[y][x]).ordinal();
+                if (length > 0 && row[length - 2] == type) {
+                    row[length - 1]++;
+                } else {
+                    row[length++] = type;
+                    row[length++] = 1;
+                }
+            }
+            rows.add(Arrays.copyOf(row, length));
+        }
+        return rows;
+    }
+
+    private static byte[] bytes(CityMap.CellType[][] cellTypes, int width, int height) {
+        byte[] bytes = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                bytes[y * width + x] = (byte) type(cellTypes[y][x]).ordinal();
+            }
+        }
+        return bytes;
+    }
+
+    // Cells without a type are road
+    private static CityMap.CellType type(CityMap.CellType type) {
+        return type != null ? type : CityMap.CellType.ROAD;
+    }
+
+    private static List<String> typeNames() {
+        return Arrays.stream(CityMap.CellType.values()).map(Enum::name).toList();
+    }
+
+    private static Encoded encode(Object value, String version, CityLayoutEncoding encoding) {
+        try {
+            return new Encoded(JSON.writeValueAsBytes(value),
+                    "\"layout-" + version + "-" + encoding.name().toLowerCase() + "\"");
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize the city layout", ex);
+        }
+    }
+}
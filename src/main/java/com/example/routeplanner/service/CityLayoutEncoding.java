@@ -0,0 +1,11 @@
+package com.example.routeplanner.service;
+
+// How the city layout is written out.
+public enum CityLayoutEncoding {
+    // One {x, y, type} object per cell, as the layout has always been served
+    CELLS,
+    // Each row as runs of the same cell type
+    RLE,
+    // One cell type number per cell, base64 encoded
+    BYTES
+}
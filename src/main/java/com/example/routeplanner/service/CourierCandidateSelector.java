@@ -0,0 +1,86 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Picks the couriers that dispatch should score for an order, so large fleets are not scored in full.
+@Service
+public class CourierCandidateSelector {
+
+    private final CityMap cityMap;
+    private final CourierService courierService;
+    private final RouteService routeService;
+    private final CourierRestaurantDistances restaurantDistances;
+    private final DispatchMode mode;
+    private final int nearestCouriers;
+    private final int radius;
+
+    public CourierCandidateSelector(CityMap cityMap,
+                                    CourierService courierService,
+                                    RouteService routeService,
+                                    CourierRestaurantDistances restaurantDistances,
+                                    @Value("${routeplanner.dispatch.mode:ALL}") DispatchMode mode,
+                                    @Value("${routeplanner.dispatch.nearest-couriers:8}") int nearestCouriers,
+                                    @Value("${routeplanner.dispatch.radius:15}") int radius) {
+        this.cityMap = cityMap;
+        this.courierService = courierService;
+        this.routeService = routeService;
+        this.restaurantDistances = restaurantDistances;
+        this.mode = mode;
+        this.nearestCouriers = Math.max(1, nearestCouriers);
+        this.radius = Math.max(0, radius);
+    }
+
+    public DispatchMode getMode() {
+        return mode;
+    }
+
+    // Couriers worth scoring for an order picked up at (restX, restY)
+    public List<Courier> candidatesFor(int restX, int restY) {
+        if (mode == DispatchMode.ALL || courierService.courierCount() <= nearestCouriers) {
+            return courierService.listCourierEntities();
+        }
+        return switch (mode) {
+            case NEAREST_BY_ROAD -> nearestByRoad(restX, restY);
+            case NEAREST_BY_DISTANCE -> courierService.nearestCouriers(restX, restY, nearestCouriers);
+            case WITHIN_RADIUS -> {
+                List<Courier> close = courierService.couriersWithin(restX, restY, radius);
+                yield close.isEmpty() ? courierService.nearestCouriers(restX, restY, nearestCouriers) : close;
+            }
+            case ALL -> courierService.listCourierEntities();
+        };
+    }
+
+    // Known restaurants take couriers from the spatial index nearest first and rank them by the restaurant's
+    // cached distance field, widening only while someone further out could still be closer by road. Any other
+    // pickup point runs one reverse Dijkstra from it, stopped once the k nearest couriers are settled, with
+    // courier cells looked up in the spatial index. Either way only couriers near the pickup are looked at,
+    // unless most of the fleet can not reach it at all.
+    private List<Courier> nearestByRoad(int restX, int restY) {
+        int restaurant = restaurantDistances.restaurantIndexAt(restX, restY);
+        if (restaurant >= 0) {
+            return restaurantDistances.nearestCouriers(restaurant, nearestCouriers);
+        }
+
+        Grid grid = cityMap.getGrid();
+        int width = grid.getWidth();
+
+        var settled = routeService.nearestSources(
+                grid, restX, restY,
+                cell -> courierService.couriersAt(cell % width, cell / width).size(),
+                nearestCouriers
+        );
+
+        List<Courier> candidates = new ArrayList<>(nearestCouriers);
+        for (RouteService.SettledCell cell : settled) {
+            candidates.addAll(courierService.couriersAt(cell.x(), cell.y()));
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.GridChangeListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Live road distance from every courier to every restaurant.
+// Each restaurant keeps one reverse Dijkstra field (cost from any cell to the restaurant), so a courier's row
+// is just one lookup per restaurant at its current cell. Rows are refreshed after every simulation tick,
+// O(couriers) work for a fixed set of restaurants, and only for couriers that actually moved.
+// A grid change drops only the fields it can alter. They are rebuilt on a background thread, or by the
+// first reader that needs one before then; the tick thread never runs a search.
+@Service
+public class CourierRestaurantDistances implements GridChangeListener {
+
+    private final CityMap cityMap;
+    private final CourierService courierService;
+    private final RouteService routeService;
+
+    // Restaurant index -> reverse field, null while stale. Replaced as a whole on every change, so a row can
+    // tell from the array it was built from whether it is still current. Sized on first use
+    private volatile double[][] fields;
+    private final AtomicLong generation = new AtomicLong();
+    private final ConcurrentHashMap<String, Row> rows = new ConcurrentHashMap<>();
+
+    // Lower bound on the cost of entering any cell, scanned once at startup and only ever lowered after.
+    // Zero until then, which just makes nearestCouriers look at every courier
+    private volatile double minCellCost;
+
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "restaurant-fields");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Distances of one courier, valid for the cell and the fields they were computed from.
+    // Never changed once published; a courier that moved gets a new row, so readers on other threads
+    // always see distances that belong to the row's cell.
+    private record Row(int cell, double[][] source, double[] distances) {}
+
+    public CourierRestaurantDistances(CityMap cityMap, CourierService courierService, RouteService routeService) {
+        this.cityMap = cityMap;
+        this.courierService = courierService;
+        this.routeService = routeService;
+    }
+
+    @PostConstruct
+    void register() {
+        minCellCost = lowestCellCost(cityMap.getGrid());
+        cityMap.getGrid().addChangeListener(this);
+        courierService.addTickListener(this::refresh);
+    }
+
+    @PreDestroy
+    void close() {
+        rebuilder.shutdownNow();
+    }
+
+    @Override
+    public void onCellChanged(int x, int y, double oldCost, double newCost) {
+        generation.incrementAndGet();
+        if (newCost < minCellCost) {
+            minCellCost = newCost;
+        }
+
+        int cell = y * cityMap.getGrid().getWidth() + x;
+        synchronized (this) {
+            double[][] current = currentFields();
+            double[][] next = null;
+            for (int r = 0; r < current.length; r++) {
+                if (current[r] != null && affects(current[r], cell, oldCost, newCost)) {
+                    if (next == null) {
+                        next = current.clone();
+                    }
+                    next[r] = null;
+                }
+            }
+            if (next != null) {
+                fields = next;
+            }
+        }
+    }
+
+    // Whether changing the cost of entering `cell` can move any distance in the field. A cell only passes its
+    // cost on to the neighbours that step into it, and its own distance never includes its own cost. So it
+    // matters if it got cheaper and now beats a neighbour's distance, or got dearer and some neighbour's
+    // shortest path may have entered it.
+    private boolean affects(double[] field, int cell, double oldCost, double newCost) {
+        double d = field[cell];
+        if (d == Double.POSITIVE_INFINITY) {
+            return false; // nothing reaches the restaurant through a cell that can not reach it
+        }
+        Grid grid = cityMap.getGrid();
+        int width = grid.getWidth();
+        int cx = cell % width;
+        int cy = cell / width;
+        for (int[] dir : RouteService.DIRECTIONS) {
+            int nx = cx + dir[0];
+            int ny = cy + dir[1];
+            if (!grid.inBounds(nx, ny)) continue;
+            double neighbour = field[ny * width + nx];
+            if (newCost < oldCost ? d + newCost < neighbour : d + oldCost == neighbour) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Index of the restaurant at (x, y) in CityMap.getRestaurants(), or -1 if there is none
+    public int restaurantIndexAt(int x, int y) {
+        List<CityMap.Restaurant> restaurants = cityMap.getRestaurants();
+        for (int r = 0; r < restaurants.size(); r++) {
+            if (restaurants.get(r).x() == x && restaurants.get(r).y() == y) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    // Road cost from the courier's current cell to the restaurant (infinite if it can not get there)
+    public double distance(Courier courier, int restaurantIndex) {
+        int cell = cellOf(courier);
+        Row row = rows.get(courier.getId());
+        if (row != null && row.cell() == cell && row.source() == currentFields()) {
+            return row.distances()[restaurantIndex];
+        }
+        return field(restaurantIndex)[cell];
+    }
+
+    // The k couriers with the shortest road distance to the restaurant, nearest first; unreachable ones are left out.
+    // Candidates come from the spatial index nearest first as the crow flies, and a courier m cells away can not
+    // cost less than m times the cheapest cell, so the search widens only until the k-th best can not be beaten.
+    public List<Courier> nearestCouriers(int restaurantIndex, int k) {
+        double[] field = field(restaurantIndex);
+        CityMap.Restaurant restaurant = cityMap.getRestaurants().get(restaurantIndex);
+        double cheapest = minCellCost;
+
+        // Max-heap of the best k so far, so every courier costs one comparison once it is full
+        Comparator<Entry> byDistance = Comparator.comparingDouble(Entry::distance);
+        PriorityQueue<Entry> best = new PriorityQueue<>(k + 1, byDistance.reversed());
+        for (int want = k; ; want *= 2) {
+            best.clear();
+            List<Courier> near = courierService.nearestCouriers(restaurant.x(), restaurant.y(), want);
+            for (Courier courier : near) {
+                double d = field[cellOf(courier)];
+                if (d == Double.POSITIVE_INFINITY) continue;
+                if (best.size() < k) {
+                    best.add(new Entry(courier, d));
+                } else if (d < best.peek().distance()) {
+                    best.poll();
+                    best.add(new Entry(courier, d));
+                }
+            }
+            if (near.size() < want) {
+                break; // that was the whole fleet
+            }
+            Courier farthest = near.get(near.size() - 1);
+            int reach = Math.abs(farthest.getCurrentX() - restaurant.x()) + Math.abs(farthest.getCurrentY() - restaurant.y());
+            if (best.size() == k && best.peek().distance() <= cheapest * reach) {
+                break;
+            }
+        }
+
+        List<Entry> sorted = new ArrayList<>(best);
+        sorted.sort(byDistance);
+        List<Courier> result = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            result.add(entry.courier());
+        }
+        return result;
+    }
+
+    private record Entry(Courier courier, double distance) {}
+
+    // Bring every row up to date with its courier's cell. Stale fields are handed to the background thread
+    // and the rows wait for the next tick.
+    public void refresh() {
+        double[][] current = currentFields();
+        for (double[] field : current) {
+            if (field == null) {
+                scheduleRebuild();
+                return;
+            }
+        }
+        for (Courier courier : courierService.listCourierEntities()) {
+            row(courier, current);
+        }
+    }
+
+    private void row(Courier courier, double[][] current) {
+        int cell = cellOf(courier);
+        Row row = rows.get(courier.getId());
+        if (row != null && row.cell() == cell && row.source() == current) {
+            return;
+        }
+        double[] distances = new double[current.length];
+        for (int r = 0; r < current.length; r++) {
+            distances[r] = current[r][cell];
+        }
+        // Racing refreshes may publish out of order; readers check the cell and fall back to the field
+        rows.put(courier.getId(), new Row(cell, current, distances));
+    }
+
+    private int cellOf(Courier courier) {
+        return courier.getCurrentY() * cityMap.getGrid().getWidth() + courier.getCurrentX();
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuildQueued.compareAndSet(false, true)) {
+            return;
+        }
+        rebuilder.execute(() -> {
+            rebuildQueued.set(false);
+            for (int r = 0; r < currentFields().length; r++) {
+                field(r);
+            }
+        });
+    }
+
+    private double[][] currentFields() {
+        double[][] current = fields;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (fields == null) {
+                fields = new double[cityMap.getRestaurants().size()][];
+            }
+            return fields;
+        }
+    }
+
+    private double[] field(int restaurantIndex) {
+        while (true) {
+            double[] current = currentFields()[restaurantIndex];
+            if (current != null) {
+                return current;
+            }
+            long generationBefore = generation.get();
+            CityMap.Restaurant restaurant = cityMap.getRestaurants().get(restaurantIndex);
+            double[] computed = routeService.computeReverseDistanceField(cityMap.getGrid(), restaurant.x(), restaurant.y());
+
+            // A change that raced with the search may have been judged against the old field, so drop the result
+            synchronized (this) {
+                if (generation.get() == generationBefore) {
+                    double[][] next = currentFields().clone();
+                    next[restaurantIndex] = computed;
+                    fields = next;
+                    return computed;
+                }
+            }
+        }
+    }
+
+    private static double lowestCellCost(Grid grid) {
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                lowest = Math.min(lowest, grid.getWeight(x, y));
+            }
+        }
+        return lowest;
+    }
+}
@@ -6,6 +6,7 @@ import com.example.routeplanner.dto.MultiStopRouteResponse;
 import com.example.routeplanner.dto.PointDTO;
 import com.example.routeplanner.model.Courier;
 import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
 import com.example.routeplanner.strategy.DeliveryStrategy;
 import com.example.routeplanner.strategy.DeliveryStrategyRegistry;
 import org.springframework.stereotype.Service;
@@ -22,18 +23,21 @@ public class CourierRouteService {
     private final OrderService orderService;
     private final CourierService courierService;
     private final DeliveryStrategyRegistry deliveryStrategyRegistry;
-    private final RouteService routeService;
+    private final RouteCache routeCache;
+    private final DistanceFieldCache distanceFieldCache;
 
     public CourierRouteService(CityMap cityMap,
                                OrderService orderService,
                                CourierService courierService,
                                DeliveryStrategyRegistry deliveryStrategyRegistry,
-                               RouteService routeService) {
+                               RouteCache routeCache,
+                               DistanceFieldCache distanceFieldCache) {
         this.cityMap = cityMap;
         this.orderService = orderService;
         this.courierService = courierService;
         this.deliveryStrategyRegistry = deliveryStrategyRegistry;
-        this.routeService = routeService;
+        this.routeCache = routeCache;
+        this.distanceFieldCache = distanceFieldCache;
     }
 
     // Compute multi-stop route for the given courier using specified strategy and heuristic
@@ -57,38 +61,75 @@ public class CourierRouteService {
             orders.add(orderService.getOrderEntity(id));
         }
 
-        // 2) Group orders by restaurantId (preserve insertion order)
+        // 2) Group orders still to be picked up by restaurantId (preserve insertion order)
         Map<String, List<Order>> byRestaurant = new LinkedHashMap<>();
+        List<Order> pickedUp = new ArrayList<>();
         for (Order o : orders) {
+            if (o.getStatus() == OrderStatus.IN_PROGRESS) {
+                pickedUp.add(o);
+                continue;
+            }
             byRestaurant
                     .computeIfAbsent(o.getRestaurantId(), k -> new ArrayList<>())
                     .add(o);
         }
 
-        // Helper class for our groups
-        class RestaurantGroup {
-            final CityMap.Restaurant restaurant;
-            final List<Order> orders;
-
-            RestaurantGroup(CityMap.Restaurant restaurant, List<Order> orders) {
-                this.restaurant = restaurant;
-                this.orders = orders;
-            }
+        // 3) Build the stop list: each restaurant followed by its customers.
+        //    A customer can only be visited after its restaurant (the pickup).
+        //    Orders the courier already carries only need their drop-off.
+        List<DeliveryStopDTO> stops = new ArrayList<>();
+        List<Integer> predecessors = new ArrayList<>();
+        for (Order o : pickedUp) {
+            stops.add(new DeliveryStopDTO(o.getX(), o.getY(), o.getLabel()));
+            predecessors.add(-1);
         }
-
-        // 3) Build list of restaurant groups
-        List<RestaurantGroup> groups = new ArrayList<>();
         for (Map.Entry<String, List<Order>> entry : byRestaurant.entrySet()) {
             var restOpt = cityMap.findRestaurantById(entry.getKey());
             if (restOpt.isEmpty()) {
                 throw new IllegalStateException("Unknown restaurant id: " + entry.getKey());
             }
-            groups.add(new RestaurantGroup(restOpt.get(), entry.getValue()));
+            CityMap.Restaurant restaurant = restOpt.get();
+
+            int restaurantIndex = stops.size();
+            stops.add(new DeliveryStopDTO(restaurant.x(), restaurant.y(), restaurant.name()));
+            predecessors.add(-1);
+
+            for (Order o : entry.getValue()) {
+                stops.add(new DeliveryStopDTO(o.getX(), o.getY(), o.getLabel()));
+                predecessors.add(restaurantIndex);
+            }
         }
 
-        // 4) Prepare route accumulation
-        int currentX = courier.getCurrentX();
-        int currentY = courier.getCurrentY();
+        // 4) Let the strategy order the stops by road cost (answered from precomputed distance fields)
+        DeliveryStrategy strategy = deliveryStrategyRegistry.getStrategy(strategyName);
+        int[] pred = predecessors.stream().mapToInt(Integer::intValue).toArray();
+        var costs = distanceFieldCache.costOracle();
+        int startX = courier.getCurrentX();
+        int startY = courier.getCurrentY();
+
+        int[] order = strategy.orderStops(stops, pred, startX, startY, costs);
+        Double improvement = deliveryStrategyRegistry.improvementOverNearestNeighbor(
+                strategy, stops, pred, startX, startY, costs, order
+        );
+
+        // 5) Build the actual path leg by leg
+        MultiStopRouteResponse route = buildRoute(startX, startY, stops, order, heuristic);
+        return new MultiStopRouteResponse(
+                route.path(),
+                route.totalDistance(),
+                route.visitedNodes(),
+                route.timeMs(),
+                improvement
+        );
+    }
+
+    // Chain A* legs (from the route cache) through the stops in the given order
+    private MultiStopRouteResponse buildRoute(int startX, int startY,
+                                              List<DeliveryStopDTO> stops,
+                                              int[] order,
+                                              String heuristic) {
+        int currentX = startX;
+        int currentY = startY;
 
         List<PointDTO> fullPath = new ArrayList<>();
         double totalDistance = 0.0;
@@ -96,174 +137,42 @@ public class CourierRouteService {
         long totalTimeMs = 0L;
         boolean firstLeg = true;
 
-        // Remaining restaurant groups to visit
-        List<RestaurantGroup> remainingGroups = new ArrayList<>(groups);
-
-        // 5) Visit each restaurant group
-        while (!remainingGroups.isEmpty()) {
-
-            // 5a) Choose next restaurant group according to strategy
-            RestaurantGroup nextGroup;
-
-            if ("NEAREST_NEIGHBOR".equalsIgnoreCase(strategyName)) {
-                double bestDist = Double.POSITIVE_INFINITY;
-                RestaurantGroup bestGroup = null;
-
-                for (RestaurantGroup g : remainingGroups) {
-                    var legToRest = routeService.computeRouteOnGrid(
-                            cityMap.getGrid(),
-                            currentX, currentY,
-                            g.restaurant.x(), g.restaurant.y(),
-                            heuristic
-                    );
-
-                    if (!Double.isFinite(legToRest.totalDistance()) || legToRest.path().isEmpty()) {
-                        continue; // can't reach this restaurant
-                    }
-
-                    if (legToRest.totalDistance() < bestDist) {
-                        bestDist = legToRest.totalDistance();
-                        bestGroup = g;
-                    }
-                }
-
-                if (bestGroup == null) {
-                    // cannot reach remaining restaurants -> route fails
-                    return new MultiStopRouteResponse(
-                            fullPath,
-                            Double.POSITIVE_INFINITY,
-                            totalVisitedNodes,
-                            totalTimeMs
-                    );
-                }
-
-                nextGroup = bestGroup;
-
-            } else {
-                // IN_ORDER or unknown => take next in insertion order
-                nextGroup = remainingGroups.get(0);
-            }
-
-            // 5b) Go from current position to that restaurant (pickup)
-            if (currentX != nextGroup.restaurant.x() || currentY != nextGroup.restaurant.y()) {
-                var legToRest = routeService.computeRouteOnGrid(
-                        cityMap.getGrid(),
-                        currentX, currentY,
-                        nextGroup.restaurant.x(), nextGroup.restaurant.y(),
-                        heuristic
+        for (int index : order) {
+            DeliveryStopDTO stop = stops.get(index);
+
+            var leg = routeCache.getRoute(
+                    currentX, currentY,
+                    stop.x(), stop.y(),
+                    heuristic
+            );
+
+            totalVisitedNodes += leg.visitedNodes();
+            totalTimeMs += leg.timeMs();
+
+            if (!Double.isFinite(leg.totalDistance()) || leg.path().isEmpty()) {
+                // can't reach this stop -> route fails
+                return new MultiStopRouteResponse(
+                        fullPath,
+                        Double.POSITIVE_INFINITY,
+                        totalVisitedNodes,
+                        totalTimeMs
                 );
-
-                totalVisitedNodes += legToRest.visitedNodes();
-                totalTimeMs += legToRest.timeMs();
-
-                if (!Double.isFinite(legToRest.totalDistance()) || legToRest.path().isEmpty()) {
-                    return new MultiStopRouteResponse(
-                            fullPath,
-                            Double.POSITIVE_INFINITY,
-                            totalVisitedNodes,
-                            totalTimeMs
-                    );
-                }
-
-                totalDistance += legToRest.totalDistance();
-
-                if (firstLeg) {
-                    fullPath.addAll(legToRest.path());
-                    firstLeg = false;
-                } else {
-                    // avoid duplicating joint node
-                    for (int i = 1; i < legToRest.path().size(); i++) {
-                        fullPath.add(legToRest.path().get(i));
-                    }
-                }
-
-                currentX = nextGroup.restaurant.x();
-                currentY = nextGroup.restaurant.y();
             }
 
-            // From this restaurant, deliver to ALL its customers
-            List<Order> remainingOrdersForRest = new ArrayList<>(nextGroup.orders);
-
-            while (!remainingOrdersForRest.isEmpty()) {
-                Order nextOrder;
-
-                if ("NEAREST_NEIGHBOR".equalsIgnoreCase(strategyName)) {
-                    double bestDist = Double.POSITIVE_INFINITY;
-                    Order bestOrder = null;
-
-                    for (Order o : remainingOrdersForRest) {
-                        var legToCustomer = routeService.computeRouteOnGrid(
-                                cityMap.getGrid(),
-                                currentX, currentY,
-                                o.getX(), o.getY(),
-                                heuristic
-                        );
-
-                        if (!Double.isFinite(legToCustomer.totalDistance()) || legToCustomer.path().isEmpty()) {
-                            continue;
-                        }
+            totalDistance += leg.totalDistance();
 
-                        if (legToCustomer.totalDistance() < bestDist) {
-                            bestDist = legToCustomer.totalDistance();
-                            bestOrder = o;
-                        }
-                    }
-
-                    if (bestOrder == null) {
-                        // can't reach remaining customers of this restaurant
-                        return new MultiStopRouteResponse(
-                                fullPath,
-                                Double.POSITIVE_INFINITY,
-                                totalVisitedNodes,
-                                totalTimeMs
-                        );
-                    }
-
-                    nextOrder = bestOrder;
-
-                } else {
-                    // IN_ORDER: keep insertion order of orders
-                    nextOrder = remainingOrdersForRest.get(0);
-                }
-
-                // Leg: current -> that customer
-                var legToCustomer = routeService.computeRouteOnGrid(
-                        cityMap.getGrid(),
-                        currentX, currentY,
-                        nextOrder.getX(), nextOrder.getY(),
-                        heuristic
-                );
-
-                totalVisitedNodes += legToCustomer.visitedNodes();
-                totalTimeMs += legToCustomer.timeMs();
-
-                if (!Double.isFinite(legToCustomer.totalDistance()) || legToCustomer.path().isEmpty()) {
-                    return new MultiStopRouteResponse(
-                            fullPath,
-                            Double.POSITIVE_INFINITY,
-                            totalVisitedNodes,
-                            totalTimeMs
-                    );
-                }
-
-                totalDistance += legToCustomer.totalDistance();
-
-                if (firstLeg) {
-                    fullPath.addAll(legToCustomer.path());
-                    firstLeg = false;
-                } else {
-                    for (int i = 1; i < legToCustomer.path().size(); i++) {
-                        fullPath.add(legToCustomer.path().get(i));
-                    }
+            if (firstLeg) {
+                fullPath.addAll(leg.path());
+                firstLeg = false;
+            } else {
+                // avoid duplicating joint node
+                for (int i = 1; i < leg.path().size(); i++) {
+                    fullPath.add(leg.path().get(i));
                 }
-
-                currentX = nextOrder.getX();
-                currentY = nextOrder.getY();
-                remainingOrdersForRest.remove(nextOrder);
             }
 
-            // Done with this restaurant group
-            remainingGroups.remove(nextGroup);
+            currentX = stop.x();
+            currentY = stop.y();
         }
 
         return new MultiStopRouteResponse(
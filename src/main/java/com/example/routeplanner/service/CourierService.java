@@ -3,17 +3,26 @@ package com.example.routeplanner.service;
 import com.example.routeplanner.city.CityMap;
 import com.example.routeplanner.dto.CourierDTO;
 import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.PlannedStop;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 @Service
 public class CourierService {
 
     private final ConcurrentHashMap<String, Courier> couriers = new ConcurrentHashMap<>();
+    // Courier positions bucketed by area, kept in sync as couriers step
+    private final CourierSpatialIndex spatialIndex = new CourierSpatialIndex(8);
     private final OrderService orderService;
+    // Called after every simulation tick, once all couriers have stepped
+    private final List<Runnable> tickListeners = new CopyOnWriteArrayList<>();
+    // Called with a courier that moved, while holding its lock
+    private final List<Consumer<Courier>> moveListeners = new CopyOnWriteArrayList<>();
 
     public CourierService(CityMap cityMap, OrderService orderService) {
         this.orderService = orderService;
@@ -22,6 +31,7 @@ public class CourierService {
         couriers.put("c1", new Courier("c1", "Anna", 1, 4));
         couriers.put("c2", new Courier("c2", "Jamal", 10, 10));
         couriers.put("c3", new Courier("c3", "Sofie", 20, 6));
+        couriers.values().forEach(spatialIndex::add);
     }
 
     public List<CourierDTO> listCouriers() {
@@ -54,26 +64,74 @@ public class CourierService {
         return couriers.values().stream().toList();
     }
 
+    public int courierCount() {
+        return couriers.size();
+    }
+
+    // The k couriers nearest to (x, y) as the crow flies (Manhattan), nearest first
+    public List<Courier> nearestCouriers(int x, int y, int k) {
+        return spatialIndex.nearest(x, y, k);
+    }
+
+    // Couriers at most radius cells (Manhattan) from (x, y), nearest first
+    public List<Courier> couriersWithin(int x, int y, int radius) {
+        return spatialIndex.within(x, y, radius);
+    }
+
+    // Couriers standing on (x, y)
+    public List<Courier> couriersAt(int x, int y) {
+        return spatialIndex.at(x, y);
+    }
+
+    public void addMoveListener(Consumer<Courier> listener) {
+        moveListeners.add(listener);
+    }
+
+    public void addTickListener(Runnable listener) {
+        tickListeners.add(listener);
+    }
+
     // Move all couriers one step along their active route
     public void stepAllCouriers() {
         for (Courier courier : couriers.values()) {
             stepCourier(courier);
         }
+        fireTickListeners();
     }
 
     private void stepCourier(Courier courier) {
-        List<int[]> route = courier.getActiveRoute();
-        if (route == null || route.isEmpty()) return;
+        courier.getLock().lock();
+        try {
+            advance(courier);
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
 
-        // Take the next tile
-        int[] next = route.get(0);
-        courier.setCurrentX(next[0]);
-        courier.setCurrentY(next[1]);
+    // Caller holds the courier's lock
+    private void advance(Courier courier) {
+        // Routes built from planned stops finish their orders stop by stop; only a plain route finishes them all at its end
+        List<PlannedStop> stops = courier.getPlannedStops();
+        boolean plainRoute = stops.isEmpty();
 
-        // Remove it from the route
-        route.remove(0);
+        // Take the next tile
+        int oldX = courier.getCurrentX();
+        int oldY = courier.getCurrentY();
+        if (!courier.stepAlongRoute()) return;
+        courier.bumpPlanVersion();
+        spatialIndex.moved(courier, oldX, oldY);
+        fireMoveListeners(courier);
+
+        // Handle the planned stops whose leg has now been fully driven
+        if (!plainRoute) {
+            PlannedStop first = stops.get(0);
+            first.setLegLength(first.getLegLength() - 1);
+            while (!stops.isEmpty() && stops.get(0).getLegLength() <= 0) {
+                arriveAt(courier, stops.remove(0));
+            }
+        }
 
-        if (route.isEmpty()) {
+        if (courier.getRemainingRouteLength() == 0 && plainRoute) {
 
             // Mark all their assigned orders as DELIVERED
             orderService.markOrdersDeliveredForCourier(courier.getId());
@@ -85,7 +143,95 @@ public class CourierService {
             courier.setActiveRoute(List.of());
         }
     }
-}
 
+    // Move the courier up to cells route cells in one jump, with the same outcome as that many single steps:
+    // every stop reached on the way is handled in order. Costs O(stops reached), not O(cells).
+    // Returns how many cells the courier moved.
+    int advanceBy(Courier courier, int cells) {
+        courier.getLock().lock();
+        try {
+            int todo = Math.min(cells, courier.getRemainingRouteLength());
+            if (todo <= 0) {
+                return 0;
+            }
+            List<PlannedStop> stops = courier.getPlannedStops();
+            boolean plainRoute = stops.isEmpty();
+            int oldX = courier.getCurrentX();
+            int oldY = courier.getCurrentY();
+
+            int moved = 0;
+            if (plainRoute) {
+                moved = courier.jumpAlongRoute(todo);
+            } else {
+                while (moved < todo && !stops.isEmpty()) {
+                    PlannedStop first = stops.get(0);
+                    int leg = courier.jumpAlongRoute(Math.min(first.getLegLength(), todo - moved));
+                    first.setLegLength(first.getLegLength() - leg);
+                    moved += leg;
+                    while (!stops.isEmpty() && stops.get(0).getLegLength() <= 0) {
+                        arriveAt(courier, stops.remove(0));
+                    }
+                }
+            }
+            courier.bumpPlanVersion();
+            spatialIndex.moved(courier, oldX, oldY);
+            fireMoveListeners(courier);
+
+            if (plainRoute && courier.getRemainingRouteLength() == 0) {
+                orderService.markOrdersDeliveredForCourier(courier.getId());
+                courier.getAssignedOrderIds().clear();
+                courier.setActiveRoute(List.of());
+            }
+            return moved;
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
 
+    // Cells until the courier's next stop, or until its route ends if it has no stops; 0 when idle
+    int cellsToNextEvent(Courier courier) {
+        courier.getLock().lock();
+        try {
+            List<PlannedStop> stops = courier.getPlannedStops();
+            return stops.isEmpty() ? courier.getRemainingRouteLength() : stops.get(0).getLegLength();
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
 
+    // Put a courier back where it was, e.g. when recovering state after a restart; no listener is told
+    void restorePosition(Courier courier, int x, int y) {
+        courier.getLock().lock();
+        try {
+            int oldX = courier.getCurrentX();
+            int oldY = courier.getCurrentY();
+            courier.setCurrentX(x);
+            courier.setCurrentY(y);
+            courier.bumpPlanVersion();
+            spatialIndex.moved(courier, oldX, oldY);
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
+
+    private void fireMoveListeners(Courier courier) {
+        for (Consumer<Courier> listener : moveListeners) {
+            listener.accept(courier);
+        }
+    }
+
+    void fireTickListeners() {
+        for (Runnable listener : tickListeners) {
+            listener.run();
+        }
+    }
+
+    private void arriveAt(Courier courier, PlannedStop stop) {
+        if (stop.isPickup()) {
+            orderService.markPickedUp(stop.getOrderId());
+        } else {
+            orderService.markDelivered(stop.getOrderId());
+            courier.getAssignedOrderIds().remove(Long.valueOf(stop.getOrderId()));
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.model.Courier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Uniform grid of buckets over courier positions, so nearest-courier and radius queries only look at
+// the buckets around the query point instead of the whole fleet. Each bucket covers bucketSize x bucketSize
+// cells; distances are Manhattan (grid cells), the same lower bound A* uses.
+public class CourierSpatialIndex {
+
+    private final int bucketSize;
+    // Only occupied buckets; one that becomes empty is dropped
+    private final ConcurrentHashMap<Long, Set<Courier>> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // Bucket coordinates ever occupied, so a nearest query knows when no further ring can hold a courier
+    private final AtomicInteger minBx = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger maxBx = new AtomicInteger(Integer.MIN_VALUE);
+    private final AtomicInteger minBy = new AtomicInteger(Integer.MAX_VALUE);
+    private final AtomicInteger maxBy = new AtomicInteger(Integer.MIN_VALUE);
+
+    public CourierSpatialIndex(int bucketSize) {
+        if (bucketSize <= 0) {
+            throw new IllegalArgumentException("bucketSize must be positive");
+        }
+        this.bucketSize = bucketSize;
+    }
+
+    public void add(Courier courier) {
+        if (addTo(courier.getCurrentX(), courier.getCurrentY(), courier)) {
+            size.incrementAndGet();
+        }
+    }
+
+    public void remove(Courier courier) {
+        if (removeFrom(courier.getCurrentX(), courier.getCurrentY(), courier)) {
+            size.decrementAndGet();
+        }
+    }
+
+    // Update the index after a courier moved from (oldX, oldY) to its current position
+    public void moved(Courier courier, int oldX, int oldY) {
+        long oldKey = bucketKey(oldX, oldY);
+        long newKey = bucketKey(courier.getCurrentX(), courier.getCurrentY());
+        if (oldKey == newKey) {
+            return; // most steps stay inside the bucket
+        }
+        removeFrom(oldX, oldY, courier);
+        addTo(courier.getCurrentX(), courier.getCurrentY(), courier);
+    }
+
+    // Couriers standing exactly on (x, y)
+    public List<Courier> at(int x, int y) {
+        Set<Courier> bucket = buckets.get(bucketKey(x, y));
+        if (bucket == null) {
+            return List.of();
+        }
+        List<Courier> result = new ArrayList<>(1);
+        for (Courier courier : bucket) {
+            if (courier.getCurrentX() == x && courier.getCurrentY() == y) {
+                result.add(courier);
+            }
+        }
+        return result;
+    }
+
+    // Couriers at most radius cells (Manhattan) from (x, y), nearest first
+    public List<Courier> within(int x, int y, int radius) {
+        List<Hit> hits = new ArrayList<>();
+        int minBx = Math.floorDiv(x - radius, bucketSize);
+        int maxBx = Math.floorDiv(x + radius, bucketSize);
+        int minBy = Math.floorDiv(y - radius, bucketSize);
+        int maxBy = Math.floorDiv(y + radius, bucketSize);
+
+        for (int bx = minBx; bx <= maxBx; bx++) {
+            for (int by = minBy; by <= maxBy; by++) {
+                Set<Courier> bucket = buckets.get(key(bx, by));
+                if (bucket == null) continue;
+                for (Courier courier : bucket) {
+                    int d = distance(courier, x, y);
+                    if (d <= radius) {
+                        hits.add(new Hit(courier, d));
+                    }
+                }
+            }
+        }
+        return sorted(hits, hits.size());
+    }
+
+    // The k couriers nearest to (x, y) by Manhattan distance, nearest first.
+    // Scans rings of buckets outwards and stops once no unseen bucket can hold anything closer, once every
+    // courier was seen, or past the furthest bucket ever occupied.
+    public List<Courier> nearest(int x, int y, int k) {
+        int total = size.get();
+        if (k <= 0 || total == 0) {
+            return List.of();
+        }
+        int bx = Math.floorDiv(x, bucketSize);
+        int by = Math.floorDiv(y, bucketSize);
+        int maxRing = Math.max(0, Math.max(
+                Math.max(bx - minBx.get(), maxBx.get() - bx),
+                Math.max(by - minBy.get(), maxBy.get() - by)));
+
+        List<Hit> hits = new ArrayList<>();
+        for (int ring = 0; ring <= maxRing && hits.size() < total; ring++) {
+            // Everything in ring r is at least (r - 1) * bucketSize + 1 cells away
+            if (hits.size() >= k) {
+                hits.sort(Comparator.comparingInt(Hit::distance));
+                if (hits.get(k - 1).distance() <= (ring - 1) * bucketSize) {
+                    break;
+                }
+            }
+            collectRing(bx, by, ring, x, y, hits);
+        }
+        return sorted(hits, k);
+    }
+
+    private void collectRing(int bx, int by, int ring, int x, int y, List<Hit> hits) {
+        if (ring == 0) {
+            collectBucket(bx, by, x, y, hits);
+            return;
+        }
+        for (int dx = -ring; dx <= ring; dx++) {
+            collectBucket(bx + dx, by - ring, x, y, hits);
+            collectBucket(bx + dx, by + ring, x, y, hits);
+        }
+        for (int dy = -ring + 1; dy <= ring - 1; dy++) {
+            collectBucket(bx - ring, by + dy, x, y, hits);
+            collectBucket(bx + ring, by + dy, x, y, hits);
+        }
+    }
+
+    private void collectBucket(int bx, int by, int x, int y, List<Hit> hits) {
+        Set<Courier> bucket = buckets.get(key(bx, by));
+        if (bucket == null) return;
+        for (Courier courier : bucket) {
+            hits.add(new Hit(courier, distance(courier, x, y)));
+        }
+    }
+
+    // Distances are captured once, so couriers moving during a query can not break the sort
+    private record Hit(Courier courier, int distance) {}
+
+    private static List<Courier> sorted(List<Hit> hits, int limit) {
+        hits.sort(Comparator.comparingInt(Hit::distance));
+        List<Courier> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            result.add(hits.get(i).courier());
+        }
+        return result;
+    }
+
+    private static int distance(Courier courier, int x, int y) {
+        return Math.abs(courier.getCurrentX() - x) + Math.abs(courier.getCurrentY() - y);
+    }
+
+    // Both change the bucket inside compute, so a bucket dropped as empty never swallows a courier added to it
+    private boolean addTo(int x, int y, Courier courier) {
+        int bx = Math.floorDiv(x, bucketSize);
+        int by = Math.floorDiv(y, bucketSize);
+        minBx.accumulateAndGet(bx, Math::min);
+        maxBx.accumulateAndGet(bx, Math::max);
+        minBy.accumulateAndGet(by, Math::min);
+        maxBy.accumulateAndGet(by, Math::max);
+
+        boolean[] added = new boolean[1];
+        buckets.compute(key(bx, by), (k, bucket) -> {
+            Set<Courier> result = bucket != null ? bucket : ConcurrentHashMap.newKeySet();
+            added[0] = result.add(courier);
+            return result;
+        });
+        return added[0];
+    }
+
+    private boolean removeFrom(int x, int y, Courier courier) {
+        boolean[] removed = new boolean[1];
+        buckets.computeIfPresent(bucketKey(x, y), (k, bucket) -> {
+            removed[0] = bucket.remove(courier);
+            return bucket.isEmpty() ? null : bucket;
+        });
+        return removed[0];
+    }
+
+    // Number of occupied buckets
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    private long bucketKey(int x, int y) {
+        return key(Math.floorDiv(x, bucketSize), Math.floorDiv(y, bucketSize));
+    }
+
+    private static long key(int bx, int by) {
+        return ((long) bx << 32) | (by & 0xffffffffL);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.routeplanner.service;
+
+// Which couriers dispatch scores for a new order.
+public enum DispatchMode {
+    // Every courier in the fleet
+    ALL,
+    // Only the couriers nearest to the restaurant by road, found with one bounded reverse search
+    NEAREST_BY_ROAD,
+    // Only the couriers nearest to the restaurant as the crow flies, from the spatial index
+    NEAREST_BY_DISTANCE,
+    // Couriers within a fixed radius of the restaurant (the nearest ones if nobody is that close)
+    WITHIN_RADIUS
+}
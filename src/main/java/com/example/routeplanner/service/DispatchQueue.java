@@ -0,0 +1,83 @@
+package com.example.routeplanner.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded queue of orders waiting for asynchronous dispatch.
+// OrderService offers new orders here (when async dispatch is on) and DispatchScheduler takes them in
+// micro-batches. A full queue refuses the order, so callers back off instead of piling up work.
+@Service
+public class DispatchQueue {
+
+    public record Entry(long orderId, long enqueuedNanos) {}
+
+    private final boolean enabled;
+    private final int capacity;
+    private final BlockingQueue<Entry> queue;
+    private final LongAdder rejected = new LongAdder();
+
+    public DispatchQueue(@Value("${routeplanner.dispatch.async.enabled:false}") boolean enabled,
+                         @Value("${routeplanner.dispatch.queue.capacity:1000}") int capacity) {
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayBlockingQueue<>(this.capacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Returns false (and counts a rejection) if the queue is full
+    public boolean offer(long orderId) {
+        boolean accepted = queue.offer(new Entry(orderId, System.nanoTime()));
+        if (!accepted) {
+            rejected.increment();
+        }
+        return accepted;
+    }
+
+    // Wait up to idleMs for the first order, then keep collecting until maxBatch orders are taken
+    // or windowMs has passed since the first one. Returns an empty list if nothing arrived.
+    public List<Entry> takeBatch(int maxBatch, long windowMs, long idleMs) throws InterruptedException {
+        List<Entry> batch = new ArrayList<>();
+        Entry first = queue.poll(idleMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+        while (batch.size() < maxBatch) {
+            queue.drainTo(batch, maxBatch - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatch || remaining <= 0) {
+                break;
+            }
+            Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break; // window closed
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
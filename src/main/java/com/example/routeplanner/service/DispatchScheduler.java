@@ -0,0 +1,140 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.dto.BatchAssignmentDTO;
+import com.example.routeplanner.dto.DispatchStatsDTO;
+import com.example.routeplanner.dto.OrderAssignmentDTO;
+import com.example.routeplanner.metrics.Histogram;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Background worker that drains the dispatch queue in micro-batches: a batch closes windowMs after its
+// first order or as soon as maxBatch orders are waiting, and is assigned in one min-cost matching pass.
+// Clients see the outcome on the order's status. Orders nobody can reach stay NEW.
+// With queue.zoned set, large batches are split into dispatch zones that are matched in parallel.
+@Service
+public class DispatchScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(DispatchScheduler.class);
+
+    private final DispatchQueue dispatchQueue;
+    private final OrderService orderService;
+    private final BatchDispatchService batchDispatchService;
+    private final ZoneDispatchService zoneDispatchService;
+    private final boolean zoned;
+    private final long windowMs;
+    private final int maxBatch;
+
+    private final Histogram queueDepths = new Histogram();
+    private final Histogram batchSizes = new Histogram();
+    private final Histogram latencyMicros = new Histogram();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public DispatchScheduler(DispatchQueue dispatchQueue,
+                             OrderService orderService,
+                             BatchDispatchService batchDispatchService,
+                             ZoneDispatchService zoneDispatchService,
+                             @Value("${routeplanner.dispatch.queue.zoned:false}") boolean zoned,
+                             @Value("${routeplanner.dispatch.queue.window-ms:200}") long windowMs,
+                             @Value("${routeplanner.dispatch.queue.max-batch:50}") int maxBatch) {
+        this.dispatchQueue = dispatchQueue;
+        this.orderService = orderService;
+        this.batchDispatchService = batchDispatchService;
+        this.zoneDispatchService = zoneDispatchService;
+        this.zoned = zoned;
+        this.windowMs = Math.max(0, windowMs);
+        this.maxBatch = Math.max(1, maxBatch);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!dispatchQueue.isEnabled()) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "dispatch-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                List<DispatchQueue.Entry> batch = dispatchQueue.takeBatch(maxBatch, windowMs, 1000);
+                if (!batch.isEmpty()) {
+                    dispatchBatch(batch);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                // keep the worker alive; the orders stay NEW and can be assigned by hand
+                log.warn("Dispatch batch failed", ex);
+            }
+        }
+    }
+
+    // Assign one drained batch and record its metrics
+    void dispatchBatch(List<DispatchQueue.Entry> batch) {
+        queueDepths.record(batch.size() + dispatchQueue.depth());
+        batchSizes.record(batch.size());
+
+        Map<Long, Long> enqueuedAt = new HashMap<>();
+        List<Order> orders = new ArrayList<>(batch.size());
+        for (DispatchQueue.Entry entry : batch) {
+            Order order = orderService.findOrderEntity(entry.orderId());
+            // May have been assigned by hand while it waited
+            if (order != null && order.getStatus() == OrderStatus.NEW) {
+                orders.add(order);
+                enqueuedAt.put(entry.orderId(), entry.enqueuedNanos());
+            }
+        }
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        BatchAssignmentDTO result = zoned
+                ? zoneDispatchService.assignOrders(orders)
+                : batchDispatchService.assignOrders(orders);
+
+        long now = System.nanoTime();
+        for (OrderAssignmentDTO assignment : result.assignments()) {
+            Long start = enqueuedAt.get(assignment.order().id());
+            if (start != null) {
+                latencyMicros.record((now - start) / 1_000);
+            }
+        }
+    }
+
+    public DispatchStatsDTO stats() {
+        return new DispatchStatsDTO(
+                dispatchQueue.isEnabled(),
+                dispatchQueue.depth(),
+                dispatchQueue.getCapacity(),
+                dispatchQueue.getRejected(),
+                queueDepths.snapshot(),
+                batchSizes.snapshot(),
+                latencyMicros.snapshot()
+        );
+    }
+}
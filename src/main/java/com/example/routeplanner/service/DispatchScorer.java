@@ -0,0 +1,52 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.model.Courier;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+
+// Scores couriers for an order by the true marginal cost of fitting it into their current plan:
+// the extra road cost of the cheapest pickup and drop-off insertion. The restaurant -> customer leg and the
+// distance fields are looked up once per order; each courier then costs O(stops) array reads and no searches.
+// What is left of a courier's first leg comes from running cell costs stored with its route, not a walk of it.
+@Service
+public class DispatchScorer {
+
+    private final RoutePlanner routePlanner;
+
+    public DispatchScorer(RoutePlanner routePlanner) {
+        this.routePlanner = routePlanner;
+    }
+
+    // The chosen courier and where the order goes in its plan
+    public record Candidate(Courier courier, RoutePlanner.Insertion insertion) {}
+
+    // Cheapest courier for an order picked up at (restX, restY) and delivered to (destX, destY),
+    // or null if no courier can reach it. Ties go to the courier carrying fewer orders.
+    public Candidate bestCandidate(Collection<Courier> couriers, int restX, int restY, int destX, int destY) {
+        RoutePlanner.OrderCosts costs = routePlanner.orderCosts(restX, restY, destX, destY);
+        if (costs.pickupToDropoff() == Double.POSITIVE_INFINITY) {
+            return null; // the customer can not be reached from the restaurant at all
+        }
+
+        Candidate best = null;
+        for (Courier courier : couriers) {
+            RoutePlanner.Insertion insertion = routePlanner.cheapestInsertion(courier, costs);
+            if (insertion == null) {
+                continue; // this courier cannot reach the restaurant (blocked, etc.)
+            }
+            if (best == null || isBetter(insertion, courier, best)) {
+                best = new Candidate(courier, insertion);
+            }
+        }
+        return best;
+    }
+
+    private static boolean isBetter(RoutePlanner.Insertion insertion, Courier courier, Candidate best) {
+        double diff = insertion.addedCost() - best.insertion().addedCost();
+        if (Math.abs(diff) > 1e-9) {
+            return diff < 0;
+        }
+        return courier.getAssignedOrderIds().size() < best.courier().getAssignedOrderIds().size();
+    }
+}
@@ -1,42 +1,63 @@
 package com.example.routeplanner.service;
 
-import com.example.routeplanner.service.CourierRouteService;
-import com.example.routeplanner.dto.MultiStopRouteResponse;
 import com.example.routeplanner.dto.CourierDTO;
 import com.example.routeplanner.city.CityMap;
 import com.example.routeplanner.dto.OrderAssignmentDTO;
 import com.example.routeplanner.dto.OrderDTO;
-import com.example.routeplanner.dto.RouteResponse;
 import com.example.routeplanner.model.Courier;
 import com.example.routeplanner.model.Order;
 import com.example.routeplanner.model.OrderStatus;
+import jakarta.annotation.PostConstruct;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 @Service
 public class DispatchService {
 
+    // Optimistic scoring rounds before the winner is locked and rescored
+    private static final int MAX_ATTEMPTS = 3;
+
     private final OrderService orderService;
     private final CourierService courierService;
     private final CityMap cityMap;
-    private final RouteService routeService;
-    private final CourierRouteService courierRouteService;
+    private final RouteCache routeCache;
+    private final RoutePlanner routePlanner;
+    private final DispatchScorer dispatchScorer;
+    private final CourierCandidateSelector candidateSelector;
+    private final RouteMaterializer routeMaterializer;
 
     public DispatchService(OrderService orderService,
                            CourierService courierService,
                            CityMap cityMap,
-                           RouteService routeService, CourierRouteService courierRouteService) {
+                           RouteCache routeCache,
+                           RoutePlanner routePlanner,
+                           DispatchScorer dispatchScorer,
+                           CourierCandidateSelector candidateSelector,
+                           RouteMaterializer routeMaterializer) {
         this.orderService = orderService;
         this.courierService = courierService;
         this.cityMap = cityMap;
-        this.routeService = routeService;
-        this.courierRouteService = courierRouteService;
+        this.routeCache = routeCache;
+        this.routePlanner = routePlanner;
+        this.dispatchScorer = dispatchScorer;
+        this.candidateSelector = candidateSelector;
+        this.routeMaterializer = routeMaterializer;
+
+        // Reroute couriers whose active route got blocked or slower by a grid change
+        routeCache.addCourierRouteListener(this::rerouteCourier);
+    }
+
+    // Stop watching the cells couriers have driven past, so only changes ahead of them reroute
+    @PostConstruct
+    void pruneDrivenCells() {
+        courierService.addMoveListener(routeCache::courierMoved);
     }
 
 
-    // Assign the given order to the best courier based on total route distance
+    // Assign the given order to the courier with the lowest marginal route cost
     public OrderAssignmentDTO assignOrderToBestCourier(long orderId) {
         Order order = orderService.getOrderEntity(orderId);
 
@@ -46,11 +67,6 @@ public class DispatchService {
             );
         }
 
-        List<Courier> couriers = courierService.listCourierEntities();
-        if (couriers.isEmpty()) {
-            throw new IllegalStateException("No couriers available for assignment");
-        }
-
         // Find the restaurant for this order
         var restaurantOpt = cityMap.findRestaurantById(order.getRestaurantId());
         if (restaurantOpt.isEmpty()) {
@@ -60,87 +76,117 @@ public class DispatchService {
 
         int restX = restaurant.x();
         int restY = restaurant.y();
-        int destX = order.getX();
-        int destY = order.getY();
-
-        Courier bestCourier = null;
-        double bestScore = Double.POSITIVE_INFINITY;
-
-        final double penaltyPerOrder = 15.0;
 
-        for (Courier courier : couriers) {
+        // Scoring runs without holding any courier; if the winner's plan changed meanwhile, score again.
+        // The last attempt keeps the winner anyway (its insertion is recomputed when the route is built),
+        // so dispatch always finishes.
+        for (int attempt = 1; ; attempt++) {
+            List<Courier> couriers = candidateSelector.candidatesFor(restX, restY);
+            if (couriers.isEmpty()) {
+                throw new IllegalStateException("No couriers available for assignment");
+            }
 
-            // route from courier to restaurant
-            RouteResponse toRestaurant = routeService.computeRouteOnGrid(
-                    cityMap.getGrid(),
-                    courier.getCurrentX(),
-                    courier.getCurrentY(),
-                    restX,
-                    restY,
-                    Heuristic.MANHATTAN.name()
+            // Pick the courier whose current plan grows the least when this order is added
+            DispatchScorer.Candidate best = dispatchScorer.bestCandidate(
+                    couriers, restX, restY, order.getX(), order.getY()
             );
-
-            if (!Double.isFinite(toRestaurant.totalDistance()) ||
-                    toRestaurant.path().isEmpty()) {
-                // This courier cannot reach the restaurant (blocked, etc.).
-                continue;
+            if (best == null) {
+                throw new IllegalStateException("No courier can reach this order (blocked by city layout)");
             }
 
-            // route from restaurant to customer
-            RouteResponse toCustomer = routeService.computeRouteOnGrid(
-                    cityMap.getGrid(),
-                    restX,
-                    restY,
-                    destX,
-                    destY,
-                    Heuristic.MANHATTAN.name()
+            Commit commit = commitAssignment(
+                    order, best.courier(), best.insertion(), restX, restY, attempt >= MAX_ATTEMPTS
             );
-
-            if (!Double.isFinite(toCustomer.totalDistance()) ||
-                    toCustomer.path().isEmpty()) {
-                // This courier cannot reach the customer from the restaurant.
-                continue;
+            if (commit != null) {
+                orderService.awaitDurable(); // the courier's lock is released by now
+                return commit.assignment();
             }
+        }
+    }
 
-            double baseDistance = toRestaurant.totalDistance() + toCustomer.totalDistance();
-
-            // penalty for how many orders this courier already has
-            int existingOrders = courier.getAssignedOrderIds().size();
-            double score = baseDistance + penaltyPerOrder * existingOrders;
+    // A claimed order and its queued route update. routeInstalled completes with the insertion actually used,
+    // which is recomputed (and so costs something else than the scored one) if the plan changed meanwhile.
+    // It completes exceptionally if the courier can no longer reach the order, which is then NEW again.
+    record Commit(OrderAssignmentDTO assignment, CompletableFuture<RoutePlanner.Insertion> routeInstalled) {}
+
+    // Claim the order for the courier and queue the route update; the response does not wait for any path search.
+    // With an async RouteMaterializer the plan is not installed yet when this returns, so a caller that scores
+    // the same couriers again must join routeInstalled first, and the scored addedCost is only an estimate.
+    // Returns null if the courier's plan changed since the insertion was computed (unless recomputeIfStale),
+    // throws IllegalArgumentException if another dispatcher claimed the order first. A route that can not be
+    // installed never throws here, in either mode; it only fails routeInstalled.
+    Commit commitAssignment(Order order, Courier courier, RoutePlanner.Insertion insertion,
+                            int restX, int restY, boolean recomputeIfStale) {
+        courier.getLock().lock();
+        try {
+            if (insertion.planVersion() != courier.getPlanVersion() && !recomputeIfStale) {
+                return null;
+            }
 
-            if (score < bestScore) {
-                bestScore = score;
-                bestCourier = courier;
+            // NEW -> ASSIGNED in one CAS, so an order can never go to two couriers
+            if (!order.tryAssign(courier.getId())) {
+                throw new IllegalArgumentException(
+                        "Order " + order.getId() + " is not NEW (current status: " + order.getStatus() + ")"
+                );
             }
+            courier.assignOrder(order.getId());
+        } finally {
+            courier.getLock().unlock();
         }
 
-        if (bestCourier == null) {
-            throw new IllegalStateException("No courier can reach this order (blocked by city layout)");
+        // Queued behind any earlier update of this courier, so its plan changes one at a time
+        CompletableFuture<RoutePlanner.Insertion> installed = new CompletableFuture<>();
+        try {
+            routeMaterializer.submit(courier, () -> {
+                try {
+                    installed.complete(materializeRoute(order, courier, insertion, restX, restY));
+                } catch (RuntimeException ex) {
+                    installed.completeExceptionally(ex);
+                    throw ex; // logged by an async materializer
+                }
+            });
+        } catch (RuntimeException ex) {
+            // An inline materializer lets it through; like in async mode it is only reported by routeInstalled
         }
 
-        bestCourier.assignOrder(order.getId());
-        order.setAssignedCourierId(bestCourier.getId());
-        order.setStatus(OrderStatus.ASSIGNED);
-
-// Recompute the full multi-stop route for this courier
-        MultiStopRouteResponse finalRoute =
-                courierRouteService.computeRouteForCourier(
-                        bestCourier.getId(),
-                        Heuristic.MANHATTAN.name(),   // use Manhattan heuristic
-                        "NEAREST_NEIGHBOR"            // or whatever strategy name you registered
-                );
-
-// Convert route path into int[] steps for movement
-        var steps = finalRoute.path().stream()
-                .map(p -> new int[]{ p.x(), p.y() })
-                .toList();
+        OrderDTO orderDTO = orderService.getOrder(order.getId());
+        CourierDTO courierDTO = courierService.toDTOPublic(courier);
 
-// Store route in the courier so /api/sim/step can move them
-        bestCourier.setActiveRoute(steps);
+        return new Commit(new OrderAssignmentDTO(orderDTO, courierDTO), installed);
+    }
 
-        OrderDTO orderDTO = orderService.getOrder(order.getId());
-        CourierDTO courierDTO = courierService.toDTOPublic(bestCourier);
+    // Slot the pickup and drop-off into the courier's current route instead of replanning all of it.
+    // The scored insertion is used while the plan is unchanged, otherwise the cheapest one is recomputed.
+    // If the courier can no longer reach the order it goes back to NEW so it can be dispatched again.
+    // Returns the insertion that was installed.
+    private RoutePlanner.Insertion materializeRoute(Order order, Courier courier, RoutePlanner.Insertion scored,
+                                                    int restX, int restY) {
+        courier.getLock().lock();
+        try {
+            if (scored.planVersion() == courier.getPlanVersion()) {
+                routePlanner.insertOrder(courier, order, restX, restY, scored);
+                return scored;
+            }
+            return routePlanner.insertOrder(courier, order, restX, restY);
+        } catch (RuntimeException ex) {
+            courier.getAssignedOrderIds().remove(Long.valueOf(order.getId()));
+            order.unassign(courier.getId());
+            throw ex;
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
 
-        return new OrderAssignmentDTO(orderDTO, courierDTO);
+    // Called by the route cache when a grid change touches a courier's active route
+    void rerouteCourier(String courierId) {
+        Courier courier = courierService.getCourier(courierId);
+        if (courier == null || courier.getPlannedStops().isEmpty()) {
+            return; // route already finished, nothing to fix
+        }
+        routeMaterializer.submit(courier, () -> {
+            if (!courier.getPlannedStops().isEmpty()) {
+                routePlanner.rebuildRoute(courier);
+            }
+        });
     }
 }
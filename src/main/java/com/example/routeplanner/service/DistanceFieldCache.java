@@ -0,0 +1,113 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.GridChangeListener;
+import com.example.routeplanner.strategy.CostOracle;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Precomputed Dijkstra distance fields on the city grid, one per source (or target) cell.
+// A field answers "cost from this point to anywhere" (or "from anywhere to this point") in O(1),
+// which is what delivery strategies need to rank many candidate stops without running a search per pair.
+@Service
+public class DistanceFieldCache implements GridChangeListener {
+
+    // Upper bound on cached distances (doubles) across all fields, roughly 64 MB
+    private static final long MAX_CACHED_CELLS = 8_000_000L;
+
+    private final CityMap cityMap;
+    private final RouteService routeService;
+
+    private final ConcurrentHashMap<Long, double[]> fields = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, double[]> reverseFields = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public DistanceFieldCache(CityMap cityMap, RouteService routeService) {
+        this.cityMap = cityMap;
+        this.routeService = routeService;
+    }
+
+    @PostConstruct
+    void registerWithGrid() {
+        cityMap.getGrid().addChangeListener(this);
+    }
+
+    // Cost from (sourceX, sourceY) to every cell of the city grid, indexed by y * width + x
+    public double[] getField(int sourceX, int sourceY) {
+        return lookup(fields, sourceX, sourceY, false);
+    }
+
+    // Cost from every cell of the city grid to (targetX, targetY), indexed by y * width + x
+    public double[] getReverseField(int targetX, int targetY) {
+        return lookup(reverseFields, targetX, targetY, true);
+    }
+
+    private double[] lookup(ConcurrentHashMap<Long, double[]> cache, int x, int y, boolean reverse) {
+        long key = cellKey(x, y);
+        double[] field = cache.get(key);
+        if (field != null) {
+            return field;
+        }
+
+        long generationBefore = generation.get();
+        Grid grid = cityMap.getGrid();
+        field = reverse
+                ? routeService.computeReverseDistanceField(grid, x, y)
+                : routeService.computeDistanceField(grid, x, y);
+
+        // Only cache if the grid did not change during the search
+        if (generation.get() == generationBefore) {
+            long maxFields = Math.max(16, MAX_CACHED_CELLS / Math.max(1, field.length));
+            if (size() >= maxFields) {
+                evict(maxFields / 2);
+            }
+            cache.put(key, field);
+        }
+        return field;
+    }
+
+    // Drop fields until at most keep are left, so a full cache keeps half of its work instead of starting over
+    private void evict(long keep) {
+        for (ConcurrentHashMap<Long, double[]> cache : List.of(fields, reverseFields)) {
+            var keys = cache.keySet().iterator();
+            while (size() > keep && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+    }
+
+    // Road costs on the city grid, answered from the cached distance fields.
+    // Fields are keyed by the destination (a stop, which stays put), not the start (often a courier's current
+    // cell, which changes every step), so one reverse field per stop answers the cost from anywhere to it.
+    public CostOracle costOracle() {
+        Grid grid = cityMap.getGrid();
+        return (fromX, fromY, toX, toY) -> {
+            if (!grid.inBounds(fromX, fromY) || !grid.inBounds(toX, toY)) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return getReverseField(toX, toY)[fromY * grid.getWidth() + fromX];
+        };
+    }
+
+    public int size() {
+        return fields.size() + reverseFields.size();
+    }
+
+    @Override
+    public void onCellChanged(int x, int y, double oldCost, double newCost) {
+        // A field depends on every cell, so any change makes all of them stale
+        generation.incrementAndGet();
+        fields.clear();
+        reverseFields.clear();
+    }
+
+    private static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+}
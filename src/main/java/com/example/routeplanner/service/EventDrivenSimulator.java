@@ -0,0 +1,67 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.model.Courier;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Advances the simulation by many ticks without stepping every courier through every cell.
+// Each courier's next arrival (pickup, drop-off or the end of a plain route) goes into a queue ordered by
+// simulation time, and the simulator jumps from event to event, moving only the courier whose event it is.
+// Couriers are brought to their final cell once at the end, so reads afterwards see the same positions
+// and order states as the same number of single ticks. Work is O(events log couriers + couriers).
+@Service
+public class EventDrivenSimulator {
+
+    private final CourierService courierService;
+
+    public EventDrivenSimulator(CourierService courierService) {
+        this.courierService = courierService;
+    }
+
+    private record Event(long time, int courier) {}
+
+    // Run ticks simulation ticks; returns the number of events handled. Callers serialize it with other ticks.
+    public long run(long ticks) {
+        List<Courier> couriers = courierService.listCourierEntities();
+        long[] synced = new long[couriers.size()]; // time each courier's position was last brought up to
+        PriorityQueue<Event> queue = new PriorityQueue<>(
+                Math.max(1, couriers.size()),
+                Comparator.comparingLong(Event::time).thenComparingInt(Event::courier)
+        );
+
+        for (int c = 0; c < couriers.size(); c++) {
+            schedule(queue, couriers.get(c), c, 0);
+        }
+
+        long events = 0;
+        while (!queue.isEmpty() && queue.peek().time() <= ticks) {
+            Event event = queue.poll();
+            Courier courier = couriers.get(event.courier());
+            courierService.advanceBy(courier, cells(event.time() - synced[event.courier()]));
+            synced[event.courier()] = event.time();
+            events++;
+            schedule(queue, courier, event.courier(), event.time());
+        }
+
+        // Positions between events are only needed now: move everyone still driving to where they are at the end
+        for (int c = 0; c < couriers.size(); c++) {
+            courierService.advanceBy(couriers.get(c), cells(ticks - synced[c]));
+        }
+        courierService.fireTickListeners();
+        return events;
+    }
+
+    private void schedule(PriorityQueue<Event> queue, Courier courier, int index, long now) {
+        int cells = courierService.cellsToNextEvent(courier);
+        if (cells > 0) {
+            queue.add(new Event(now + cells, index));
+        }
+    }
+
+    private static int cells(long ticks) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, ticks));
+    }
+}
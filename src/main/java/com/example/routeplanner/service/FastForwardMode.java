@@ -0,0 +1,9 @@
+package com.example.routeplanner.service;
+
+// How the simulation clock fast-forwards.
+public enum FastForwardMode {
+    // Every tick in turn, each courier one cell per tick
+    STEP,
+    // From one pickup or drop-off to the next, with positions brought up to date at the end
+    EVENTS
+}
@@ -0,0 +1,414 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.OptimizerRunDTO;
+import com.example.routeplanner.dto.OptimizerStatsDTO;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import com.example.routeplanner.model.PlannedStop;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+// Background job that undoes the drift of greedy one-by-one dispatch. Each round snapshots every courier's
+// plan, then looks (in parallel, one task per courier) for the best way to move one of its not yet picked up
+// orders to another courier, or to swap it with one of theirs. The best moves that touch disjoint couriers
+// are applied if both plans are still the ones that were scored. Rounds repeat until the time budget is used
+// or nothing improves. Only orders that are ASSIGNED and routed (both stops in the plan) ever move.
+@Service
+public class FleetOptimizer {
+
+    private static final Logger log = LoggerFactory.getLogger(FleetOptimizer.class);
+
+    // Ignore moves that only win by rounding noise
+    private static final double MIN_GAIN = 1e-6;
+
+    private final CourierService courierService;
+    private final OrderService orderService;
+    private final CityMap cityMap;
+    private final RoutePlanner routePlanner;
+    private final DistanceFieldCache distanceFieldCache;
+    private final boolean scheduled;
+    private final long intervalMs;
+    private final long budgetMs;
+
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final Object runLock = new Object();
+    private volatile OptimizerStatsDTO stats;
+    private ScheduledExecutorService scheduler;
+
+    public FleetOptimizer(CourierService courierService,
+                          OrderService orderService,
+                          CityMap cityMap,
+                          RoutePlanner routePlanner,
+                          DistanceFieldCache distanceFieldCache,
+                          @Value("${routeplanner.optimizer.enabled:false}") boolean scheduled,
+                          @Value("${routeplanner.optimizer.interval-ms:5000}") long intervalMs,
+                          @Value("${routeplanner.optimizer.budget-ms:50}") long budgetMs) {
+        this.courierService = courierService;
+        this.orderService = orderService;
+        this.cityMap = cityMap;
+        this.routePlanner = routePlanner;
+        this.distanceFieldCache = distanceFieldCache;
+        this.scheduled = scheduled;
+        this.intervalMs = Math.max(1, intervalMs);
+        this.budgetMs = Math.max(0, budgetMs);
+        this.stats = new OptimizerStatsDTO(scheduled, this.intervalMs, this.budgetMs, 0, 0.0, 0.0, null);
+    }
+
+    // Snapshot of one courier's plan, taken under its lock
+    private record CourierPlan(Courier courier, long version, List<PlannedStop> stops, int[] cells, double[] legCosts) {}
+
+    // An order that may move, with its plan after taking it out (cells and leg costs as in RoutePlanner.planCosts)
+    private record MovableOrder(long orderId, int pickupIndex, int dropoffIndex, RoutePlanner.OrderCosts costs,
+                                int[] cellsWithout, double[] legCostsWithout, double saved) {}
+
+    // Move order from one courier to another, optionally taking swapped back in exchange
+    private record Move(int from, MovableOrder order, int to, MovableOrder swapped,
+                        RoutePlanner.Insertion intoTo, RoutePlanner.Insertion intoFrom, double gain) {}
+
+    @PostConstruct
+    void start() {
+        if (!scheduled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fleet-optimizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (RuntimeException ex) {
+                log.warn("Fleet optimization failed", ex);
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public OptimizerStatsDTO stats() {
+        return stats;
+    }
+
+    // One optimization run; runs never overlap
+    public OptimizerRunDTO runOnce() {
+        synchronized (runLock) {
+            long startNanos = System.nanoTime();
+            long deadline = startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+            LongAdder cpuNanos = new LongAdder();
+            LongAdder evaluated = new LongAdder();
+
+            int rounds = 0;
+            int applied = 0;
+            int stale = 0;
+            double saved = 0.0;
+
+            while (System.nanoTime() < deadline) {
+                rounds++;
+                long cpuStart = cpuNow();
+                List<CourierPlan> plans = snapshot();
+                cpuNanos.add(cpuNow() - cpuStart);
+
+                List<Move> moves = search(plans, deadline, cpuNanos, evaluated);
+
+                cpuStart = cpuNow();
+                int appliedThisRound = 0;
+                for (Move move : disjoint(moves)) {
+                    if (apply(plans, move)) {
+                        appliedThisRound++;
+                        saved += move.gain();
+                    } else {
+                        stale++;
+                    }
+                }
+                cpuNanos.add(cpuNow() - cpuStart);
+
+                applied += appliedThisRound;
+                if (appliedThisRound == 0) {
+                    break;
+                }
+            }
+
+            OptimizerRunDTO run = new OptimizerRunDTO(
+                    rounds, evaluated.sum(), applied, stale, saved,
+                    cpuNanos.sum() / 1_000_000.0, (System.nanoTime() - startNanos) / 1_000_000.0
+            );
+            OptimizerStatsDTO previous = stats;
+            stats = new OptimizerStatsDTO(
+                    scheduled, intervalMs, budgetMs, previous.runs() + 1,
+                    previous.totalDistanceSaved() + run.distanceSaved(),
+                    previous.totalCpuTimeMs() + run.cpuTimeMs(),
+                    run
+            );
+            return run;
+        }
+    }
+
+    // Each courier is copied under its own lock; moves are validated against the plan versions when applied
+    private List<CourierPlan> snapshot() {
+        List<CourierPlan> plans = new ArrayList<>();
+        for (Courier courier : courierService.listCourierEntities()) {
+            courier.getLock().lock();
+            try {
+                RoutePlanner.PlanCosts costs = routePlanner.planCosts(courier);
+                plans.add(new CourierPlan(courier, courier.getPlanVersion(),
+                        List.copyOf(courier.getPlannedStops()), costs.cells(), costs.legCosts()));
+            } finally {
+                courier.getLock().unlock();
+            }
+        }
+        return plans;
+    }
+
+    // Best move starting at each courier, evaluated in parallel; every task stops at the deadline
+    private List<Move> search(List<CourierPlan> plans, long deadline, LongAdder cpuNanos, LongAdder evaluated) {
+        List<List<MovableOrder>> movable = IntStream.range(0, plans.size()).parallel()
+                .mapToObj(c -> timed(cpuNanos, () -> movableOrders(plans.get(c))))
+                .toList();
+
+        return IntStream.range(0, plans.size()).parallel()
+                .mapToObj(from -> timed(cpuNanos, () -> bestMoveFrom(from, plans, movable, deadline, evaluated)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private Move bestMoveFrom(int from, List<CourierPlan> plans, List<List<MovableOrder>> movable,
+                             long deadline, LongAdder evaluated) {
+        Move best = null;
+        for (MovableOrder order : movable.get(from)) {
+            for (int to = 0; to < plans.size(); to++) {
+                if (to == from) continue;
+                if (System.nanoTime() >= deadline) {
+                    return best;
+                }
+                CourierPlan target = plans.get(to);
+
+                // Relocate: the order leaves this plan and goes into the other one
+                RoutePlanner.Insertion into = RoutePlanner.bestInsertion(
+                        target.cells(), target.legCosts(), order.costs(), target.version());
+                evaluated.increment();
+                if (into != null) {
+                    double gain = order.saved() - into.addedCost();
+                    if (gain > MIN_GAIN && (best == null || gain > best.gain())) {
+                        best = new Move(from, order, to, null, into, null, gain);
+                    }
+                }
+
+                // Swap with each of the other courier's orders (each pair is scored from the lower index only)
+                if (to < from) continue;
+                for (MovableOrder other : movable.get(to)) {
+                    evaluated.increment();
+                    RoutePlanner.Insertion orderInto = RoutePlanner.bestInsertion(
+                            other.cellsWithout(), other.legCostsWithout(), order.costs(), target.version());
+                    RoutePlanner.Insertion otherInto = RoutePlanner.bestInsertion(
+                            order.cellsWithout(), order.legCostsWithout(), other.costs(), plans.get(from).version());
+                    if (orderInto == null || otherInto == null) continue;
+
+                    double gain = order.saved() + other.saved() - orderInto.addedCost() - otherInto.addedCost();
+                    if (gain > MIN_GAIN && (best == null || gain > best.gain())) {
+                        best = new Move(from, order, to, other, orderInto, otherInto, gain);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Orders whose pickup and drop-off are both still ahead in the plan and that are still only ASSIGNED
+    private List<MovableOrder> movableOrders(CourierPlan plan) {
+        List<MovableOrder> result = new ArrayList<>();
+        List<PlannedStop> stops = plan.stops();
+        for (int pickup = 0; pickup < stops.size(); pickup++) {
+            PlannedStop stop = stops.get(pickup);
+            if (!stop.isPickup()) continue;
+
+            int dropoff = pickup + 1;
+            while (dropoff < stops.size()
+                    && (stops.get(dropoff).getOrderId() != stop.getOrderId() || stops.get(dropoff).isPickup())) {
+                dropoff++;
+            }
+            Order order = orderService.findOrderEntity(stop.getOrderId());
+            if (dropoff == stops.size() || order == null || order.getStatus() != OrderStatus.ASSIGNED
+                    || !plan.courier().getId().equals(order.getAssignedCourierId())) {
+                continue;
+            }
+
+            PlannedStop drop = stops.get(dropoff);
+            result.add(without(plan, stop.getOrderId(), pickup, dropoff,
+                    routePlanner.orderCosts(stop.getX(), stop.getY(), drop.getX(), drop.getY())));
+        }
+        return result;
+    }
+
+    // The plan with the stops at pickup and dropoff taken out; legs that now skip a stop are priced from the fields
+    private MovableOrder without(CourierPlan plan, long orderId, int pickup, int dropoff, RoutePlanner.OrderCosts costs) {
+        int k = plan.stops().size();
+        int width = cityMap.getGrid().getWidth();
+        int[] cells = new int[k - 1];
+        double[] legs = new double[k - 2];
+        cells[0] = plan.cells()[0];
+
+        double before = 0.0;
+        double after = 0.0;
+        int n = 0;
+        for (int s = 0; s < k; s++) {
+            before += plan.legCosts()[s];
+            if (s == pickup || s == dropoff) continue;
+
+            PlannedStop stop = plan.stops().get(s);
+            boolean sameLeg = s == 0 || (s - 1 != pickup && s - 1 != dropoff);
+            cells[n + 1] = plan.cells()[s + 1];
+            legs[n] = sameLeg
+                    ? plan.legCosts()[s]
+                    : distanceFieldCache.getReverseField(stop.getX(), stop.getY())[cells[n]];
+            after += legs[n];
+            n++;
+        }
+        return new MovableOrder(orderId, pickup, dropoff, costs, cells, legs, before - after);
+    }
+
+    // Highest gains first, at most one move per courier, so every move is checked against an untouched snapshot
+    private static List<Move> disjoint(List<Move> moves) {
+        List<Move> sorted = new ArrayList<>(moves);
+        sorted.sort(Comparator.comparingDouble(Move::gain).reversed());
+
+        Set<Integer> used = new HashSet<>();
+        List<Move> result = new ArrayList<>();
+        for (Move move : sorted) {
+            if (used.contains(move.from()) || used.contains(move.to())) continue;
+            used.add(move.from());
+            used.add(move.to());
+            result.add(move);
+        }
+        return result;
+    }
+
+    // Apply the move if neither plan changed since the snapshot. Both couriers are locked in id order,
+    // the only place that holds two courier locks, so it can not deadlock with dispatch or stepping.
+    private boolean apply(List<CourierPlan> plans, Move move) {
+        CourierPlan from = plans.get(move.from());
+        CourierPlan to = plans.get(move.to());
+        Courier first = from.courier().getId().compareTo(to.courier().getId()) < 0 ? from.courier() : to.courier();
+        Courier second = first == from.courier() ? to.courier() : from.courier();
+
+        first.getLock().lock();
+        second.getLock().lock();
+        try {
+            if (from.courier().getPlanVersion() != from.version() || to.courier().getPlanVersion() != to.version()) {
+                return false;
+            }
+            Order order = orderService.findOrderEntity(move.order().orderId());
+            Order swapped = move.swapped() == null ? null : orderService.findOrderEntity(move.swapped().orderId());
+            if (!isAssignedTo(order, from.courier()) || (move.swapped() != null && !isAssignedTo(swapped, to.courier()))) {
+                return false;
+            }
+
+            List<PlannedStop> fromStops = withoutStops(from.stops(), move.order());
+            List<PlannedStop> toStops = move.swapped() == null
+                    ? new ArrayList<>(to.stops())
+                    : withoutStops(to.stops(), move.swapped());
+            insertStops(toStops, move.order(), move.intoTo(), from.stops());
+            if (swapped != null) {
+                insertStops(fromStops, move.swapped(), move.intoFrom(), to.stops());
+            }
+
+            // Both routes are searched before either is installed and before the orders change hands, so a
+            // courier that can not be routed, or an order changed meanwhile, leaves both plans and orders as they were
+            try {
+                boolean moved = routePlanner.replan(
+                        first, first == from.courier() ? fromStops : toStops,
+                        second, second == from.courier() ? fromStops : toStops,
+                        () -> handOver(order, swapped, from.courier(), to.courier()));
+                if (!moved) {
+                    return false;
+                }
+            } catch (IllegalStateException ex) {
+                return false;
+            }
+
+            from.courier().getAssignedOrderIds().remove(Long.valueOf(order.getId()));
+            to.courier().assignOrder(order.getId());
+            if (swapped != null) {
+                to.courier().getAssignedOrderIds().remove(Long.valueOf(swapped.getId()));
+                from.courier().assignOrder(swapped.getId());
+            }
+            return true;
+        } finally {
+            second.getLock().unlock();
+            first.getLock().unlock();
+        }
+    }
+
+    // Move the order to `to` and the swapped one (if any) to `from`; false, with neither moved, if either changed
+    private static boolean handOver(Order order, Order swapped, Courier from, Courier to) {
+        if (!order.reassign(from.getId(), to.getId())) {
+            return false;
+        }
+        if (swapped != null && !swapped.reassign(to.getId(), from.getId())) {
+            order.reassign(to.getId(), from.getId());
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isAssignedTo(Order order, Courier courier) {
+        return order != null && order.getStatus() == OrderStatus.ASSIGNED
+                && courier.getId().equals(order.getAssignedCourierId());
+    }
+
+    private static List<PlannedStop> withoutStops(List<PlannedStop> stops, MovableOrder order) {
+        List<PlannedStop> result = new ArrayList<>(stops);
+        result.remove(order.dropoffIndex());
+        result.remove(order.pickupIndex());
+        return result;
+    }
+
+    // Fresh stops for the moved order at the insertion's positions; they are copied from the plan it leaves
+    private static void insertStops(List<PlannedStop> target, MovableOrder order, RoutePlanner.Insertion insertion,
+                                    List<PlannedStop> sourceOriginal) {
+        PlannedStop pickup = sourceOriginal.get(order.pickupIndex());
+        PlannedStop dropoff = sourceOriginal.get(order.dropoffIndex());
+        target.add(insertion.pickupIndex(), new PlannedStop(order.orderId(), true, pickup.getX(), pickup.getY()));
+        target.add(insertion.dropoffIndex(), new PlannedStop(order.orderId(), false, dropoff.getX(), dropoff.getY()));
+    }
+
+    private <T> T timed(LongAdder cpuNanos, Supplier<T> work) {
+        long start = cpuNow();
+        try {
+            return work.get();
+        } finally {
+            cpuNanos.add(cpuNow() - start);
+        }
+    }
+
+    // CPU time of the calling thread, or wall time where the JVM can not measure it
+    private long cpuNow() {
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.routeplanner.service;
+
+import java.util.Arrays;
+
+// Min-cost assignment of rows to columns (Hungarian algorithm with potentials, O(n^2 * m)).
+// Works on rectangular matrices: every row (or column, whichever side is smaller) gets a distinct partner.
+// Infinite costs mean "not allowed"; such pairs are never returned.
+final class HungarianAssignment {
+
+    // Stands in for +infinity so potentials stay finite
+    private static final double FORBIDDEN = 1e12;
+
+    private HungarianAssignment() {
+    }
+
+    // For each row the assigned column, or -1 if the row got none (or only a forbidden one)
+    static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        int cols = rows == 0 ? 0 : cost[0].length;
+        int[] result = new int[rows];
+        Arrays.fill(result, -1);
+        if (rows == 0 || cols == 0) {
+            return result;
+        }
+
+        if (rows <= cols) {
+            int[] rowToCol = solveWide(cost, rows, cols, false);
+            for (int r = 0; r < rows; r++) {
+                if (cost[r][rowToCol[r]] < FORBIDDEN) {
+                    result[r] = rowToCol[r];
+                }
+            }
+        } else {
+            // More rows than columns: solve the transposed problem
+            int[] colToRow = solveWide(cost, cols, rows, true);
+            for (int c = 0; c < cols; c++) {
+                if (cost[colToRow[c]][c] < FORBIDDEN) {
+                    result[colToRow[c]] = c;
+                }
+            }
+        }
+        return result;
+    }
+
+    // n <= m; returns the column picked for each of the n rows (of the transposed matrix if asked)
+    private static int[] solveWide(double[][] cost, int n, int m, boolean transposed) {
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] match = new int[m + 1]; // match[col] = row (1-based), 0 = free
+        int[] way = new int[m + 1];
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int row = 1; row <= n; row++) {
+            match[0] = row;
+            int col0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+
+            do {
+                used[col0] = true;
+                int row0 = match[col0];
+                double delta = Double.POSITIVE_INFINITY;
+                int col1 = 0;
+
+                for (int col = 1; col <= m; col++) {
+                    if (used[col]) continue;
+                    double c = transposed ? cost[col - 1][row0 - 1] : cost[row0 - 1][col - 1];
+                    double reduced = Math.min(c, FORBIDDEN) - u[row0] - v[col];
+                    if (reduced < minv[col]) {
+                        minv[col] = reduced;
+                        way[col] = col0;
+                    }
+                    if (minv[col] < delta) {
+                        delta = minv[col];
+                        col1 = col;
+                    }
+                }
+
+                for (int col = 0; col <= m; col++) {
+                    if (used[col]) {
+                        u[match[col]] += delta;
+                        v[col] -= delta;
+                    } else {
+                        minv[col] -= delta;
+                    }
+                }
+                col0 = col1;
+            } while (match[col0] != 0);
+
+            // Flip the augmenting path
+            do {
+                int col1 = way[col0];
+                match[col0] = match[col1];
+                col0 = col1;
+            } while (col0 != 0);
+        }
+
+        int[] rowToCol = new int[n];
+        for (int col = 1; col <= m; col++) {
+            if (match[col] != 0) {
+                rowToCol[match[col] - 1] = col - 1;
+            }
+        }
+        return rowToCol;
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.dto.OrderArchiveDTO;
+import com.example.routeplanner.dto.OrderDTO;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Cold tier of the order store: delivered orders packed into an append-only byte log instead of one Order
+// object (plus state record, strings and index entries) each. A record is the id, delivery cell, interned
+// restaurant and courier numbers and the label only when it is not the default "Order #id", so about 28
+// bytes per order. By default the log lives in 1 MB heap segments; a configured directory puts it in a local
+// file instead, which moves only the records off the heap. The primitive id -> offset hash table that finds a
+// record in O(1) and the interned names stay on the heap either way, and the table is kept at most half full,
+// so every archived order still costs 32 to 64 heap bytes for its slot.
+// Delivered orders never change again, so records are never rewritten.
+@Service
+public class OrderArchive {
+
+    private static final int SEGMENT_SIZE = 1 << 20;
+    private static final int HEADER_BYTES = 8 + 4 * 5;
+    private static final int DEFAULT_LABEL = -1;
+    private static final int NO_COURIER = -1;
+
+    private final int keepDelivered;
+    private final Path file;
+    private final FileChannel channel;
+
+    // Guarded by this
+    private final List<byte[]> segments = new ArrayList<>();
+    private int segmentPosition = SEGMENT_SIZE;
+    private long fileSize;
+    // On the heap even when the records are in the file
+    private final IdOffsetTable offsets = new IdOffsetTable();
+    private final Map<String, Integer> names = new HashMap<>();
+    private final List<String> namesByNumber = new ArrayList<>();
+    private long bytes;
+
+    public OrderArchive(@Value("${routeplanner.orders.archive.keep-delivered:1000}") int keepDelivered,
+                        @Value("${routeplanner.orders.archive.dir:}") String dir) {
+        this.keepDelivered = keepDelivered;
+        if (dir == null || dir.isBlank()) {
+            this.file = null;
+            this.channel = null;
+        } else {
+            try {
+                Files.createDirectories(Path.of(dir));
+                this.file = Path.of(dir, "orders-archive.bin");
+                // The file is never read back after a restart. Without the write-ahead log order ids start over;
+                // with it, recovery appends every archived order again from the snapshot and log, which hold
+                // archived orders too (OrderService.forEachOrder, restoreArchived). Old records would be duplicates.
+                this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot open the order archive in " + dir, ex);
+            }
+        }
+    }
+
+    // How many delivered orders stay in the live store before the oldest are archived; negative turns archiving off
+    public int getKeepDelivered() {
+        return keepDelivered;
+    }
+
+    // Caller makes sure the order is DELIVERED and no longer changes
+    public synchronized void append(Order order) {
+        byte[] label = order.getLabel().equals("Order #" + order.getId())
+                ? null
+                : order.getLabel().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + (label == null ? 0 : label.length));
+        record.putLong(order.getId());
+        record.putInt(order.getX());
+        record.putInt(order.getY());
+        record.putInt(number(order.getRestaurantId()));
+        record.putInt(order.getAssignedCourierId() == null ? NO_COURIER : number(order.getAssignedCourierId()));
+        record.putInt(label == null ? DEFAULT_LABEL : label.length);
+        if (label != null) {
+            record.put(label);
+        }
+        record.flip();
+
+        offsets.put(order.getId(), channel == null ? appendToHeap(record) : appendToFile(record));
+        bytes += record.limit();
+    }
+
+    public synchronized boolean contains(long id) {
+        return offsets.get(id) >= 0;
+    }
+
+    // The archived order as the API shows it, or null if the id was never archived
+    public synchronized OrderDTO find(long id) {
+        long offset = offsets.get(id);
+        if (offset < 0) {
+            return null;
+        }
+        ByteBuffer header = read(offset, HEADER_BYTES);
+        long storedId = header.getLong();
+        int x = header.getInt();
+        int y = header.getInt();
+        String restaurantId = namesByNumber.get(header.getInt());
+        int courier = header.getInt();
+        int labelLength = header.getInt();
+
+        String label = labelLength == DEFAULT_LABEL
+                ? "Order #" + storedId
+                : StandardCharsets.UTF_8.decode(read(offset + HEADER_BYTES, labelLength)).toString();
+        return new OrderDTO(storedId, restaurantId, x, y, label, OrderStatus.DELIVERED.name(),
+                courier == NO_COURIER ? null : namesByNumber.get(courier));
+    }
+
+    // Every archived order, in no particular order
+    public synchronized void forEach(Consumer<OrderDTO> action) {
+        long[] keys = offsets.keys;
+        for (long key : keys) {
+            if (key != 0) {
+                action.accept(find(key));
+            }
+        }
+    }
+
+    public synchronized OrderArchiveDTO stats() {
+        return new OrderArchiveDTO(
+                offsets.size(),
+                bytes,
+                offsets.capacityBytes(),
+                file == null ? "heap" : file.toString(),
+                keepDelivered
+        );
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to do with it
+            }
+        }
+    }
+
+    private int number(String name) {
+        Integer existing = names.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        names.put(name, namesByNumber.size());
+        namesByNumber.add(name);
+        return namesByNumber.size() - 1;
+    }
+
+    // Heap offsets are segment << 32 | position; a record never spans two segments
+    private long appendToHeap(ByteBuffer record) {
+        int length = record.limit();
+        if (segmentPosition + length > SEGMENT_SIZE || segments.isEmpty()) {
+            segments.add(new byte[Math.max(SEGMENT_SIZE, length)]);
+            segmentPosition = 0;
+        }
+        int segment = segments.size() - 1;
+        record.get(segments.get(segment), segmentPosition, length);
+        long offset = ((long) segment << 32) | segmentPosition;
+        segmentPosition += length;
+        return offset;
+    }
+
+    private long appendToFile(ByteBuffer record) {
+        long offset = fileSize;
+        try {
+            while (record.hasRemaining()) {
+                fileSize += channel.write(record, fileSize);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write to the order archive", ex);
+        }
+        return offset;
+    }
+
+    private ByteBuffer read(long offset, int length) {
+        if (channel == null) {
+            byte[] segment = segments.get((int) (offset >>> 32));
+            return ByteBuffer.wrap(segment, (int) offset, length).slice();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IllegalStateException("Order archive is truncated");
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read the order archive", ex);
+        }
+        return buffer.flip();
+    }
+
+    // Open addressing long -> long map with linear probing, 16 bytes per slot and no boxing.
+    // Order ids are positive, so 0 marks an empty slot.
+    private static final class IdOffsetTable {
+        private long[] keys = new long[1024];
+        private long[] values = new long[1024];
+        private int size;
+
+        void put(long key, long value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int slot = slot(key, keys.length);
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if (keys[slot] == 0) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        // -1 when absent
+        long get(long key) {
+            int slot = slot(key, keys.length);
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            return -1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long capacityBytes() {
+            return 16L * keys.length;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, int capacity) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 32) & (capacity - 1);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.routeplanner.service;
+
+// Line formats a bulk order import accepts.
+public enum OrderImportFormat {
+    // One JSON object per line, with the fields of a single create request
+    NDJSON,
+    // restaurantId,x,y[,label] per line; a header line and double-quoted labels are allowed
+    CSV
+}
@@ -0,0 +1,208 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.dto.OrderImportDTO;
+import com.example.routeplanner.dto.OrderImportErrorDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Bulk order import from a stream of NDJSON or CSV lines. Lines are read, parsed and checked one at a time,
+// so only one batch is held in memory however large the upload is, and every batchSize good lines go to
+// OrderService.createOrders together. A bad line is listed in the summary and the import goes on.
+@Service
+public class OrderImportService {
+
+    private static final ObjectReader JSON = new ObjectMapper()
+            .readerFor(CreateOrderRequest.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final OrderService orderService;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public OrderImportService(OrderService orderService,
+                              @Value("${routeplanner.orders.import.batch-size:1024}") int batchSize,
+                              @Value("${routeplanner.orders.import.max-errors:1000}") int maxErrors) {
+        this.orderService = orderService;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxErrors = Math.max(0, maxErrors);
+    }
+
+    public OrderImportDTO importOrders(InputStream in, OrderImportFormat format) {
+        long started = System.nanoTime();
+        Summary summary = new Summary();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+
+        List<CreateOrderRequest> batch = new ArrayList<>(batchSize);
+        long[] batchLines = new long[batchSize];
+        long lineNumber = 0;
+        boolean first = true;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                boolean header = first && format == OrderImportFormat.CSV && isCsvHeader(line);
+                first = false;
+                if (header) {
+                    continue;
+                }
+
+                try {
+                    batch.add(format == OrderImportFormat.CSV ? parseCsv(line) : parseJson(line));
+                    batchLines[batch.size() - 1] = lineNumber;
+                } catch (IllegalArgumentException ex) {
+                    summary.reject(lineNumber, ex.getMessage());
+                }
+                if (batch.size() == batchSize) {
+                    insert(batch, batchLines, summary);
+                }
+            }
+        } catch (IOException ex) {
+            // The lines read so far still go in; the summary says where the stream broke off
+            summary.reject(lineNumber + 1, "Could not read the rest of the upload: " + ex.getMessage());
+        }
+        insert(batch, batchLines, summary);
+        // One wait for the whole upload; the log has been writing the earlier batches meanwhile
+        orderService.awaitDurable();
+        List<OrderImportErrorDTO> errors = new ArrayList<>(summary.errors);
+        errors.sort(Comparator.comparingLong(OrderImportErrorDTO::line));
+
+        long elapsedNanos = Math.max(1, System.nanoTime() - started);
+        return new OrderImportDTO(
+                lineNumber,
+                summary.imported,
+                summary.rejected,
+                errors,
+                summary.rejected > errors.size(),
+                summary.imported == 0 ? null : summary.firstId,
+                summary.imported == 0 ? null : summary.lastId,
+                elapsedNanos / 1_000_000,
+                summary.imported * 1_000_000_000L / elapsedNanos
+        );
+    }
+
+    private void insert(List<CreateOrderRequest> batch, long[] batchLines, Summary summary) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long[] ids = orderService.createOrders(batch, (message, index) -> summary.reject(batchLines[index], message));
+        for (long id : ids) {
+            if (id != 0) {
+                if (summary.imported == 0) {
+                    summary.firstId = id;
+                }
+                summary.lastId = id;
+                summary.imported++;
+            }
+        }
+        batch.clear();
+    }
+
+    private static CreateOrderRequest parseJson(String line) {
+        try {
+            CreateOrderRequest req = JSON.readValue(line);
+            if (req == null) {
+                throw new IllegalArgumentException("Expected a JSON object");
+            }
+            return req;
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Malformed JSON: " + ex.getOriginalMessage());
+        }
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.stripLeading().regionMatches(true, 0, "restaurantId", 0, "restaurantId".length());
+    }
+
+    // restaurantId,x,y[,label]
+    private static CreateOrderRequest parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 3 || fields.size() > 4) {
+            throw new IllegalArgumentException("Expected restaurantId,x,y[,label] but got " + fields.size() + " fields");
+        }
+        return new CreateOrderRequest(
+                fields.get(0).trim(),
+                parseInt(fields.get(1), "x"),
+                parseInt(fields.get(2), "y"),
+                fields.size() == 4 ? fields.get(3) : null
+        );
+    }
+
+    private static int parseInt(String field, String name) {
+        try {
+            return Integer.parseInt(field.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(name + " is not a number: " + field);
+        }
+    }
+
+    // Commas separate fields; a field in double quotes may hold commas, and "" inside it is one quote
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private final class Summary {
+        // The maxErrors lowest line numbers seen so far, highest on top. Lines rejected when their batch is
+        // inserted are reported after later lines that failed to parse, so the first ones are not the first N.
+        final PriorityQueue<OrderImportErrorDTO> errors = new PriorityQueue<>(
+                Comparator.comparingLong(OrderImportErrorDTO::line).reversed());
+        long imported;
+        long rejected;
+        long firstId;
+        long lastId;
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                errors.add(new OrderImportErrorDTO(line, message));
+            } else if (maxErrors > 0 && line < errors.peek().line()) {
+                errors.poll();
+                errors.add(new OrderImportErrorDTO(line, message));
+            }
+        }
+    }
+}
@@ -2,29 +2,151 @@ package com.example.routeplanner.service;
 
 import com.example.routeplanner.city.CityMap;
 import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.dto.OrderArchiveDTO;
 import com.example.routeplanner.dto.OrderDTO;
+import com.example.routeplanner.dto.OrderPageDTO;
 import com.example.routeplanner.model.Order;
 import com.example.routeplanner.model.OrderStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 @Service
 public class OrderService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrderService.class);
+
+    // Delivered orders beyond the newest keepDelivered are moved to the archive once this many more were delivered,
+    // checked this often by a background sweep
+    private static final int ARCHIVE_BATCH = 256;
+    private static final long ARCHIVE_SWEEP_MS = 1000;
+
     private final CityMap cityMap;
+    private final DispatchQueue dispatchQueue;
+    private final OrderArchive archive;
 
-    // In-memory storage for orders
-    private final ConcurrentHashMap<Long, Order> orders = new ConcurrentHashMap<>();
+    // In-memory storage for orders, ordered by id so listings can start anywhere without sorting
+    private final ConcurrentSkipListMap<Long, Order> orders = new ConcurrentSkipListMap<>();
     private final AtomicLong idSequence = new AtomicLong(1);
 
-    public OrderService(CityMap cityMap) {
+    // Secondary indexes of order ids, kept current by every state change (see Order.ChangeListener).
+    // Ids are kept sorted, so listings come out oldest first without sorting.
+    // A courier's delivered orders are kept apart from the ones it still has to deliver, so delivering
+    // its orders does not walk everything it delivered since the last archive sweep.
+    private final Map<OrderStatus, IdIndex> byStatus = new EnumMap<>(OrderStatus.class);
+    private final ConcurrentHashMap<String, IdIndex> byCourier = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, IdIndex> deliveredByCourier = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, IdIndex> byRestaurant = new ConcurrentHashMap<>();
+    private final Order.ChangeListener indexUpdater = this::reindex;
+    // Told about every new order (old status null) and every change after the indexes, one change of an order at a time
+    private final List<Order.ChangeListener> orderListeners = new CopyOnWriteArrayList<>();
+
+    // Waits until the changes the calling thread made are durable; set by the write-ahead log when it is on
+    private volatile Runnable durabilityBarrier = () -> {};
+
+    private final AtomicLong deliveredSinceSweep = new AtomicLong();
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private ScheduledExecutorService archiver;
+
+    public OrderService(CityMap cityMap, DispatchQueue dispatchQueue, OrderArchive archive) {
         this.cityMap = cityMap;
+        this.dispatchQueue = dispatchQueue;
+        this.archive = archive;
+        for (OrderStatus status : OrderStatus.values()) {
+            byStatus.put(status, new IdIndex());
+        }
     }
 
+    @PostConstruct
+    void startArchiving() {
+        if (archive.getKeepDelivered() < 0) {
+            return;
+        }
+        archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archiver.scheduleWithFixedDelay(() -> {
+            try {
+                maybeArchive();
+            } catch (RuntimeException ex) {
+                log.warn("Archiving delivered orders failed", ex);
+            }
+        }, ARCHIVE_SWEEP_MS, ARCHIVE_SWEEP_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopArchiving() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+        }
+    }
+
+    // Returns once the new order is durable
     public OrderDTO createOrder(CreateOrderRequest req) {
+        validate(req);
+        OrderDTO created = toDTO(insert(idSequence.getAndIncrement(), req));
+        awaitDurable();
+        return created;
+    }
+
+    // Create many orders at once, e.g. for a bulk import. Each request is checked like createOrder, but a
+    // rejected one is reported to onError with its message and index in the batch instead of failing the rest.
+    // Ids are taken for the whole batch in one step. Returns the id of every request, 0 where it was rejected.
+    public long[] createOrders(List<CreateOrderRequest> batch, ObjIntConsumer<String> onError) {
+        long[] ids = new long[batch.size()];
+        int valid = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                validate(batch.get(i));
+                ids[i] = -1;
+                valid++;
+            } catch (IllegalArgumentException ex) {
+                onError.accept(ex.getMessage(), i);
+            }
+        }
+
+        long nextId = idSequence.getAndAdd(valid);
+        for (int i = 0; i < batch.size(); i++) {
+            if (ids[i] == 0) {
+                continue;
+            }
+            ids[i] = nextId++;
+            try {
+                insert(ids[i], batch.get(i));
+            } catch (IllegalStateException ex) {
+                ids[i] = 0;
+                onError.accept(ex.getMessage(), i);
+            }
+        }
+        return ids;
+    }
+
+    private void validate(CreateOrderRequest req) {
         if (req.restaurantId() == null || req.restaurantId().isBlank()) {
             throw new IllegalArgumentException("restaurantId is required");
         }
@@ -42,9 +164,9 @@ public class OrderService {
                     "Order coordinates out of bounds: (" + req.x() + ", " + req.y() + ")"
             );
         }
+    }
 
-        long id = idSequence.getAndIncrement();
-
+    private Order insert(long id, CreateOrderRequest req) {
         String label = (req.label() == null || req.label().isBlank())
                 ? ("Order #" + id)
                 : req.label();
@@ -57,24 +179,138 @@ public class OrderService {
                 label
         );
 
+        // Listeners hear of the order before any change to it, which waits its turn until then
+        return order.exclusively(() -> {
+            orders.put(id, order);
+            index(order);
+
+            // With async dispatch on, the scheduler assigns it; a full queue pushes back on the caller
+            if (dispatchQueue.isEnabled() && !dispatchQueue.offer(id)) {
+                orders.remove(id);
+                unindex(order);
+                throw new IllegalStateException("Dispatch queue is full, try again later");
+            }
+            for (Order.ChangeListener listener : orderListeners) {
+                listener.changed(order, null, null, OrderStatus.NEW, null);
+            }
+            return order;
+        });
+    }
+
+    public void addOrderListener(Order.ChangeListener listener) {
+        orderListeners.add(listener);
+    }
+
+    // Put back an order as it was, e.g. when recovering state after a restart; no listener is told.
+    // Later orders get higher ids than every restored one.
+    void restore(long id, String restaurantId, int x, int y, String label, OrderStatus status, String courierId) {
+        Order order = new Order(id, restaurantId, x, y, label);
+        order.setStatus(status);
+        order.setAssignedCourierId(courierId);
         orders.put(id, order);
+        index(order);
+        idSequence.accumulateAndGet(id + 1, Math::max);
+    }
 
-        return toDTO(order);
+    // Put back a delivered order straight into the archive, skipping the live store and its indexes
+    void restoreArchived(long id, String restaurantId, int x, int y, String label, String courierId) {
+        Order order = new Order(id, restaurantId, x, y, label);
+        order.setStatus(OrderStatus.DELIVERED);
+        order.setAssignedCourierId(courierId);
+        archive.append(order);
+        idSequence.accumulateAndGet(id + 1, Math::max);
+    }
+
+    void setDurabilityBarrier(Runnable barrier) {
+        durabilityBarrier = barrier;
+    }
+
+    // Wait until every change the calling thread made so far survives a crash, before telling a client it
+    // succeeded. Call it holding no courier lock.
+    public void awaitDurable() {
+        durabilityBarrier.run();
+    }
+
+    int keepDelivered() {
+        return archive.getKeepDelivered();
+    }
+
+    // Every order, live ones first, then the archived ones (as DTOs, the form the archive keeps them in).
+    // An order archived during the walk is seen in one of the two.
+    void forEachOrder(Consumer<Order> live, Consumer<OrderDTO> archived) {
+        orders.values().forEach(live);
+        archive.forEach(archived);
     }
 
     public List<OrderDTO> listOrders() {
         return orders.values().stream()
-                .sorted((o1, o2) -> Long.compare(o1.getId(), o2.getId()))
                 .map(this::toDTO)
                 .toList();
     }
 
+    // Orders matching every given filter (null means any), oldest first. Walks the smallest matching index.
+    public List<OrderDTO> listOrders(OrderStatus status, String courierId, String restaurantId) {
+        return listOrders(status, courierId, restaurantId, null, Integer.MAX_VALUE).orders();
+    }
+
+    // One page of the filtered listing: up to limit orders with ids above after (null for the first page).
+    // Starts straight at the cursor in an ordered index, so a page costs O(limit) when at most one filter
+    // is given, whatever the number of orders.
+    public OrderPageDTO listOrders(OrderStatus status, String courierId, String restaurantId, Long after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        long from = after == null ? Long.MIN_VALUE : after;
+
+        Iterable<Long> ids;
+        if (status == null && courierId == null && restaurantId == null) {
+            ids = orders.tailMap(from, false).keySet();
+        } else {
+            List<IdIndex> index = null;
+            if (status != null) {
+                index = List.of(byStatus.get(status));
+            }
+            if (courierId != null) {
+                index = smaller(index, courierIndexes(courierId, status));
+            }
+            if (restaurantId != null) {
+                index = smaller(index, List.of(byRestaurant.getOrDefault(restaurantId, EMPTY)));
+            }
+            ids = index.size() == 1
+                    ? index.get(0).ids.tailSet(from, false)
+                    : merged(index.get(0).ids.tailSet(from, false), index.get(1).ids.tailSet(from, false));
+        }
+
+        List<OrderDTO> page = new ArrayList<>();
+        Long last = null;
+        for (Long id : ids) {
+            Order order = orders.get(id);
+            if (order != null
+                    && (status == null || order.getStatus() == status)
+                    && (courierId == null || courierId.equals(order.getAssignedCourierId()))
+                    && (restaurantId == null || restaurantId.equals(order.getRestaurantId()))) {
+                if (page.size() == limit) {
+                    // there is at least one more
+                    return new OrderPageDTO(page, last);
+                }
+                page.add(toDTO(order));
+                last = id;
+            }
+        }
+        return new OrderPageDTO(page, null);
+    }
+
+    // Looks in the archive too, so delivered orders stay visible after they leave the live store
     public OrderDTO getOrder(long id) {
         Order order = orders.get(id);
-        if (order == null) {
+        if (order != null) {
+            return toDTO(order);
+        }
+        OrderDTO archived = archive.find(id);
+        if (archived == null) {
             throw new IllegalArgumentException("Order not found: " + id);
         }
-        return toDTO(order);
+        return archived;
     }
 
     // Internal method to get the Order entity by ID
@@ -86,6 +322,36 @@ public class OrderService {
         return order;
     }
 
+    // Internal method to get the Order entity by ID, or null if it does not exist
+    public Order findOrderEntity(long id) {
+        return orders.get(id);
+    }
+
+    // Internal method to list Order entities with the given status, oldest first
+    public List<Order> listOrderEntities(OrderStatus status) {
+        List<Order> result = new ArrayList<>();
+        for (Long id : byStatus.get(status).ids) {
+            Order order = orders.get(id);
+            // the index may briefly lag a change that is in flight
+            if (order != null && order.getStatus() == status) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+
+    // Internal method to list the Order entities the given courier has yet to deliver, oldest first
+    public List<Order> listOrderEntitiesForCourier(String courierId) {
+        List<Order> result = new ArrayList<>();
+        for (Long id : byCourier.getOrDefault(courierId, EMPTY).ids) {
+            Order order = orders.get(id);
+            if (order != null && courierId.equals(order.getAssignedCourierId())) {
+                result.add(order);
+            }
+        }
+        return result;
+    }
+
     // Add assignCourier and updateStatus here later
 
     private OrderDTO toDTO(Order order) {
@@ -100,18 +366,220 @@ public class OrderService {
         );
     }
 
+    // The courier collected the food at the restaurant
+    public void markPickedUp(long orderId) {
+        Order order = orders.get(orderId);
+        if (order != null) {
+            order.compareAndSetStatus(OrderStatus.ASSIGNED, OrderStatus.IN_PROGRESS);
+        }
+    }
+
+    // The courier reached the customer
+    public void markDelivered(long orderId) {
+        Order order = orders.get(orderId);
+        if (order != null) {
+            markDelivered(order);
+        }
+    }
+
+    // O(undelivered orders of that courier) through the courier index, however many orders the system has seen
     public void markOrdersDeliveredForCourier(String courierId) {
         if (courierId == null) return;
 
-        for (Order order : orders.values()) {
-            if (courierId.equals(order.getAssignedCourierId())) {
-                if (order.getStatus() == OrderStatus.ASSIGNED ||
-                        order.getStatus() == OrderStatus.IN_PROGRESS) {
+        for (Order order : listOrderEntitiesForCourier(courierId)) {
+            markDelivered(order);
+        }
+    }
+
+    // Move every delivered order but the newest keepDelivered from the live store and its indexes into the
+    // archive. Returns how many were moved. Listings only cover the live store; getOrder finds either.
+    public int archiveDelivered() {
+        int keep = archive.getKeepDelivered();
+        if (keep < 0) {
+            return 0;
+        }
+        sweepLock.lock();
+        try {
+            deliveredSinceSweep.set(0);
+            int kept = 0;
+            int archived = 0;
+            for (Long id : byStatus.get(OrderStatus.DELIVERED).ids.descendingSet()) {
+                if (kept < keep) {
+                    kept++;
+                    continue;
+                }
+                Order order = orders.get(id);
+                if (order != null && archiveOne(order)) {
+                    archived++;
+                }
+            }
+            return archived;
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    public OrderArchiveDTO archiveStats() {
+        return archive.stats();
+    }
+
+    // Sweeps once ARCHIVE_BATCH orders were delivered, unless another sweep is running. Runs on the archiver
+    // thread, so delivering couriers never wait for the archive.
+    private void maybeArchive() {
+        if (archive.getKeepDelivered() < 0 || deliveredSinceSweep.get() < ARCHIVE_BATCH || !sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            archiveDelivered();
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    // Runs between two changes of the order, so the indexes it leaves match the status it checked; nothing
+    // moves a delivered order on. The record is written before the order leaves the map, so getOrder always
+    // finds it in one of them.
+    private boolean archiveOne(Order order) {
+        return order.exclusively(() -> {
+            if (order.getStatus() != OrderStatus.DELIVERED) {
+                return false;
+            }
+            archive.append(order);
+            orders.remove(order.getId());
+            unindex(order);
+            return true;
+        });
+    }
+
+    // ASSIGNED or IN_PROGRESS -> DELIVERED, without overwriting a concurrent change to another status
+    private static void markDelivered(Order order) {
+        if (!order.compareAndSetStatus(OrderStatus.IN_PROGRESS, OrderStatus.DELIVERED)) {
+            order.compareAndSetStatus(OrderStatus.ASSIGNED, OrderStatus.DELIVERED);
+        }
+    }
+
+    private static final IdIndex EMPTY = new IdIndex();
+
+    // The indexes holding the courier's orders of the given status; both of them for any status
+    private List<IdIndex> courierIndexes(String courierId, OrderStatus status) {
+        IdIndex open = byCourier.getOrDefault(courierId, EMPTY);
+        IdIndex delivered = deliveredByCourier.getOrDefault(courierId, EMPTY);
+        if (status == null) {
+            return List.of(open, delivered);
+        }
+        return List.of(status == OrderStatus.DELIVERED ? delivered : open);
+    }
+
+    private ConcurrentHashMap<String, IdIndex> courierIndex(OrderStatus status) {
+        return status == OrderStatus.DELIVERED ? deliveredByCourier : byCourier;
+    }
+
+    private static List<IdIndex> smaller(List<IdIndex> a, List<IdIndex> b) {
+        return a == null || size(b) < size(a) ? b : a;
+    }
 
-                    order.setStatus(OrderStatus.DELIVERED);
+    private static long size(List<IdIndex> indexes) {
+        long size = 0;
+        for (IdIndex index : indexes) {
+            size += index.size();
+        }
+        return size;
+    }
+
+    // The ids of two sorted id sets in one ascending run
+    private static Iterable<Long> merged(NavigableSet<Long> a, NavigableSet<Long> b) {
+        return () -> new Iterator<>() {
+            private final Iterator<Long> left = a.iterator();
+            private final Iterator<Long> right = b.iterator();
+            private Long nextLeft = left.hasNext() ? left.next() : null;
+            private Long nextRight = right.hasNext() ? right.next() : null;
+            private long last = Long.MIN_VALUE;
+
+            @Override
+            public boolean hasNext() {
+                // An order moving between the sets meanwhile may turn up in both; it is listed once
+                while (nextLeft != null && nextLeft <= last) {
+                    nextLeft = left.hasNext() ? left.next() : null;
                 }
+                while (nextRight != null && nextRight <= last) {
+                    nextRight = right.hasNext() ? right.next() : null;
+                }
+                return nextLeft != null || nextRight != null;
             }
+
+            @Override
+            public Long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = nextRight == null || (nextLeft != null && nextLeft < nextRight) ? nextLeft : nextRight;
+                return last;
+            }
+        };
+    }
+
+    private void index(Order order) {
+        byStatus.get(order.getStatus()).add(order.getId());
+        byRestaurant.computeIfAbsent(order.getRestaurantId(), k -> new IdIndex()).add(order.getId());
+        if (order.getAssignedCourierId() != null) {
+            courierIndex(order.getStatus()).computeIfAbsent(order.getAssignedCourierId(), k -> new IdIndex())
+                    .add(order.getId());
         }
+        order.setChangeListener(indexUpdater);
     }
 
+    private void unindex(Order order) {
+        order.setChangeListener(null);
+        byStatus.get(order.getStatus()).remove(order.getId());
+        byRestaurant.getOrDefault(order.getRestaurantId(), EMPTY).remove(order.getId());
+        if (order.getAssignedCourierId() != null) {
+            courierIndex(order.getStatus()).getOrDefault(order.getAssignedCourierId(), EMPTY).remove(order.getId());
+        }
+    }
+
+    // Called in each order's change sequence, so the changes of one order reach the indexes in order
+    private void reindex(Order order, OrderStatus oldStatus, String oldCourierId, OrderStatus status, String courierId) {
+        long id = order.getId();
+        if (status != oldStatus) {
+            byStatus.get(status).add(id);
+            byStatus.get(oldStatus).remove(id);
+            if (status == OrderStatus.DELIVERED) {
+                deliveredSinceSweep.incrementAndGet();
+            }
+        }
+        boolean delivered = status == OrderStatus.DELIVERED;
+        if (!Objects.equals(courierId, oldCourierId) || delivered != (oldStatus == OrderStatus.DELIVERED)) {
+            if (courierId != null) {
+                courierIndex(status).computeIfAbsent(courierId, k -> new IdIndex()).add(id);
+            }
+            if (oldCourierId != null) {
+                courierIndex(oldStatus).getOrDefault(oldCourierId, EMPTY).remove(id);
+            }
+        }
+        for (Order.ChangeListener listener : orderListeners) {
+            listener.changed(order, oldStatus, oldCourierId, status, courierId);
+        }
+    }
+
+    // Sorted order ids with their count; ConcurrentSkipListSet.size() walks the whole set
+    private static final class IdIndex {
+        final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+        private final LongAdder size = new LongAdder();
+
+        void add(long id) {
+            if (ids.add(id)) {
+                size.increment();
+            }
+        }
+
+        void remove(long id) {
+            if (ids.remove(id)) {
+                size.decrement();
+            }
+        }
+
+        long size() {
+            return size.sum();
+        }
+    }
 }
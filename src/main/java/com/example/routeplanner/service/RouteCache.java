@@ -0,0 +1,360 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.PointDTO;
+import com.example.routeplanner.dto.RouteResponse;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.GridChangeListener;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Caches A* legs on the city grid.
+// A reverse index from grid cells to the cached routes and courier routes that pass through them
+// lets a single cell change invalidate (or reroute) only the entries that are actually affected.
+// A second index from map tiles to the cached legs a cheaper cell there could shorten keeps a cost
+// decrease from looking at every cached leg.
+@Service
+public class RouteCache implements GridChangeListener {
+
+    private static final int MAX_ENTRIES = 50_000;
+    // A full cache drops this many legs at once, so the eviction is not repeated on every store
+    private static final int EVICT_BATCH = MAX_ENTRIES / 8;
+    // The tile index splits the city into at most this many tiles per side
+    private static final int MAX_TILES_PER_SIDE = 32;
+
+    private final CityMap cityMap;
+    private final RouteService routeService;
+
+    // Cached legs, plus which cached legs pass through each cell
+    private final ConcurrentHashMap<RouteKey, Entry> routes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<RouteKey>> routesByCell = new ConcurrentHashMap<>();
+
+    // Which cached legs a cheaper cell in each tile could shorten; unreachable legs are candidates everywhere
+    private final ConcurrentHashMap<Long, Set<RouteKey>> candidatesByTile = new ConcurrentHashMap<>();
+    private final Set<RouteKey> candidatesEverywhere = ConcurrentHashMap.newKeySet();
+    private volatile int tileSize = 8;
+
+    // Active courier routes, plus which couriers still have to drive through each cell
+    private final ConcurrentHashMap<String, TrackedRoute> courierRoutes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<String>> couriersByCell = new ConcurrentHashMap<>();
+
+    // Called with the courier id when a grid change makes its active route invalid
+    private final List<Consumer<String>> courierRouteListeners = new CopyOnWriteArrayList<>();
+
+    // Bumped on every invalidation so a search racing with a grid change is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Lower bound on the cost of entering any cell, used to decide which routes a cheaper cell can improve
+    private volatile double minCellCost = 1.0;
+
+    public RouteCache(CityMap cityMap, RouteService routeService) {
+        this.cityMap = cityMap;
+        this.routeService = routeService;
+    }
+
+    @PostConstruct
+    void registerWithGrid() {
+        Grid grid = cityMap.getGrid();
+        double min = Double.POSITIVE_INFINITY;
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                min = Math.min(min, grid.getWeight(x, y));
+            }
+        }
+        minCellCost = Double.isFinite(min) ? min : 1.0;
+        int longestSide = Math.max(grid.getWidth(), grid.getHeight());
+        tileSize = Math.max(8, (longestSide + MAX_TILES_PER_SIDE - 1) / MAX_TILES_PER_SIDE);
+        grid.addChangeListener(this);
+    }
+
+    // Get a leg on the city grid, computing it with A* on a cache miss
+    public RouteResponse getRoute(int startX, int startY, int endX, int endY, String heuristic) {
+        RouteKey key = new RouteKey(startX, startY, endX, endY,
+                heuristic == null ? Heuristic.MANHATTAN.name() : heuristic.toUpperCase());
+
+        Entry cached = routes.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.route();
+        }
+        misses.incrementAndGet();
+
+        long generationBefore = generation.get();
+        RouteResponse route = routeService.computeRouteOnGrid(
+                cityMap.getGrid(), startX, startY, endX, endY, heuristic
+        );
+
+        // Only cache if no cell changed while we were searching. A change between the check and the indexing
+        // in store can miss the new entry, so check again once it is indexed and drop it if one came in.
+        if (generation.get() == generationBefore) {
+            store(key, route);
+            if (generation.get() != generationBefore) {
+                invalidate(key);
+            }
+        }
+        return route;
+    }
+
+    // Register the cells a courier is about to drive through, replacing any previous route
+    public void trackCourierRoute(String courierId, List<int[]> route) {
+        untrackCourierRoute(courierId);
+        if (route == null || route.isEmpty()) return;
+
+        TrackedRoute tracked = new TrackedRoute(route);
+        for (Long cell : tracked.ahead.keySet()) {
+            couriersByCell.computeIfAbsent(cell, k -> ConcurrentHashMap.newKeySet()).add(courierId);
+        }
+        courierRoutes.put(courierId, tracked);
+    }
+
+    public void untrackCourierRoute(String courierId) {
+        TrackedRoute tracked = courierRoutes.remove(courierId);
+        if (tracked == null) return;
+        for (Long cell : tracked.drain()) {
+            removeFromIndex(couriersByCell, cell, courierId);
+        }
+    }
+
+    // Drop the cells a courier has driven past from the index, so a later change there does not reroute it.
+    // Called with the courier's lock held after it moved.
+    public void courierMoved(Courier courier) {
+        TrackedRoute tracked = courierRoutes.get(courier.getId());
+        if (tracked == null) return;
+        for (Long cell : tracked.advanceTo(courier.getRemainingRouteLength())) {
+            removeFromIndex(couriersByCell, cell, courier.getId());
+        }
+    }
+
+    public void addCourierRouteListener(Consumer<String> listener) {
+        courierRouteListeners.add(listener);
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        routes.clear();
+        routesByCell.clear();
+        candidatesByTile.clear();
+        candidatesEverywhere.clear();
+    }
+
+    @Override
+    public void onCellChanged(int x, int y, double oldCost, double newCost) {
+        generation.incrementAndGet();
+        long cell = cellKey(x, y);
+
+        // Every cached leg through this cell has a different cost now
+        Set<RouteKey> through = routesByCell.remove(cell);
+        if (through != null) {
+            for (RouteKey key : through) {
+                invalidate(key);
+            }
+        }
+
+        if (newCost < oldCost) {
+            // A cheaper (or newly opened) cell can shorten legs that do not use it yet.
+            // Only legs whose lower bound via this cell beats their cached cost can be affected.
+            if (newCost < minCellCost) {
+                minCellCost = newCost;
+                widenCandidates(); // every leg's bound dropped; rare, only for a new cheapest cell
+            }
+            List<RouteKey> candidates = new ArrayList<>(candidatesEverywhere);
+            Set<RouteKey> inTile = candidatesByTile.get(tileKey(x / tileSize, y / tileSize));
+            if (inTile != null) {
+                candidates.addAll(inTile);
+            }
+            for (RouteKey key : candidates) {
+                Entry entry = routes.get(key);
+                if (entry != null && viaCell(key, x, y) < entry.route().totalDistance()) {
+                    invalidate(key);
+                }
+            }
+        } else {
+            // Couriers only need a new route when a cell on their way became more expensive or blocked
+            Set<String> couriers = couriersByCell.get(cell);
+            if (couriers == null) return;
+            for (String courierId : List.copyOf(couriers)) {
+                untrackCourierRoute(courierId);
+                for (Consumer<String> listener : courierRouteListeners) {
+                    listener.accept(courierId);
+                }
+            }
+        }
+    }
+
+    private void store(RouteKey key, RouteResponse route) {
+        if (routes.size() >= MAX_ENTRIES) {
+            evict(MAX_ENTRIES - EVICT_BATCH);
+        }
+        Entry entry = new Entry(route, candidateTiles(key, route.totalDistance()));
+        if (routes.putIfAbsent(key, entry) != null) {
+            return; // a racing search stored the same leg and indexed it already
+        }
+        for (PointDTO p : route.path()) {
+            routesByCell.computeIfAbsent(cellKey(p.x(), p.y()), k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        addCandidate(key, entry.tiles());
+    }
+
+    private void evict(int keep) {
+        var keys = routes.keySet().iterator();
+        while (routes.size() > keep && keys.hasNext()) {
+            invalidate(keys.next());
+        }
+    }
+
+    private void invalidate(RouteKey key) {
+        Entry removed = routes.remove(key);
+        if (removed == null) return;
+        for (PointDTO p : removed.route().path()) {
+            removeFromIndex(routesByCell, cellKey(p.x(), p.y()), key);
+        }
+        removeCandidate(key, removed.tiles());
+    }
+
+    // Re-index every leg with the bound of a new cheapest cell, dropping the ones that bound no longer rules out
+    private void widenCandidates() {
+        for (Map.Entry<RouteKey, Entry> cached : routes.entrySet()) {
+            RouteKey key = cached.getKey();
+            Entry entry = cached.getValue();
+            int[] tiles = candidateTiles(key, entry.route().totalDistance());
+            if (routes.replace(key, entry, new Entry(entry.route(), tiles))) {
+                removeCandidate(key, entry.tiles());
+                addCandidate(key, tiles);
+            }
+        }
+    }
+
+    // Tiles holding every cell whose lower bound via it beats the leg's cost, as {minX, minY, maxX, maxY};
+    // null when that bound rules out no cell
+    private int[] candidateTiles(RouteKey key, double cost) {
+        double reach = cost / minCellCost; // a shortcut via cell c needs manhattan(start, c, end) < reach
+        if (!Double.isFinite(reach)) {
+            return null;
+        }
+        Grid grid = cityMap.getGrid();
+        int direct = manhattan(key.startX(), key.startY(), key.endX(), key.endY());
+        int slack = (int) Math.ceil((reach - direct) / 2);
+        if (slack < 0) {
+            return new int[]{0, 0, -1, -1};
+        }
+        int minX = Math.max(0, Math.min(key.startX(), key.endX()) - slack);
+        int minY = Math.max(0, Math.min(key.startY(), key.endY()) - slack);
+        int maxX = Math.min(grid.getWidth() - 1, Math.max(key.startX(), key.endX()) + slack);
+        int maxY = Math.min(grid.getHeight() - 1, Math.max(key.startY(), key.endY()) + slack);
+        return new int[]{minX / tileSize, minY / tileSize, maxX / tileSize, maxY / tileSize};
+    }
+
+    private void addCandidate(RouteKey key, int[] tiles) {
+        if (tiles == null) {
+            candidatesEverywhere.add(key);
+            return;
+        }
+        for (int ty = tiles[1]; ty <= tiles[3]; ty++) {
+            for (int tx = tiles[0]; tx <= tiles[2]; tx++) {
+                candidatesByTile.computeIfAbsent(tileKey(tx, ty), k -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+        }
+    }
+
+    private void removeCandidate(RouteKey key, int[] tiles) {
+        if (tiles == null) {
+            candidatesEverywhere.remove(key);
+            return;
+        }
+        for (int ty = tiles[1]; ty <= tiles[3]; ty++) {
+            for (int tx = tiles[0]; tx <= tiles[2]; tx++) {
+                removeFromIndex(candidatesByTile, tileKey(tx, ty), key);
+            }
+        }
+    }
+
+    private double viaCell(RouteKey key, int x, int y) {
+        return minCellCost * (manhattan(key.startX(), key.startY(), x, y) + manhattan(x, y, key.endX(), key.endY()));
+    }
+
+    private static <T> void removeFromIndex(ConcurrentHashMap<Long, Set<T>> index, long cell, T value) {
+        index.computeIfPresent(cell, (k, set) -> {
+            set.remove(value);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static long cellKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private static long tileKey(int tx, int ty) {
+        return cellKey(tx, ty);
+    }
+
+    private static int manhattan(int x1, int y1, int x2, int y2) {
+        return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+    }
+
+    private record RouteKey(int startX, int startY, int endX, int endY, String heuristic) {
+    }
+
+    // A cached leg and the tiles it is a shortcut candidate in (null: everywhere)
+    private record Entry(RouteResponse route, int[] tiles) {
+    }
+
+    // The cells of a courier route, counted per cell as a route may pass one cell more than once
+    private static final class TrackedRoute {
+        private final long[] cells;
+        private final Map<Long, Integer> ahead = new HashMap<>();
+        private int driven;
+
+        TrackedRoute(List<int[]> route) {
+            cells = new long[route.size()];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = cellKey(route.get(i)[0], route.get(i)[1]);
+                ahead.merge(cells[i], 1, Integer::sum);
+            }
+        }
+
+        // Cells no longer ahead once only `remaining` route cells are left
+        synchronized List<Long> advanceTo(int remaining) {
+            List<Long> passed = new ArrayList<>();
+            while (driven < cells.length - remaining && !ahead.isEmpty()) {
+                long cell = cells[driven++];
+                if (ahead.merge(cell, -1, Integer::sum) == 0) {
+                    ahead.remove(cell);
+                    passed.add(cell);
+                }
+            }
+            return passed;
+        }
+
+        // All cells still ahead; the route tracks nothing afterwards
+        synchronized List<Long> drain() {
+            List<Long> left = new ArrayList<>(ahead.keySet());
+            ahead.clear();
+            return left;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.model.Courier;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs route updates (path searches and installing the result) off the request thread.
+// Tasks for one courier are chained and run one at a time in submission order; different couriers
+// run in parallel on a small pool. With threads <= 0 every task runs inline on the caller.
+@Service
+public class RouteMaterializer {
+
+    private static final Logger log = LoggerFactory.getLogger(RouteMaterializer.class);
+
+    private final ExecutorService executor;
+
+    // Last task queued per courier; removed again once it finished and nothing was chained behind it
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> tails = new ConcurrentHashMap<>();
+
+    public RouteMaterializer(@Value("${routeplanner.dispatch.route-threads:2}") int threads) {
+        if (threads <= 0) {
+            this.executor = null;
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "route-materializer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isAsync() {
+        return executor != null;
+    }
+
+    // Queue a route update for the courier. Inline mode runs it right away and lets exceptions through;
+    // in async mode a failing task is logged and does not stop the tasks queued after it.
+    public CompletableFuture<Void> submit(Courier courier, Runnable task) {
+        if (executor == null) {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String courierId = courier.getId();
+        CompletableFuture<Void> next = tails.compute(courierId, (id, tail) ->
+                (tail == null ? CompletableFuture.<Void>completedFuture(null) : tail)
+                        .thenRunAsync(() -> runLogged(id, task), executor)
+        );
+        next.whenComplete((ignored, ex) -> tails.remove(courierId, next));
+        return next;
+    }
+
+    // Wait until every task queued so far has run. Returns false if that took longer than the timeout.
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        CompletableFuture<?>[] pending = tails.values().toArray(new CompletableFuture<?>[0]);
+        try {
+            CompletableFuture.allOf(pending).get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException ex) {
+            return false;
+        } catch (ExecutionException ex) {
+            return true; // tasks log their own failures
+        }
+    }
+
+    public int pendingCouriers() {
+        return tails.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void runLogged(String courierId, Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            log.warn("Route update for courier {} failed: {}", courierId, ex.getMessage());
+        }
+    }
+}
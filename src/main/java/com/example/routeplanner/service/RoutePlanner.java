@@ -0,0 +1,349 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.PointDTO;
+import com.example.routeplanner.dto.RouteResponse;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.PlannedStop;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// Keeps a courier's planned stops and active route in sync.
+// A new order is inserted at the cheapest pickup and drop-off positions of the existing stop sequence
+// (cheapest insertion), and only the legs next to the inserted stops are searched. Every other leg
+// is copied over from the current route, so the work does not grow with the number of orders carried.
+// A courier's plan is only read or changed while holding that courier's lock.
+@Service
+public class RoutePlanner {
+
+    private final CityMap cityMap;
+    private final RouteCache routeCache;
+    private final DistanceFieldCache distanceFieldCache;
+    // Called with a courier whose stops were just replaced, while holding its lock
+    private final List<Consumer<Courier>> planListeners = new CopyOnWriteArrayList<>();
+
+    public RoutePlanner(CityMap cityMap, RouteCache routeCache, DistanceFieldCache distanceFieldCache) {
+        this.cityMap = cityMap;
+        this.routeCache = routeCache;
+        this.distanceFieldCache = distanceFieldCache;
+    }
+
+    public void addPlanListener(Consumer<Courier> listener) {
+        planListeners.add(listener);
+    }
+
+    // Where an order's stops go in the courier's stop list (indices after insertion), the extra road cost,
+    // and the courier's plan version it was computed against (it is only valid while that is unchanged)
+    public record Insertion(int pickupIndex, int dropoffIndex, double addedCost, long planVersion) {}
+
+    // Road costs to and from one order's pickup and drop-off, looked up once and shared by every courier
+    public record OrderCosts(double[] toPickup, double[] fromPickup,
+                             double[] toDropoff, double[] fromDropoff,
+                             double pickupToDropoff) {}
+
+    public OrderCosts orderCosts(int pickupX, int pickupY, int dropoffX, int dropoffY) {
+        double[] fromPickup = distanceFieldCache.getField(pickupX, pickupY);
+        return new OrderCosts(
+                distanceFieldCache.getReverseField(pickupX, pickupY),
+                fromPickup,
+                distanceFieldCache.getReverseField(dropoffX, dropoffY),
+                distanceFieldCache.getField(dropoffX, dropoffY),
+                fromPickup[dropoffY * cityMap.getGrid().getWidth() + dropoffX]
+        );
+    }
+
+    // Cheapest place to insert a pickup at (pickupX, pickupY) and a drop-off at (dropoffX, dropoffY),
+    // keeping the existing stops in their order. Returns null if the courier can not fit the order in.
+    public Insertion cheapestInsertion(Courier courier, int pickupX, int pickupY, int dropoffX, int dropoffY) {
+        return cheapestInsertion(courier, orderCosts(pickupX, pickupY, dropoffX, dropoffY));
+    }
+
+    public Insertion cheapestInsertion(Courier courier, OrderCosts order) {
+        courier.getLock().lock();
+        try {
+            return cheapestInsertionLocked(courier, order);
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
+
+    private Insertion cheapestInsertionLocked(Courier courier, OrderCosts order) {
+        PlanCosts plan = planCosts(courier);
+        return bestInsertion(plan.cells(), plan.legCosts(), order, courier.getPlanVersion());
+    }
+
+    // Cells of the courier's plan (node 0 is the courier, node i is stop i - 1) and the cost of each leg,
+    // where the first leg only counts the part still to drive. Caller holds the courier's lock.
+    record PlanCosts(int[] cells, double[] legCosts) {}
+
+    PlanCosts planCosts(Courier courier) {
+        Grid grid = cityMap.getGrid();
+        int width = grid.getWidth();
+        List<PlannedStop> stops = courier.getPlannedStops();
+        int k = stops.size();
+
+        int[] cells = new int[k + 1];
+        double[] legCost = new double[k];
+        cells[0] = courier.getCurrentY() * width + courier.getCurrentX();
+        for (int i = 0; i < k; i++) {
+            PlannedStop stop = stops.get(i);
+            cells[i + 1] = stop.getY() * width + stop.getX();
+            legCost[i] = i == 0 ? remainingFirstLegCost(courier) : stop.getLegCost();
+        }
+        return new PlanCosts(cells, legCost);
+    }
+
+    // Cheapest insertion into any stop sequence given as cells and leg costs (see planCosts)
+    static Insertion bestInsertion(int[] cells, double[] legCost, OrderCosts order, long planVersion) {
+        int k = legCost.length;
+
+        // Four fields answer every "stop -> new stop" and "new stop -> stop" cost in O(1)
+        double[] toPickup = order.toPickup();
+        double[] fromPickup = order.fromPickup();
+        double[] toDropoff = order.toDropoff();
+        double[] fromDropoff = order.fromDropoff();
+
+        double pickupToDropoff = order.pickupToDropoff();
+        if (pickupToDropoff == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestPickupGap = -1;
+        int bestDropoffGap = -1;
+
+        // Cheapest pickup-only detour in an earlier gap, so the scan is O(k) instead of O(k^2)
+        double bestDetour = Double.POSITIVE_INFINITY;
+        int bestDetourGap = -1;
+
+        for (int g = 0; g <= k; g++) {
+            int at = cells[g];
+            boolean last = g == k;
+
+            // Both stops in this gap: node -> pickup -> drop-off -> next node
+            double together = toPickup[at] + pickupToDropoff
+                    + (last ? 0.0 : fromDropoff[cells[g + 1]] - legCost[g]);
+            if (together < bestCost) {
+                bestCost = together;
+                bestPickupGap = g;
+                bestDropoffGap = g;
+            }
+
+            // Drop-off in this gap, pickup in the best earlier one
+            if (bestDetourGap >= 0) {
+                double dropoffDetour = toDropoff[at]
+                        + (last ? 0.0 : fromDropoff[cells[g + 1]] - legCost[g]);
+                if (bestDetour + dropoffDetour < bestCost) {
+                    bestCost = bestDetour + dropoffDetour;
+                    bestPickupGap = bestDetourGap;
+                    bestDropoffGap = g;
+                }
+            }
+
+            if (!last) {
+                double pickupDetour = toPickup[at] + fromPickup[cells[g + 1]] - legCost[g];
+                if (pickupDetour < bestDetour) {
+                    bestDetour = pickupDetour;
+                    bestDetourGap = g;
+                }
+            }
+        }
+
+        if (bestPickupGap < 0 || bestCost == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        // The drop-off shifts one place because the pickup is inserted in front of it
+        return new Insertion(bestPickupGap, bestDropoffGap + 1, bestCost, planVersion);
+    }
+
+    // Insert the order's pickup and drop-off at the cheapest positions and update the courier's route
+    public Insertion insertOrder(Courier courier, Order order, int restaurantX, int restaurantY) {
+        courier.getLock().lock();
+        try {
+            Insertion insertion = cheapestInsertion(courier, restaurantX, restaurantY, order.getX(), order.getY());
+            if (insertion == null) {
+                throw new IllegalStateException(
+                        "Courier " + courier.getId() + " cannot reach order " + order.getId()
+                );
+            }
+            insertOrder(courier, order, restaurantX, restaurantY, insertion);
+            return insertion;
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
+
+    // Insert the order's stops at the positions of an insertion computed earlier for this courier
+    public void insertOrder(Courier courier, Order order, int restaurantX, int restaurantY, Insertion insertion) {
+        courier.getLock().lock();
+        try {
+            if (insertion.planVersion() != courier.getPlanVersion()) {
+                throw new IllegalStateException("Plan of courier " + courier.getId() + " changed since scoring");
+            }
+            List<PlannedStop> stops = new ArrayList<>(courier.getPlannedStops());
+            stops.add(insertion.pickupIndex(), new PlannedStop(order.getId(), true, restaurantX, restaurantY));
+            stops.add(insertion.dropoffIndex(), new PlannedStop(order.getId(), false, order.getX(), order.getY()));
+
+            install(courier, stops, false);
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
+
+    // Replace the courier's stops with the given sequence, e.g. after moving orders between couriers
+    public void replan(Courier courier, List<PlannedStop> stops) {
+        courier.getLock().lock();
+        try {
+            install(courier, new ArrayList<>(stops), false);
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
+
+    // Replace the stops of two couriers together. Both routes are searched first; if either one can not be
+    // routed (IllegalStateException) or beforeInstall then returns false, both plans stay as they were.
+    // Returns whether the plans were installed. Locks both couriers; a caller taking them itself must do
+    // so in a fixed order.
+    public boolean replan(Courier first, List<PlannedStop> firstStops, Courier second, List<PlannedStop> secondStops,
+                          BooleanSupplier beforeInstall) {
+        first.getLock().lock();
+        second.getLock().lock();
+        try {
+            Plan firstPlan = build(first, new ArrayList<>(firstStops), false);
+            Plan secondPlan = build(second, new ArrayList<>(secondStops), false);
+            if (!beforeInstall.getAsBoolean()) {
+                return false;
+            }
+            install(firstPlan);
+            install(secondPlan);
+            return true;
+        } finally {
+            second.getLock().unlock();
+            first.getLock().unlock();
+        }
+    }
+
+    // Search every leg again, e.g. after a grid change made the current route blocked or slower
+    public void rebuildRoute(Courier courier) {
+        courier.getLock().lock();
+        try {
+            install(courier, courier.getPlannedStops(), true);
+        } finally {
+            courier.getLock().unlock();
+        }
+    }
+
+    // Caller holds the courier's lock
+    private void install(Courier courier, List<PlannedStop> stops, boolean searchAll) {
+        install(build(courier, stops, searchAll));
+    }
+
+    // A route through new stops of a courier, searched but not installed yet
+    private record Plan(Courier courier, List<PlannedStop> stops, List<int[]> route,
+                        int[] legLengths, double[] legCosts) {}
+
+    // Build the route through the given stops. A stop that follows the same stop as before keeps its leg
+    // (a slice of the current route); only the other legs are searched, through the route cache.
+    // Changes nothing. Caller holds the courier's lock.
+    private Plan build(Courier courier, List<PlannedStop> stops, boolean searchAll) {
+        List<PlannedStop> oldStops = courier.getPlannedStops();
+        List<int[]> oldRoute = courier.getActiveRoute();
+
+        Map<PlannedStop, Integer> oldLegStart = new IdentityHashMap<>();
+        Map<PlannedStop, PlannedStop> oldPrevious = new IdentityHashMap<>();
+        if (!searchAll) {
+            int offset = 0;
+            PlannedStop previous = null;
+            for (PlannedStop stop : oldStops) {
+                oldLegStart.put(stop, offset);
+                oldPrevious.put(stop, previous);
+                offset += stop.getLegLength();
+                previous = stop;
+            }
+        }
+
+        // Leg lengths and costs are only written back once every leg is known
+        List<int[]> route = new ArrayList<>();
+        int[] legLengths = new int[stops.size()];
+        double[] legCosts = new double[stops.size()];
+
+        int fromX = courier.getCurrentX();
+        int fromY = courier.getCurrentY();
+        PlannedStop previous = null;
+
+        for (int i = 0; i < stops.size(); i++) {
+            PlannedStop stop = stops.get(i);
+            Integer start = oldLegStart.get(stop);
+
+            if (start != null && oldPrevious.get(stop) == previous) {
+                route.addAll(oldRoute.subList(start, start + stop.getLegLength()));
+                legLengths[i] = stop.getLegLength();
+                legCosts[i] = stop.getLegCost();
+            } else {
+                RouteResponse leg = routeCache.getRoute(
+                        fromX, fromY, stop.getX(), stop.getY(), Heuristic.MANHATTAN.name()
+                );
+                if (!Double.isFinite(leg.totalDistance()) || leg.path().isEmpty()) {
+                    throw new IllegalStateException(
+                            "No route from (" + fromX + ", " + fromY + ") to (" + stop.getX() + ", " + stop.getY() + ")"
+                    );
+                }
+
+                // The first leg starts on the courier's cell, later legs share their first cell with the previous leg
+                int skip = previous == null ? 0 : 1;
+                List<PointDTO> path = leg.path();
+                for (int p = skip; p < path.size(); p++) {
+                    route.add(new int[]{path.get(p).x(), path.get(p).y()});
+                }
+                legLengths[i] = path.size() - skip;
+                legCosts[i] = leg.totalDistance();
+            }
+
+            previous = stop;
+            fromX = stop.getX();
+            fromY = stop.getY();
+        }
+
+        return new Plan(courier, stops, route, legLengths, legCosts);
+    }
+
+    // Caller holds the courier's lock, and nothing changed its plan since the build
+    private void install(Plan plan) {
+        Courier courier = plan.courier();
+        List<PlannedStop> stops = plan.stops();
+        List<int[]> route = plan.route();
+        for (int i = 0; i < stops.size(); i++) {
+            stops.get(i).setLegLength(plan.legLengths()[i]);
+            stops.get(i).setLegCost(plan.legCosts()[i]);
+        }
+
+        // Kept with the route so scoring reads what is left of the first leg in O(1)
+        Grid grid = cityMap.getGrid();
+        double[] cellCosts = new double[route.size()];
+        for (int i = 0; i < cellCosts.length; i++) {
+            int[] cell = route.get(i);
+            // a fresh route starts on the courier's own cell, which costs nothing
+            boolean start = i == 0 && cell[0] == courier.getCurrentX() && cell[1] == courier.getCurrentY();
+            cellCosts[i] = start ? 0.0 : grid.getWeight(cell[0], cell[1]);
+        }
+        courier.setPlan(route, cellCosts, stops);
+        routeCache.trackCourierRoute(courier.getId(), route);
+        for (Consumer<Courier> listener : planListeners) {
+            listener.accept(courier);
+        }
+    }
+
+    // Cost of the part of the first leg the courier still has to drive
+    private static double remainingFirstLegCost(Courier courier) {
+        return courier.getRouteCostAhead(courier.getPlannedStops().get(0).getLegLength());
+    }
+}
@@ -9,14 +9,24 @@ import com.example.routeplanner.model.Node;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.function.IntUnaryOperator;
 
 
 @Service
 public class RouteService {
 
+    static final int[][] DIRECTIONS = {
+            {1, 0},
+            {-1, 0},
+            {0, 1},
+            {0, -1}
+    };
+
+    private static final ThreadLocal<SearchScratch> SEARCH_SCRATCH = ThreadLocal.withInitial(SearchScratch::new);
 
     public RouteResponse computeRoute(RouteRequest request) {
         int width = request.gridWidth();
@@ -165,6 +175,184 @@ public class RouteService {
         );
     }
 
+    // Single-source Dijkstra from (sourceX, sourceY) over the whole grid.
+    // Returns the cost of driving from the source to every cell, indexed by y * width + x
+    // (+infinity for unreachable cells), so one search answers all "from here to X" questions.
+    public double[] computeDistanceField(Grid grid, int sourceX, int sourceY) {
+        if (grid == null) {
+            throw new IllegalArgumentException("Grid must not be null");
+        }
+        if (!grid.inBounds(sourceX, sourceY)) {
+            throw new IllegalArgumentException("Source position is outside the grid");
+        }
+
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+
+        double[] dist = new double[width * height];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+
+        int source = sourceY * width + sourceX;
+        dist[source] = 0.0;
+
+        CellHeap open = new CellHeap(Math.max(16, width + height));
+        open.push(source, 0.0);
+
+        while (!open.isEmpty()) {
+            double d = open.peekKey();
+            int cell = open.pop();
+            if (d > dist[cell]) {
+                continue; // stale heap entry
+            }
+
+            int cx = cell % width;
+            int cy = cell / width;
+
+            for (int[] dir : DIRECTIONS) {
+                int nx = cx + dir[0];
+                int ny = cy + dir[1];
+
+                if (!grid.inBounds(nx, ny) || grid.isObstacle(nx, ny)) {
+                    continue;
+                }
+
+                int next = ny * width + nx;
+                double nd = d + grid.getWeight(nx, ny);
+                if (nd < dist[next]) {
+                    dist[next] = nd;
+                    open.push(next, nd);
+                }
+            }
+        }
+
+        return dist;
+    }
+
+    // Single-target Dijkstra on the reversed grid: the cost of driving from every cell to (targetX, targetY),
+    // indexed by y * width + x. Stepping from v into u costs u's weight, so settling u relaxes its neighbours
+    // by weight(u). Obstacles are never entered, but a route may start on one (the courier stands there).
+    public double[] computeReverseDistanceField(Grid grid, int targetX, int targetY) {
+        if (grid == null) {
+            throw new IllegalArgumentException("Grid must not be null");
+        }
+        if (!grid.inBounds(targetX, targetY)) {
+            throw new IllegalArgumentException("Target position is outside the grid");
+        }
+
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+
+        double[] dist = new double[width * height];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+
+        int target = targetY * width + targetX;
+        dist[target] = 0.0;
+
+        CellHeap open = new CellHeap(Math.max(16, width + height));
+        open.push(target, 0.0);
+
+        while (!open.isEmpty()) {
+            double d = open.peekKey();
+            int cell = open.pop();
+            if (d > dist[cell]) {
+                continue; // stale heap entry
+            }
+
+            int cx = cell % width;
+            int cy = cell / width;
+            if (grid.isObstacle(cx, cy)) {
+                continue; // can start here, but nothing drives through it
+            }
+
+            double enterCost = d + grid.getWeight(cx, cy);
+            for (int[] dir : DIRECTIONS) {
+                int nx = cx + dir[0];
+                int ny = cy + dir[1];
+
+                if (!grid.inBounds(nx, ny)) {
+                    continue;
+                }
+
+                int previous = ny * width + nx;
+                if (enterCost < dist[previous]) {
+                    dist[previous] = enterCost;
+                    open.push(previous, enterCost);
+                }
+            }
+        }
+
+        return dist;
+    }
+
+    // A cell settled by a bounded search, with its road cost to the search target
+    public record SettledCell(int x, int y, double cost) {}
+
+    // Reverse Dijkstra from (targetX, targetY) that stops as soon as `limit` sources are settled.
+    // sourcesAt(cell) says how many sources (e.g. couriers) stand on a cell, indexed by y * width + x.
+    // Returns the settled cells holding sources, nearest first, so only the part of the city
+    // around the target is searched instead of running one search per source.
+    public List<SettledCell> nearestSources(Grid grid, int targetX, int targetY,
+                                            IntUnaryOperator sourcesAt, int limit) {
+        if (grid == null) {
+            throw new IllegalArgumentException("Grid must not be null");
+        }
+        if (!grid.inBounds(targetX, targetY)) {
+            throw new IllegalArgumentException("Target position is outside the grid");
+        }
+
+        int width = grid.getWidth();
+        int height = grid.getHeight();
+
+        // Runs for every dispatch, so the distances and heap are reused per thread instead of allocated
+        SearchScratch scratch = SEARCH_SCRATCH.get().reset(width * height);
+        CellHeap open = scratch.open;
+
+        int target = targetY * width + targetX;
+        scratch.set(target, 0.0);
+        open.push(target, 0.0);
+
+        List<SettledCell> found = new ArrayList<>();
+        int settledSources = 0;
+
+        while (!open.isEmpty() && settledSources < limit) {
+            double d = open.peekKey();
+            int cell = open.pop();
+            if (d > scratch.get(cell)) {
+                continue; // stale heap entry
+            }
+
+            int cx = cell % width;
+            int cy = cell / width;
+
+            int sources = sourcesAt.applyAsInt(cell);
+            if (sources > 0) {
+                found.add(new SettledCell(cx, cy, d));
+                settledSources += sources;
+            }
+            if (grid.isObstacle(cx, cy)) {
+                continue; // can start here, but nothing drives through it
+            }
+
+            double enterCost = d + grid.getWeight(cx, cy);
+            for (int[] dir : DIRECTIONS) {
+                int nx = cx + dir[0];
+                int ny = cy + dir[1];
+
+                if (!grid.inBounds(nx, ny)) {
+                    continue;
+                }
+
+                int previous = ny * width + nx;
+                if (enterCost < scratch.get(previous)) {
+                    scratch.set(previous, enterCost);
+                    open.push(previous, enterCost);
+                }
+            }
+        }
+
+        return found;
+    }
+
     private void applyCellsToGrid(Grid grid, List<GridCellDTO> cells) {
         for (GridCellDTO cell : cells) {
             int x = cell.x();
@@ -188,4 +376,100 @@ public class RouteService {
             return Heuristic.MANHATTAN;
         }
     }
+
+    // Distances of one nearestSources search. A distance only counts when its stamp matches the current
+    // generation, so starting a search bumps the generation instead of refilling the whole array.
+    static final class SearchScratch {
+        final CellHeap open = new CellHeap(64);
+        private double[] dist = new double[0];
+        private int[] stamp = new int[0];
+        private int generation;
+
+        SearchScratch reset(int cells) {
+            if (dist.length != cells) {
+                dist = new double[cells];
+                stamp = new int[cells];
+                generation = 0;
+            }
+            if (++generation == 0) {
+                Arrays.fill(stamp, 0); // wrapped around, old stamps could match again
+                generation = 1;
+            }
+            open.clear();
+            return this;
+        }
+
+        double get(int cell) {
+            return stamp[cell] == generation ? dist[cell] : Double.POSITIVE_INFINITY;
+        }
+
+        void set(int cell, double value) {
+            dist[cell] = value;
+            stamp[cell] = generation;
+        }
+    }
+
+    // Binary min-heap of cell indexes keyed by distance, without boxing.
+    // Decrease-key is done by pushing a duplicate and skipping stale entries on pop.
+    static final class CellHeap {
+        private int[] cells;
+        private double[] keys;
+        private int size = 0;
+
+        CellHeap(int capacity) {
+            cells = new int[capacity];
+            keys = new double[capacity];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(int cell, double key) {
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                cells[i] = cells[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            cells[i] = cell;
+            keys[i] = key;
+        }
+
+        int pop() {
+            int top = cells[0];
+            size--;
+            if (size > 0) {
+                int cell = cells[size];
+                double key = keys[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                    if (keys[child] >= key) break;
+                    cells[i] = cells[child];
+                    keys[i] = keys[child];
+                    i = child;
+                }
+                cells[i] = cell;
+                keys[i] = key;
+            }
+            return top;
+        }
+    }
 }
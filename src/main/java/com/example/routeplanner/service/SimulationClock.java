@@ -0,0 +1,182 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.dto.FastForwardDTO;
+import com.example.routeplanner.dto.SimulationClockDTO;
+import com.example.routeplanner.metrics.Histogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Drives the simulation from the server: while running, a tick fires tickRate * multiplier times per second.
+// Every tick (scheduled, a manual step or fast-forward) goes through tick(), so ticks never overlap.
+// If a tick takes longer than the period the clock falls behind, which shows in the achieved rate.
+@Service
+public class SimulationClock {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulationClock.class);
+
+    // Upper bound on ticks per second while throttled; fast-forward is not limited
+    private static final double MAX_RATE = 10_000.0;
+
+    private final CourierService courierService;
+    private final EventDrivenSimulator eventDrivenSimulator;
+    private final double tickRate;
+    private final boolean autoStart;
+
+    private final ReentrantLock tickLock = new ReentrantLock();
+    private final Histogram tickLatencyMicros = new Histogram();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "simulation-clock");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long ticks;
+    private volatile double multiplier = 1.0;
+
+    // Guarded by this: the scheduled ticking and where the current running period started
+    private ScheduledFuture<?> running;
+    private long runningSinceNanos;
+    private long runningSinceTicks;
+
+    public SimulationClock(CourierService courierService,
+                           EventDrivenSimulator eventDrivenSimulator,
+                           @Value("${routeplanner.sim.tick-rate:2}") double tickRate,
+                           @Value("${routeplanner.sim.auto-start:false}") boolean autoStart) {
+        this.courierService = courierService;
+        this.eventDrivenSimulator = eventDrivenSimulator;
+        this.tickRate = tickRate > 0 ? tickRate : 1.0;
+        this.autoStart = autoStart;
+    }
+
+    @PostConstruct
+    void init() {
+        if (autoStart) {
+            resume();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // One simulation step: every courier moves one cell
+    public void tick() {
+        tickLock.lock();
+        try {
+            long start = System.nanoTime();
+            courierService.stepAllCouriers();
+            ticks++;
+            tickLatencyMicros.record((System.nanoTime() - start) / 1_000);
+        } finally {
+            tickLock.unlock();
+        }
+    }
+
+    public synchronized void resume() {
+        if (running != null) {
+            return;
+        }
+        runningSinceNanos = System.nanoTime();
+        runningSinceTicks = ticks;
+        long periodNanos = Math.max(1, Math.round(1_000_000_000.0 / Math.min(MAX_RATE, tickRate * multiplier)));
+        running = scheduler.scheduleAtFixedRate(this::scheduledTick, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized void pause() {
+        if (running != null) {
+            running.cancel(false);
+            running = null;
+        }
+    }
+
+    // Speed up (> 1) or slow down (< 1) the running clock; takes effect right away
+    public synchronized void setMultiplier(double multiplier) {
+        if (!(multiplier > 0) || Double.isInfinite(multiplier)) {
+            throw new IllegalArgumentException("multiplier must be a positive number");
+        }
+        this.multiplier = multiplier;
+        if (running != null) {
+            pause();
+            resume();
+        }
+    }
+
+    // Run the given number of ticks as fast as the CPU allows, on the calling thread: tick by tick (STEP)
+    // or jumping between pickups and drop-offs (EVENTS), which ends in the same state.
+    // The scheduled clock is held off meanwhile and continues afterwards if it was running.
+    public FastForwardDTO fastForward(int count, FastForwardMode mode) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("ticks must be positive");
+        }
+        boolean wasRunning;
+        synchronized (this) {
+            wasRunning = running != null;
+            pause();
+        }
+        long start = System.nanoTime();
+        long events = 0;
+        try {
+            if (mode == FastForwardMode.EVENTS) {
+                events = runEvents(count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    tick();
+                }
+            }
+        } finally {
+            if (wasRunning) {
+                resume();
+            }
+        }
+        double elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+        return new FastForwardDTO(count, mode.name(), events, elapsedMs,
+                elapsedMs > 0 ? count / (elapsedMs / 1000.0) : 0.0);
+    }
+
+    private long runEvents(int count) {
+        tickLock.lock();
+        try {
+            long events = eventDrivenSimulator.run(count);
+            ticks += count;
+            return events;
+        } finally {
+            tickLock.unlock();
+        }
+    }
+
+    public synchronized SimulationClockDTO stats() {
+        double achieved = 0.0;
+        if (running != null) {
+            double seconds = (System.nanoTime() - runningSinceNanos) / 1_000_000_000.0;
+            achieved = seconds > 0 ? (ticks - runningSinceTicks) / seconds : 0.0;
+        }
+        return new SimulationClockDTO(
+                running != null,
+                tickRate,
+                multiplier,
+                ticks,
+                achieved,
+                tickLatencyMicros.snapshot()
+        );
+    }
+
+    private void scheduledTick() {
+        try {
+            tick();
+        } catch (RuntimeException ex) {
+            // keep the clock going; the next tick tries again
+            log.warn("Simulation tick failed", ex);
+        }
+    }
+}
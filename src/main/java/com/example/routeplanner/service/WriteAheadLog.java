@@ -0,0 +1,914 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.WriteAheadLogDTO;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import com.example.routeplanner.model.PlannedStop;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Keeps orders and couriers across restarts. Every order change and new courier plan is appended to a local log
+// as a small binary record with a checksum, and the positions of the couriers that moved once per tick.
+// Appenders only copy the record into a staging buffer and never wait, since they run under a courier's lock
+// or hold up the next change of the same order; the buffer grows rather than stall them. One writer thread swaps that buffer for a spare,
+// writes it and fsyncs, so a single fsync covers everything appended meanwhile (group commit). The writer waits
+// groupCommitMs before each write to let a group build up. A commit point (creating, importing or assigning
+// orders) waits outside any lock until the records its thread appended are durable, via
+// OrderService.awaitDurable, before the client is told it succeeded; that wait is what holds back producers
+// when the disk falls behind. The positions of a tick are skipped while the buffer is over its size, as the
+// next tick logs them again.
+//
+// Every snapshotEvery records a snapshot of the whole state is written and the log starts a new generation
+// (wal-N.log next to snapshot-N.bin); older files are then deleted. The snapshot is taken while traffic goes on,
+// but every record carries absolute state (the order's status and courier, the courier's cell or whole stop
+// list), so replaying generation N over snapshot N ends in the current state even where the snapshot already
+// saw some of its records. Recovery loads the newest snapshot, replays the log from there and stops at the first
+// torn or corrupt record, then writes a fresh snapshot and starts a new generation.
+//
+// Routes are not logged: after recovery each courier's plan is rebuilt from its last logged stop list.
+@Service
+public class WriteAheadLog {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final int BUFFER_BYTES = 4 << 20;
+    private static final int SNAPSHOT_MAGIC = 0x52505331;
+
+    private static final byte ORDER_CREATED = 1;
+    private static final byte ORDER_CHANGED = 2;
+    private static final byte COURIER_MOVED = 3; // no longer written, replayed from older logs
+    private static final byte COURIER_PLAN = 4;
+    private static final byte COURIER_POSITIONS = 5;
+
+    private static final Pattern WAL_FILE = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private final OrderService orderService;
+    private final CourierService courierService;
+    private final RoutePlanner routePlanner;
+    private final CityMap cityMap;
+    private final Path dir;
+    private final boolean fsync;
+    private final long groupCommitNanos;
+    private final long snapshotEvery;
+
+    // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasWork = lock.newCondition();
+    private final Condition written = lock.newCondition();
+    private ByteBuffer staging = ByteBuffer.allocate(BUFFER_BYTES);
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_BYTES);
+    private long appendedRecords;
+    private long durableRecords;
+    // Staging position where generation rollGeneration starts, -1 if no roll is pending
+    private int rollAt = -1;
+    private long rollGeneration;
+    private boolean closed;
+    private boolean failed;
+
+    // Number of the last record each thread appended, what awaitDurable waits for
+    private final ThreadLocal<long[]> lastAppended = ThreadLocal.withInitial(() -> new long[1]);
+    // Couriers that moved since their position was last logged
+    private final Set<Courier> moved = ConcurrentHashMap.newKeySet();
+
+    // Written by the writer thread (and by start() before it runs)
+    private FileChannel channel;
+    private volatile long generation;
+
+    private final AtomicLong recordsSinceSnapshot = new AtomicLong();
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+    private final AtomicLong snapshots = new AtomicLong();
+    private volatile double lastSnapshotMs;
+    private volatile long recoveredRecords;
+    private volatile double recoveryMs;
+
+    private Thread writer;
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wal-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public WriteAheadLog(OrderService orderService,
+                         CourierService courierService,
+                         RoutePlanner routePlanner,
+                         CityMap cityMap,
+                         @Value("${routeplanner.wal.dir:}") String dir,
+                         @Value("${routeplanner.wal.fsync:true}") boolean fsync,
+                         @Value("${routeplanner.wal.group-commit-ms:2}") long groupCommitMs,
+                         @Value("${routeplanner.wal.snapshot-every:1000000}") long snapshotEvery) {
+        this.orderService = orderService;
+        this.courierService = courierService;
+        this.routePlanner = routePlanner;
+        this.cityMap = cityMap;
+        this.dir = dir == null || dir.isBlank() ? null : Path.of(dir);
+        this.fsync = fsync;
+        this.groupCommitNanos = Math.max(0, groupCommitMs) * 1_000_000;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    // Recover what the log holds, then log everything from here on. Nothing else runs yet at this point.
+    @PostConstruct
+    public void start() {
+        if (dir == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(dir);
+            long started = System.nanoTime();
+            long newest = recover();
+            recoveryMs = (System.nanoTime() - started) / 1_000_000.0;
+
+            // The recovered state becomes the base of a new generation, so a torn tail is never appended to
+            generation = newest + 1;
+            writeSnapshot(generation);
+            channel = openGeneration(generation);
+            deleteGenerationsBefore(generation);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open the write-ahead log in " + dir, ex);
+        }
+
+        orderService.addOrderListener(this::orderChanged);
+        orderService.setDurabilityBarrier(this::awaitDurable);
+        courierService.addMoveListener(moved::add);
+        courierService.addTickListener(this::logPositions);
+        routePlanner.addPlanListener(this::courierPlanned);
+
+        writer = new Thread(this::writeLoop, "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Write-ahead log in {} recovered {} records in {} ms", dir, recoveredRecords, recoveryMs);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        // let a running snapshot finish, it needs the writer
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        logPositions();
+        flush();
+        lock.lock();
+        try {
+            closed = true;
+            hasWork.signalAll();
+            written.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // already stopping
+        }
+        writer = null;
+    }
+
+    // Wait until every record appended so far is written (and fsynced, if on)
+    public void flush() {
+        lock.lock();
+        try {
+            long target = appendedRecords;
+            hasWork.signal();
+            while (durableRecords < target && !closed && !failed) {
+                written.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Wait until the records the calling thread appended are written (and fsynced, if on). Must not be called
+    // while holding a courier's lock, or everyone needing that courier waits for the disk too.
+    public void awaitDurable() {
+        long target = lastAppended.get()[0];
+        if (target == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            hasWork.signal();
+            while (durableRecords < target && !closed && !failed) {
+                written.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Write a snapshot now and drop the log before it; returns the new generation
+    public long snapshot() {
+        if (dir == null) {
+            throw new IllegalStateException("Write-ahead log is off");
+        }
+        while (!snapshotRunning.compareAndSet(false, true)) {
+            LockSupport.parkNanos(1_000_000); // a background snapshot is running
+        }
+        try {
+            return rollAndSnapshot();
+        } finally {
+            snapshotRunning.set(false);
+        }
+    }
+
+    public WriteAheadLogDTO stats() {
+        long appended;
+        long durable;
+        boolean hasFailed;
+        lock.lock();
+        try {
+            appended = appendedRecords;
+            durable = durableRecords;
+            hasFailed = failed;
+        } finally {
+            lock.unlock();
+        }
+        long syncs = fsyncs.get();
+        return new WriteAheadLogDTO(
+                dir != null,
+                dir == null ? null : dir.toString(),
+                generation,
+                appended,
+                durable,
+                bytesWritten.get(),
+                syncs,
+                syncs > 0 ? (double) durable / syncs : 0.0,
+                snapshots.get(),
+                lastSnapshotMs,
+                recoveredRecords,
+                recoveryMs,
+                hasFailed
+        );
+    }
+
+    // ---- Appending ----
+
+    private void orderChanged(Order order, OrderStatus oldStatus, String oldCourierId,
+                              OrderStatus status, String courierId) {
+        if (oldStatus == null) {
+            byte[] restaurant = utf8(order.getRestaurantId());
+            byte[] label = utf8(order.getLabel());
+            ByteBuffer record = ByteBuffer.allocate(1 + 8 + 8 + 8 + restaurant.length + label.length);
+            record.put(ORDER_CREATED).putLong(order.getId()).putInt(order.getX()).putInt(order.getY());
+            putString(record, restaurant);
+            putString(record, label);
+            append(record);
+        } else {
+            byte[] courier = utf8(courierId);
+            ByteBuffer record = ByteBuffer.allocate(1 + 8 + 1 + 4 + length(courier));
+            record.put(ORDER_CHANGED).putLong(order.getId()).put((byte) status.ordinal());
+            putString(record, courier);
+            append(record);
+        }
+    }
+
+    // One record with the cells of every courier that moved since the last one; runs after each tick, under no lock
+    private void logPositions() {
+        if (moved.isEmpty() || backlogged()) {
+            return; // they stay in moved, the next tick logs them
+        }
+        append(positionsRecord(new ArrayList<>(moved)));
+    }
+
+    private ByteBuffer positionsRecord(List<Courier> couriers) {
+        int size = 1 + 4;
+        List<byte[]> ids = new ArrayList<>(couriers.size());
+        for (Courier courier : couriers) {
+            byte[] id = utf8(courier.getId());
+            ids.add(id);
+            size += 4 + id.length + 8;
+        }
+        ByteBuffer record = ByteBuffer.allocate(size);
+        record.put(COURIER_POSITIONS).putInt(couriers.size());
+        for (int i = 0; i < couriers.size(); i++) {
+            Courier courier = couriers.get(i);
+            // Taken out before reading, so a move meanwhile puts it back for the next record
+            moved.remove(courier);
+            courier.getLock().lock();
+            try {
+                putString(record, ids.get(i));
+                record.putInt(courier.getCurrentX()).putInt(courier.getCurrentY());
+            } finally {
+                courier.getLock().unlock();
+            }
+        }
+        return record;
+    }
+
+    private boolean backlogged() {
+        lock.lock();
+        try {
+            return staging.position() >= BUFFER_BYTES;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void courierPlanned(Courier courier) {
+        byte[] id = utf8(courier.getId());
+        List<PlannedStop> stops = courier.getPlannedStops();
+        ByteBuffer record = ByteBuffer.allocate(1 + 4 + id.length + 4 + stops.size() * 17);
+        record.put(COURIER_PLAN);
+        putString(record, id);
+        record.putInt(stops.size());
+        for (PlannedStop stop : stops) {
+            record.putLong(stop.getOrderId()).put((byte) (stop.isPickup() ? 1 : 0)).putInt(stop.getX()).putInt(stop.getY());
+        }
+        append(record);
+    }
+
+    // Frame: length, payload, CRC32C of the payload
+    private void append(ByteBuffer record) {
+        record.flip();
+        int length = record.remaining();
+        if (length + 8 > BUFFER_BYTES) {
+            throw new IllegalStateException("Write-ahead log record too large: " + length + " bytes");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate());
+
+        lock.lock();
+        try {
+            if (closed || failed) {
+                return;
+            }
+            if (staging.remaining() < length + 8) {
+                // Callers hold locks the rest of the system needs, so the buffer grows instead of waiting
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * staging.capacity(), staging.position() + length + 8));
+                staging = larger.put(staging.flip());
+            }
+            staging.putInt(length).put(record).putInt((int) crc.getValue());
+            appendedRecords++;
+            lastAppended.get()[0] = appendedRecords;
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (snapshotEvery > 0 && recordsSinceSnapshot.incrementAndGet() >= snapshotEvery
+                && snapshotRunning.compareAndSet(false, true)) {
+            snapshotter.submit(() -> {
+                try {
+                    rollAndSnapshot();
+                } catch (RuntimeException ex) {
+                    log.warn("Write-ahead log snapshot failed", ex);
+                } finally {
+                    snapshotRunning.set(false);
+                }
+            });
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer batch;
+            int roll;
+            long nextGeneration;
+            long upTo;
+            lock.lock();
+            try {
+                while (staging.position() == 0 && rollAt < 0 && !closed) {
+                    hasWork.awaitUninterruptibly();
+                }
+                if (staging.position() == 0 && rollAt < 0) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // Let more appenders join this group before paying for the write and fsync
+            if (groupCommitNanos > 0) {
+                LockSupport.parkNanos(groupCommitNanos);
+            }
+
+            lock.lock();
+            try {
+                batch = staging;
+                staging = spare;
+                spare = null;
+                roll = rollAt;
+                nextGeneration = rollGeneration;
+                rollAt = -1;
+                upTo = appendedRecords;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                batch.flip();
+                if (roll >= 0) {
+                    write(batch.duplicate().limit(roll));
+                    force();
+                    channel.close();
+                    channel = openGeneration(nextGeneration);
+                    generation = nextGeneration;
+                    batch.position(roll);
+                }
+                write(batch);
+                force();
+            } catch (IOException ex) {
+                log.error("Write-ahead log failed, no longer logging", ex);
+                lock.lock();
+                try {
+                    failed = true;
+                    written.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                // A buffer grown while the disk was behind is not kept
+                spare = batch.capacity() > BUFFER_BYTES ? ByteBuffer.allocate(BUFFER_BYTES) : batch.clear();
+                durableRecords = upTo;
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            bytesWritten.addAndGet(channel.write(buffer));
+        }
+    }
+
+    private void force() throws IOException {
+        if (fsync) {
+            channel.force(false);
+            fsyncs.incrementAndGet();
+        }
+    }
+
+    // ---- Snapshots ----
+
+    private long rollAndSnapshot() {
+        long started = System.nanoTime();
+        long next;
+        lock.lock();
+        try {
+            if (closed || failed) {
+                throw new IllegalStateException("Write-ahead log is closed");
+            }
+            next = Math.max(generation, rollGeneration) + 1;
+            rollAt = staging.position();
+            rollGeneration = next;
+            recordsSinceSnapshot.set(0);
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            // Everything before the roll is already in memory, so the snapshot holds at least that much
+            writeSnapshot(next);
+            lock.lock();
+            try {
+                while (generation < next && !closed && !failed) {
+                    written.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+            deleteGenerationsBefore(next);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot write snapshot " + next, ex);
+        }
+        snapshots.incrementAndGet();
+        lastSnapshotMs = (System.nanoTime() - started) / 1_000_000.0;
+        return next;
+    }
+
+    private void writeSnapshot(long snapshotGeneration) throws IOException {
+        Path target = dir.resolve("snapshot-" + snapshotGeneration + ".bin");
+        Path temporary = dir.resolve("snapshot-" + snapshotGeneration + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            IOException[] failure = new IOException[1];
+            orderService.forEachOrder(
+                    order -> writeOrder(out, order.getId(), order.getRestaurantId(), order.getX(), order.getY(),
+                            order.getLabel(), order.getStatus(), order.getAssignedCourierId(), failure),
+                    dto -> writeOrder(out, dto.id(), dto.restaurantId(), dto.x(), dto.y(),
+                            dto.label(), OrderStatus.valueOf(dto.status()), dto.assignedCourierId(), failure)
+            );
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            for (Courier courier : courierService.listCourierEntities()) {
+                List<PlannedStop> stops;
+                int x;
+                int y;
+                courier.getLock().lock();
+                try {
+                    x = courier.getCurrentX();
+                    y = courier.getCurrentY();
+                    stops = List.copyOf(courier.getPlannedStops());
+                } finally {
+                    courier.getLock().unlock();
+                }
+                out.writeByte('C');
+                out.writeUTF(courier.getId());
+                out.writeInt(x);
+                out.writeInt(y);
+                out.writeInt(stops.size());
+                for (PlannedStop stop : stops) {
+                    out.writeLong(stop.getOrderId());
+                    out.writeBoolean(stop.isPickup());
+                    out.writeInt(stop.getX());
+                    out.writeInt(stop.getY());
+                }
+            }
+            out.writeByte('E');
+            out.flush();
+            if (fsync) {
+                file.getChannel().force(true);
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeOrder(DataOutputStream out, long id, String restaurantId, int x, int y, String label,
+                                   OrderStatus status, String courierId, IOException[] failure) {
+        if (failure[0] != null) {
+            return;
+        }
+        try {
+            out.writeByte('O');
+            out.writeLong(id);
+            out.writeUTF(restaurantId);
+            out.writeInt(x);
+            out.writeInt(y);
+            writeString(out, label);
+            out.writeByte(status.ordinal());
+            out.writeBoolean(courierId != null);
+            if (courierId != null) {
+                out.writeUTF(courierId);
+            }
+        } catch (IOException ex) {
+            failure[0] = ex;
+        }
+    }
+
+    private FileChannel openGeneration(long walGeneration) throws IOException {
+        return FileChannel.open(dir.resolve("wal-" + walGeneration + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void deleteGenerationsBefore(long keep) throws IOException {
+        for (Map.Entry<Long, Path> file : files(WAL_FILE).entrySet()) {
+            if (file.getKey() < keep) Files.deleteIfExists(file.getValue());
+        }
+        for (Map.Entry<Long, Path> file : files(SNAPSHOT_FILE).entrySet()) {
+            if (file.getKey() < keep) Files.deleteIfExists(file.getValue());
+        }
+    }
+
+    private TreeMap<Long, Path> files(Pattern pattern) throws IOException {
+        TreeMap<Long, Path> found = new TreeMap<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            listing.forEach(path -> {
+                Matcher matcher = pattern.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    found.put(Long.parseLong(matcher.group(1)), path);
+                }
+            });
+        }
+        return found;
+    }
+
+    // ---- Recovery ----
+
+    private static final class RecoveredOrder {
+        long id;
+        String restaurantId;
+        int x;
+        int y;
+        String label;
+        OrderStatus status = OrderStatus.NEW;
+        String courierId;
+    }
+
+    private static final class RecoveredState {
+        final Map<Long, RecoveredOrder> orders = new HashMap<>();
+        final Map<String, int[]> positions = new HashMap<>();
+        final Map<String, List<PlannedStop>> plans = new HashMap<>();
+        long records;
+    }
+
+    // Returns the newest generation found on disk, 0 if none
+    private long recover() throws IOException {
+        RecoveredState state = new RecoveredState();
+        TreeMap<Long, Path> snapshotFiles = files(SNAPSHOT_FILE);
+        TreeMap<Long, Path> walFiles = files(WAL_FILE);
+
+        long base = 0;
+        if (!snapshotFiles.isEmpty()) {
+            base = snapshotFiles.lastKey();
+            readSnapshot(snapshotFiles.lastEntry().getValue(), state);
+        }
+        for (Map.Entry<Long, Path> wal : walFiles.tailMap(base, true).entrySet()) {
+            if (!replay(wal.getValue(), state)) {
+                break; // a torn record; nothing after it can be trusted
+            }
+        }
+        install(state);
+        recoveredRecords = state.records;
+
+        long newest = base;
+        if (!walFiles.isEmpty()) newest = Math.max(newest, walFiles.lastKey());
+        return newest;
+    }
+
+    private void readSnapshot(Path path, RecoveredState state) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot: " + path);
+            }
+            OrderStatus[] statuses = OrderStatus.values();
+            while (true) {
+                int type = in.readByte();
+                if (type == 'E') {
+                    return;
+                } else if (type == 'O') {
+                    RecoveredOrder order = new RecoveredOrder();
+                    order.id = in.readLong();
+                    order.restaurantId = in.readUTF();
+                    order.x = in.readInt();
+                    order.y = in.readInt();
+                    order.label = readString(in);
+                    order.status = statuses[in.readByte()];
+                    order.courierId = in.readBoolean() ? in.readUTF() : null;
+                    state.orders.put(order.id, order);
+                } else if (type == 'C') {
+                    String id = in.readUTF();
+                    state.positions.put(id, new int[]{in.readInt(), in.readInt()});
+                    int count = in.readInt();
+                    List<PlannedStop> stops = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        stops.add(new PlannedStop(in.readLong(), in.readBoolean(), in.readInt(), in.readInt()));
+                    }
+                    state.plans.put(id, stops);
+                } else {
+                    throw new IOException("Corrupt snapshot " + path);
+                }
+            }
+        }
+    }
+
+    // False if the file ends in a torn or corrupt record
+    private boolean replay(Path path, RecoveredState state) throws IOException {
+        OrderStatus[] statuses = OrderStatus.values();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while (true) {
+                byte[] payload;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > BUFFER_BYTES) {
+                        log.warn("Write-ahead log {} has a corrupt record after {} records", path, state.records);
+                        return false;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    checksum = in.readInt();
+                } catch (EOFException ex) {
+                    // a clean end is an EOF right at a record boundary; a torn one loses at most the last group
+                    return true;
+                }
+                CRC32C crc = new CRC32C();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    log.warn("Write-ahead log {} has a bad checksum after {} records", path, state.records);
+                    return false;
+                }
+                apply(ByteBuffer.wrap(payload), state, statuses);
+                state.records++;
+            }
+        }
+    }
+
+    private static void apply(ByteBuffer record, RecoveredState state, OrderStatus[] statuses) {
+        switch (record.get()) {
+            case ORDER_CREATED -> {
+                RecoveredOrder order = new RecoveredOrder();
+                order.id = record.getLong();
+                order.x = record.getInt();
+                order.y = record.getInt();
+                order.restaurantId = getString(record);
+                order.label = getString(record);
+                // the snapshot may already hold the order in a later state
+                state.orders.putIfAbsent(order.id, order);
+            }
+            case ORDER_CHANGED -> {
+                RecoveredOrder order = state.orders.get(record.getLong());
+                OrderStatus status = statuses[record.get()];
+                String courierId = getString(record);
+                if (order != null) {
+                    order.status = status;
+                    order.courierId = courierId;
+                }
+            }
+            case COURIER_MOVED -> state.positions.put(getString(record), new int[]{record.getInt(), record.getInt()});
+            case COURIER_POSITIONS -> {
+                int count = record.getInt();
+                for (int i = 0; i < count; i++) {
+                    state.positions.put(getString(record), new int[]{record.getInt(), record.getInt()});
+                }
+            }
+            case COURIER_PLAN -> {
+                String id = getString(record);
+                int count = record.getInt();
+                List<PlannedStop> stops = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    stops.add(new PlannedStop(record.getLong(), record.get() == 1, record.getInt(), record.getInt()));
+                }
+                state.plans.put(id, stops);
+            }
+            default -> throw new IllegalStateException("Unknown write-ahead log record type");
+        }
+    }
+
+    // Orders first, then each courier's position, orders and plan (its route is searched again)
+    private void install(RecoveredState state) {
+        List<RecoveredOrder> orders = new ArrayList<>(state.orders.values());
+        orders.sort(Comparator.comparingLong(o -> o.id));
+
+        // Delivered orders the archive would take anyway go straight there
+        int keep = orderService.keepDelivered();
+        long delivered = orders.stream().filter(o -> o.status == OrderStatus.DELIVERED).count();
+        long toArchive = keep < 0 ? 0 : Math.max(0, delivered - keep);
+        for (RecoveredOrder o : orders) {
+            if (o.status == OrderStatus.DELIVERED && toArchive > 0) {
+                orderService.restoreArchived(o.id, o.restaurantId, o.x, o.y, o.label, o.courierId);
+                toArchive--;
+            } else {
+                orderService.restore(o.id, o.restaurantId, o.x, o.y, o.label, o.status, o.courierId);
+            }
+        }
+
+        for (Courier courier : courierService.listCourierEntities()) {
+            int[] position = state.positions.get(courier.getId());
+            if (position != null) {
+                courierService.restorePosition(courier, position[0], position[1]);
+            }
+
+            List<RecoveredOrder> active = new ArrayList<>();
+            for (RecoveredOrder o : orders) {
+                if (courier.getId().equals(o.courierId)
+                        && (o.status == OrderStatus.ASSIGNED || o.status == OrderStatus.IN_PROGRESS)) {
+                    active.add(o);
+                }
+            }
+            if (active.isEmpty()) {
+                continue;
+            }
+            List<PlannedStop> stops = recoveredStops(state.plans.getOrDefault(courier.getId(), List.of()), active);
+
+            courier.getLock().lock();
+            try {
+                active.forEach(o -> courier.assignOrder(o.id));
+                routePlanner.replan(courier, stops);
+            } catch (RuntimeException ex) {
+                log.warn("Could not rebuild the route of courier {} after recovery", courier.getId(), ex);
+            } finally {
+                courier.getLock().unlock();
+            }
+        }
+    }
+
+    // The logged stops that are still to do, plus both stops (at the end) for any order whose stops are missing
+    private List<PlannedStop> recoveredStops(List<PlannedStop> logged, List<RecoveredOrder> active) {
+        Map<Long, RecoveredOrder> byId = new HashMap<>();
+        active.forEach(o -> byId.put(o.id, o));
+
+        List<PlannedStop> stops = new ArrayList<>();
+        Map<Long, Integer> stopCounts = new HashMap<>();
+        for (PlannedStop stop : logged) {
+            RecoveredOrder order = byId.get(stop.getOrderId());
+            if (order == null || (stop.isPickup() && order.status != OrderStatus.ASSIGNED)) {
+                continue;
+            }
+            stops.add(new PlannedStop(stop.getOrderId(), stop.isPickup(), stop.getX(), stop.getY()));
+            stopCounts.merge(stop.getOrderId(), 1, Integer::sum);
+        }
+        for (RecoveredOrder order : active) {
+            int expected = order.status == OrderStatus.ASSIGNED ? 2 : 1;
+            if (stopCounts.getOrDefault(order.id, 0) == expected) {
+                continue;
+            }
+            stops.removeIf(stop -> stop.getOrderId() == order.id);
+            if (order.status == OrderStatus.ASSIGNED) {
+                cityMap.findRestaurantById(order.restaurantId).ifPresent(
+                        r -> stops.add(new PlannedStop(order.id, true, r.x(), r.y())));
+            }
+            stops.add(new PlannedStop(order.id, false, order.x, order.y));
+        }
+        return stops;
+    }
+
+    // ---- Encoding ----
+
+    // Labels come from clients and may be longer than writeUTF allows
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    // Length-prefixed, -1 for null
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.BatchAssignmentDTO;
+import com.example.routeplanner.dto.OrderAssignmentDTO;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Splits the city into square dispatch zones so that large batches are matched zone by zone in parallel.
+// An order belongs to the zone of its restaurant and is matched (see BatchDispatchService) only against the
+// couriers standing in that zone or within margin cells of it. Orders no local courier can take are handed
+// off to one final match against the whole fleet. Zones that share couriers near their border are kept
+// consistent by the per-courier locking of DispatchService.commitAssignment.
+@Service
+public class ZoneDispatchService {
+
+    private final OrderService orderService;
+    private final CourierService courierService;
+    private final CityMap cityMap;
+    private final BatchDispatchService batchDispatchService;
+    private final int zoneSize;
+    private final int margin;
+    private final ExecutorService workers;
+
+    public ZoneDispatchService(OrderService orderService,
+                               CourierService courierService,
+                               CityMap cityMap,
+                               BatchDispatchService batchDispatchService,
+                               @Value("${routeplanner.dispatch.zones.size:10}") int zoneSize,
+                               @Value("${routeplanner.dispatch.zones.margin:5}") int margin,
+                               @Value("${routeplanner.dispatch.zones.threads:0}") int threads) {
+        this.orderService = orderService;
+        this.courierService = courierService;
+        this.cityMap = cityMap;
+        this.batchDispatchService = batchDispatchService;
+        this.zoneSize = Math.max(1, zoneSize);
+        this.margin = Math.max(0, margin);
+
+        // 0 means one worker per core
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "zone-dispatch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public BatchAssignmentDTO assignNewOrders() {
+        return assignOrders(orderService.listOrderEntities(OrderStatus.NEW));
+    }
+
+    // Assign the given NEW orders, each zone on its own worker, then the handoffs across the whole city
+    public BatchAssignmentDTO assignOrders(List<Order> orders) {
+        long start = System.currentTimeMillis();
+
+        // Zone id -> its orders; orders of unknown restaurants go straight to the final match, which reports them
+        Map<Integer, List<Order>> byZone = new LinkedHashMap<>();
+        List<Order> handoff = new ArrayList<>();
+        for (Order order : orders) {
+            var restaurant = cityMap.findRestaurantById(order.getRestaurantId());
+            if (restaurant.isEmpty()) {
+                handoff.add(order);
+                continue;
+            }
+            byZone.computeIfAbsent(zoneOf(restaurant.get().x(), restaurant.get().y()), z -> new ArrayList<>())
+                    .add(order);
+        }
+
+        List<Future<BatchAssignmentDTO>> futures = new ArrayList<>();
+        for (Map.Entry<Integer, List<Order>> zone : byZone.entrySet()) {
+            int zoneId = zone.getKey();
+            List<Order> zoneOrders = zone.getValue();
+            futures.add(workers.submit(() -> batchDispatchService.assignOrders(zoneOrders, localCouriers(zoneId))));
+        }
+
+        List<OrderAssignmentDTO> assignments = new ArrayList<>();
+        double totalAddedCost = 0.0;
+        int rounds = 0;
+        for (Future<BatchAssignmentDTO> future : futures) {
+            BatchAssignmentDTO result = await(future);
+            assignments.addAll(result.assignments());
+            totalAddedCost += result.totalAddedCost();
+            rounds = Math.max(rounds, result.rounds()); // zones run side by side
+            for (long orderId : result.unassignedOrderIds()) {
+                handoff.add(orderService.getOrderEntity(orderId));
+            }
+        }
+
+        // Cross-zone handoff: whatever no local courier could take is matched against every courier
+        List<Long> unassigned = new ArrayList<>();
+        if (!handoff.isEmpty()) {
+            BatchAssignmentDTO result = batchDispatchService.assignOrders(handoff, courierService.listCourierEntities());
+            assignments.addAll(result.assignments());
+            totalAddedCost += result.totalAddedCost();
+            rounds += result.rounds();
+            unassigned.addAll(result.unassignedOrderIds());
+        }
+
+        return new BatchAssignmentDTO(
+                assignments,
+                unassigned,
+                totalAddedCost,
+                rounds,
+                System.currentTimeMillis() - start
+        );
+    }
+
+    int zoneOf(int x, int y) {
+        int zonesPerRow = (cityMap.getGrid().getWidth() + zoneSize - 1) / zoneSize;
+        return (y / zoneSize) * zonesPerRow + x / zoneSize;
+    }
+
+    // Couriers inside the zone or at most margin cells outside it
+    List<Courier> localCouriers(int zoneId) {
+        Grid grid = cityMap.getGrid();
+        int zonesPerRow = (grid.getWidth() + zoneSize - 1) / zoneSize;
+        int minX = (zoneId % zonesPerRow) * zoneSize - margin;
+        int minY = (zoneId / zonesPerRow) * zoneSize - margin;
+        int maxX = minX + zoneSize - 1 + 2 * margin;
+        int maxY = minY + zoneSize - 1 + 2 * margin;
+
+        // The Manhattan ball around the centre covers the square; the corners outside it are filtered out
+        int centerX = (minX + maxX) / 2;
+        int centerY = (minY + maxY) / 2;
+        int radius = (maxX - minX + 1) + (maxY - minY + 1);
+
+        List<Courier> result = new ArrayList<>();
+        for (Courier courier : courierService.couriersWithin(centerX, centerY, radius)) {
+            int x = courier.getCurrentX();
+            int y = courier.getCurrentY();
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                result.add(courier);
+            }
+        }
+        return result;
+    }
+
+    private static BatchAssignmentDTO await(Future<BatchAssignmentDTO> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for zone dispatch", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Zone dispatch failed", ex.getCause());
+        }
+    }
+}
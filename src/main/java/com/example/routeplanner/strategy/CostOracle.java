@@ -0,0 +1,34 @@
+package com.example.routeplanner.strategy;
+
+import com.example.routeplanner.dto.DeliveryStopDTO;
+
+import java.util.List;
+
+// Travel cost between two grid points.
+// Strategies use it to rank stops by road cost without running their own searches;
+// implementations can be backed by a distance matrix, a route cache or precomputed distance fields.
+@FunctionalInterface
+public interface CostOracle {
+
+    // Cost of driving from (fromX, fromY) to (toX, toY), +infinity if unreachable
+    double cost(int fromX, int fromY, int toX, int toY);
+
+    // Straight-line Manhattan distance, used when no road costs are available
+    static CostOracle manhattan() {
+        return (fromX, fromY, toX, toY) -> Math.abs(fromX - toX) + Math.abs(fromY - toY);
+    }
+
+    // Total cost of visiting the stops in the given order, starting from (startX, startY)
+    default double tourCost(int startX, int startY, List<DeliveryStopDTO> stops, int[] order) {
+        double total = 0.0;
+        int currentX = startX;
+        int currentY = startY;
+        for (int index : order) {
+            DeliveryStopDTO stop = stops.get(index);
+            total += cost(currentX, currentY, stop.x(), stop.y());
+            currentX = stop.x();
+            currentY = stop.y();
+        }
+        return total;
+    }
+}
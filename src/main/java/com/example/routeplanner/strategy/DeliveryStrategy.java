@@ -1,13 +1,44 @@
 package com.example.routeplanner.strategy;
 import com.example.routeplanner.dto.DeliveryStopDTO;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public interface DeliveryStrategy {
     //Name used in API
     String getName();
 
+    // Order the stops using the given travel costs and return the visiting order as indexes into stops.
+    // predecessors[i] is the index of a stop that must be visited before stop i (e.g. the restaurant
+    // a customer's food is picked up at), or -1. predecessors may be null when there are no constraints.
+    int[] orderStops(List<DeliveryStopDTO> stops, int[] predecessors, int startX, int startY, CostOracle costs);
+
+    // True for strategies that try to beat nearest neighbour, so responses report the difference
+    default boolean improvesOnNearestNeighbor() {
+        return false;
+    }
+
     //Order the delivery stops based on the strategy implemented by the class
-    List<DeliveryStopDTO> orderStops(List<DeliveryStopDTO> stops, int startX, int startY);
+    default List<DeliveryStopDTO> orderStops(List<DeliveryStopDTO> stops, int startX, int startY) {
+        return orderStops(stops, startX, startY, CostOracle.manhattan());
+    }
+
+    // Same as above, but ranking stops by the given travel costs
+    default List<DeliveryStopDTO> orderStops(List<DeliveryStopDTO> stops, int startX, int startY, CostOracle costs) {
+        if (stops == null || stops.isEmpty()) {
+            return List.of();
+        }
+
+        int[] order = orderStops(stops, null, startX, startY, costs);
+        List<DeliveryStopDTO> ordered = new ArrayList<>(order.length);
+        for (int index : order) {
+            ordered.add(stops.get(index));
+        }
+        return ordered;
+    }
 
+    // True if stop i may be visited once the stops marked in visited are done
+    static boolean isAvailable(int[] predecessors, boolean[] visited, int i) {
+        return predecessors == null || predecessors[i] < 0 || visited[predecessors[i]];
+    }
 }
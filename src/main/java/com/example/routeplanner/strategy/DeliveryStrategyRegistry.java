@@ -1,5 +1,6 @@
 package com.example.routeplanner.strategy;
 
+import com.example.routeplanner.dto.DeliveryStopDTO;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
@@ -36,4 +37,27 @@ public class DeliveryStrategyRegistry {
         }
         return strategies.getOrDefault(name.toUpperCase(), defaultStrategy);
     }
+
+    // How much cheaper the given order is than the nearest-neighbour order, by the given costs.
+    // Null if the strategy does not try to improve on nearest neighbour, or if either tour can not be driven
+    // (an unreachable stop makes both costs infinite and the difference meaningless).
+    public Double improvementOverNearestNeighbor(DeliveryStrategy strategy,
+                                                 List<DeliveryStopDTO> stops,
+                                                 int[] predecessors,
+                                                 int startX, int startY,
+                                                 CostOracle costs,
+                                                 int[] order) {
+        DeliveryStrategy nearestNeighbor = strategies.get("NEAREST_NEIGHBOR");
+        if (!strategy.improvesOnNearestNeighbor() || nearestNeighbor == null) {
+            return null;
+        }
+
+        int[] baseline = nearestNeighbor.orderStops(stops, predecessors, startX, startY, costs);
+        double baselineCost = costs.tourCost(startX, startY, stops, baseline);
+        double cost = costs.tourCost(startX, startY, stops, order);
+        if (Double.isInfinite(baselineCost) || Double.isInfinite(cost)) {
+            return null;
+        }
+        return baselineCost - cost;
+    }
 }
@@ -0,0 +1,62 @@
+package com.example.routeplanner.strategy;
+
+import com.example.routeplanner.dto.DeliveryStopDTO;
+
+import java.util.List;
+
+// Road costs between the start point and all stops, looked up once from a cost oracle.
+// Node 0 is the start, node i + 1 is stops.get(i). Stored as one flat primitive array.
+public final class DistanceMatrix {
+
+    private final int size;
+    private final double[] costs;
+
+    private DistanceMatrix(int size, double[] costs) {
+        this.size = size;
+        this.costs = costs;
+    }
+
+    public static DistanceMatrix build(List<DeliveryStopDTO> stops, int startX, int startY, CostOracle oracle) {
+        int size = stops.size() + 1;
+        int[] xs = new int[size];
+        int[] ys = new int[size];
+        xs[0] = startX;
+        ys[0] = startY;
+        for (int i = 0; i < stops.size(); i++) {
+            xs[i + 1] = stops.get(i).x();
+            ys[i + 1] = stops.get(i).y();
+        }
+
+        double[] costs = new double[size * size];
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                costs[from * size + to] = from == to ? 0.0 : oracle.cost(xs[from], ys[from], xs[to], ys[to]);
+            }
+        }
+        return new DistanceMatrix(size, costs);
+    }
+
+    public int stopCount() {
+        return size - 1;
+    }
+
+    // Cost from the start point to a stop
+    public double fromStart(int stop) {
+        return costs[stop + 1];
+    }
+
+    // Cost from one stop to another
+    public double between(int fromStop, int toStop) {
+        return costs[(fromStop + 1) * size + toStop + 1];
+    }
+
+    // Cost of driving from the start through the stops in the given order
+    public double tourCost(int[] order) {
+        if (order.length == 0) return 0.0;
+        double total = fromStart(order[0]);
+        for (int k = 1; k < order.length; k++) {
+            total += between(order[k - 1], order[k]);
+        }
+        return total;
+    }
+}
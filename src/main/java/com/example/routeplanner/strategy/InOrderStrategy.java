@@ -3,7 +3,6 @@ package com.example.routeplanner.strategy;
 import com.example.routeplanner.dto.DeliveryStopDTO;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
 import java.util.List;
 
 // Strategy that delivers stops in the order they are provided
@@ -16,8 +15,12 @@ public class InOrderStrategy implements DeliveryStrategy {
     }
 
     @Override
-    public List<DeliveryStopDTO> orderStops(List<DeliveryStopDTO> stops, int startX, int startY) {
-        // Simply return the stops as they are provided
-        return stops == null ? List.of() : new ArrayList<>(stops);
+    public int[] orderStops(List<DeliveryStopDTO> stops, int[] predecessors, int startX, int startY, CostOracle costs) {
+        // Simply keep the stops as they are provided (callers list pickups before their drop-offs)
+        int[] order = new int[stops == null ? 0 : stops.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        return order;
     }
-}
\ No newline at end of file
+}
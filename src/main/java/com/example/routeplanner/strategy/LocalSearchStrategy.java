@@ -0,0 +1,193 @@
+package com.example.routeplanner.strategy;
+
+import com.example.routeplanner.dto.DeliveryStopDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Starts from the nearest-neighbour tour and improves it with 2-opt (segment reversal) and
+// Or-opt (moving a run of 1-3 stops) over a precomputed road-distance matrix.
+// Moves that would visit a customer before its restaurant are skipped.
+// The search stops at a local optimum or when the time budget runs out.
+@Component
+public class LocalSearchStrategy implements DeliveryStrategy {
+
+    private static final int MAX_OR_OPT_SEGMENT = 3;
+    private static final double EPSILON = 1e-9;
+
+    private final NearestNeighborStrategy nearestNeighbor;
+    private final long timeBudgetNanos;
+
+    public LocalSearchStrategy(NearestNeighborStrategy nearestNeighbor,
+                               @Value("${routeplanner.strategy.local-search.time-budget-ms:50}") long timeBudgetMs) {
+        this.nearestNeighbor = nearestNeighbor;
+        this.timeBudgetNanos = timeBudgetMs * 1_000_000L;
+    }
+
+    @Override
+    public String getName() {
+        return "LOCAL_SEARCH";
+    }
+
+    @Override
+    public boolean improvesOnNearestNeighbor() {
+        return true;
+    }
+
+    @Override
+    public int[] orderStops(List<DeliveryStopDTO> stops, int[] predecessors, int startX, int startY, CostOracle costs) {
+        int[] tour = nearestNeighbor.orderStops(stops, predecessors, startX, startY, costs);
+        if (tour.length < 3) {
+            return tour;
+        }
+
+        DistanceMatrix matrix = DistanceMatrix.build(stops, startX, startY, costs);
+        if (!Double.isFinite(matrix.tourCost(tour))) {
+            return tour; // some stop is unreachable, nothing sensible to optimize
+        }
+
+        improve(tour, predecessors, matrix, System.nanoTime() + timeBudgetNanos);
+        return tour;
+    }
+
+    // Improve the tour in place until no move helps or the deadline passes
+    void improve(int[] tour, int[] predecessors, DistanceMatrix matrix, long deadlineNanos) {
+        int n = tour.length;
+        int[] pos = new int[n];
+
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadlineNanos) {
+            for (int k = 0; k < n; k++) {
+                pos[tour[k]] = k;
+            }
+            improved = twoOpt(tour, pos, predecessors, matrix) || orOpt(tour, pos, predecessors, matrix);
+        }
+    }
+
+    // Reverse tour[i..j] if that is cheaper. Costs may be asymmetric, so the reversed inner
+    // edges are compared too. Returns true after applying the first improving move.
+    private boolean twoOpt(int[] tour, int[] pos, int[] predecessors, DistanceMatrix m) {
+        int n = tour.length;
+
+        // forward[k] = cost of tour[0..k] driven forwards, backward[k] = the same edges driven backwards
+        double[] forward = new double[n];
+        double[] backward = new double[n];
+        for (int k = 1; k < n; k++) {
+            forward[k] = forward[k - 1] + m.between(tour[k - 1], tour[k]);
+            backward[k] = backward[k - 1] + m.between(tour[k], tour[k - 1]);
+        }
+
+        for (int i = 0; i < n - 1; i++) {
+            double before = i == 0 ? m.fromStart(tour[0]) : m.between(tour[i - 1], tour[i]);
+            for (int j = i + 1; j < n; j++) {
+                if (!canReverse(tour, pos, predecessors, i, j)) {
+                    break; // a longer segment would contain the same pickup/drop-off pair
+                }
+
+                double oldCost = before + (forward[j] - forward[i])
+                        + (j + 1 < n ? m.between(tour[j], tour[j + 1]) : 0.0);
+                double newCost = (i == 0 ? m.fromStart(tour[j]) : m.between(tour[i - 1], tour[j]))
+                        + (backward[j] - backward[i])
+                        + (j + 1 < n ? m.between(tour[i], tour[j + 1]) : 0.0);
+
+                if (newCost < oldCost - EPSILON) {
+                    reverse(tour, i, j);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Move a run of 1-3 consecutive stops to another place in the tour if that is cheaper.
+    // The run keeps its direction, so only the edges around it change.
+    private boolean orOpt(int[] tour, int[] pos, int[] predecessors, DistanceMatrix m) {
+        int n = tour.length;
+
+        for (int len = 1; len <= MAX_OR_OPT_SEGMENT && len < n; len++) {
+            for (int i = 0; i + len <= n; i++) {
+                int first = tour[i];
+                int last = tour[i + len - 1];
+
+                // cost saved by cutting the run out and joining its neighbours
+                double removed = edge(m, tour, i - 1, first)
+                        + (i + len < n ? m.between(last, tour[i + len]) : 0.0);
+                double joined = i + len < n ? edge(m, tour, i - 1, tour[i + len]) : 0.0;
+                double saving = removed - joined;
+
+                // try inserting the run between tour[g-1] and tour[g] (g outside the run)
+                for (int g = 0; g <= n; g++) {
+                    if (g >= i && g <= i + len) {
+                        continue;
+                    }
+                    if (!canMove(tour, pos, predecessors, i, len, g)) {
+                        continue;
+                    }
+
+                    double added = edge(m, tour, g - 1, first)
+                            + (g < n ? m.between(last, tour[g]) : 0.0)
+                            - (g < n ? edge(m, tour, g - 1, tour[g]) : 0.0);
+
+                    if (added < saving - EPSILON) {
+                        move(tour, i, len, g);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Cost of the edge into stop `to` from tour position `fromPos` (-1 = start)
+    private static double edge(DistanceMatrix m, int[] tour, int fromPos, int to) {
+        return fromPos < 0 ? m.fromStart(to) : m.between(tour[fromPos], to);
+    }
+
+    // Reversing tour[i..j] is only allowed if no stop in it has its predecessor in it too
+    private static boolean canReverse(int[] tour, int[] pos, int[] predecessors, int i, int j) {
+        if (predecessors == null) return true;
+        int p = predecessors[tour[j]];
+        return p < 0 || pos[p] < i;
+    }
+
+    // Moving tour[i..i+len) to before position g must keep every predecessor ahead of its stop
+    private static boolean canMove(int[] tour, int[] pos, int[] predecessors, int i, int len, int g) {
+        if (predecessors == null) return true;
+        if (g < i) {
+            // moving earlier: no stop in the run may depend on a stop it jumps over
+            for (int k = i; k < i + len; k++) {
+                int p = predecessors[tour[k]];
+                if (p >= 0 && pos[p] >= g && pos[p] < i) return false;
+            }
+        } else {
+            // moving later: no stop jumped over may depend on a stop in the run
+            for (int k = i + len; k < g; k++) {
+                int p = predecessors[tour[k]];
+                if (p >= 0 && pos[p] >= i && pos[p] < i + len) return false;
+            }
+        }
+        return true;
+    }
+
+    private static void reverse(int[] tour, int i, int j) {
+        while (i < j) {
+            int tmp = tour[i];
+            tour[i++] = tour[j];
+            tour[j--] = tmp;
+        }
+    }
+
+    // Move tour[i..i+len) so it ends up right before the stop currently at position g
+    private static void move(int[] tour, int i, int len, int g) {
+        int[] run = new int[len];
+        System.arraycopy(tour, i, run, 0, len);
+        if (g < i) {
+            System.arraycopy(tour, g, tour, g + len, i - g);
+            System.arraycopy(run, 0, tour, g, len);
+        } else {
+            System.arraycopy(tour, i + len, tour, i, g - i - len);
+            System.arraycopy(run, 0, tour, g - len, len);
+        }
+    }
+}
@@ -3,10 +3,10 @@ package com.example.routeplanner.strategy;
 import com.example.routeplanner.dto.DeliveryStopDTO;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
 import java.util.List;
 
-// Each step: pick the closest not-yet-visited stop (by Manhattan distance)
+// Each step: pick the closest not-yet-visited stop (by the travel costs given, Manhattan by default)
+// whose predecessor has already been visited
 
 @Component
 public class NearestNeighborStrategy implements DeliveryStrategy {
@@ -17,40 +17,46 @@ public class NearestNeighborStrategy implements DeliveryStrategy {
     }
 
     @Override
-    public List<DeliveryStopDTO> orderStops(List<DeliveryStopDTO> stops, int startX, int startY) {
+    public int[] orderStops(List<DeliveryStopDTO> stops, int[] predecessors, int startX, int startY, CostOracle costs) {
         if (stops == null || stops.isEmpty()) {
-            return List.of();
+            return new int[0];
         }
 
-        List<DeliveryStopDTO> remaining = new ArrayList<>(stops);
-        List<DeliveryStopDTO> ordered = new ArrayList<>(stops.size());
+        int n = stops.size();
+        boolean[] visited = new boolean[n];
+        int[] order = new int[n];
 
         int currentX = startX;
         int currentY = startY;
 
-        while (!remaining.isEmpty()) {
-            DeliveryStopDTO closest = null;
-            int bestDist = Integer.MAX_VALUE;
+        for (int step = 0; step < n; step++) {
+            int closest = -1;
+            double bestDist = Double.POSITIVE_INFINITY;
 
-            for (DeliveryStopDTO stop : remaining) {
-                int dist = manhattan(currentX, currentY, stop.x(), stop.y());
-                if (dist < bestDist) {
+            for (int i = 0; i < n; i++) {
+                if (visited[i] || !DeliveryStrategy.isAvailable(predecessors, visited, i)) {
+                    continue;
+                }
+                DeliveryStopDTO stop = stops.get(i);
+                double dist = costs.cost(currentX, currentY, stop.x(), stop.y());
+                // take the first available stop even if unreachable, so the route reports the failure
+                if (closest == -1 || dist < bestDist) {
                     bestDist = dist;
-                    closest = stop;
+                    closest = i;
                 }
             }
 
-            ordered.add(closest);
-            remaining.remove(closest);
+            if (closest == -1) {
+                throw new IllegalArgumentException("Stop predecessors contain a cycle");
+            }
 
-            currentX = closest.x();
-            currentY = closest.y();
-        }
+            order[step] = closest;
+            visited[closest] = true;
 
-        return ordered;
-    }
+            currentX = stops.get(closest).x();
+            currentY = stops.get(closest).y();
+        }
 
-    private int manhattan(int x1, int y1, int x2, int y2) {
-        return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+        return order;
     }
 }
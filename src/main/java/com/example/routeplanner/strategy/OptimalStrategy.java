@@ -0,0 +1,120 @@
+package com.example.routeplanner.strategy;
+
+import com.example.routeplanner.dto.DeliveryStopDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Exact shortest visiting order via Held-Karp bitmask dynamic programming over a road-distance matrix.
+// best[mask * n + last] is the cheapest way to start at the courier, visit exactly the stops in mask and
+// end at stop last. A stop can only be added once its predecessor (its restaurant) is in the mask.
+// Time O(2^n * n^2) and memory O(2^n * n), so above maxStops it falls back to local search.
+@Component
+public class OptimalStrategy implements DeliveryStrategy {
+
+    // Hard cap so a bad config can not allocate gigabytes (2^16 * 16 doubles = 8 MB)
+    static final int MAX_SUPPORTED_STOPS = 16;
+
+    private final DeliveryStrategy fallback;
+    private final int maxStops;
+
+    public OptimalStrategy(LocalSearchStrategy fallback,
+                           @Value("${routeplanner.strategy.optimal.max-stops:12}") int maxStops) {
+        this.fallback = fallback;
+        this.maxStops = Math.min(maxStops, MAX_SUPPORTED_STOPS);
+    }
+
+    @Override
+    public String getName() {
+        return "OPTIMAL";
+    }
+
+    @Override
+    public boolean improvesOnNearestNeighbor() {
+        return true;
+    }
+
+    @Override
+    public int[] orderStops(List<DeliveryStopDTO> stops, int[] predecessors, int startX, int startY, CostOracle costs) {
+        int n = stops == null ? 0 : stops.size();
+        if (n == 0) {
+            return new int[0];
+        }
+        if (n > maxStops) {
+            return fallback.orderStops(stops, predecessors, startX, startY, costs);
+        }
+
+        DistanceMatrix matrix = DistanceMatrix.build(stops, startX, startY, costs);
+        int[] order = solve(matrix, predecessors);
+        return order != null ? order : fallback.orderStops(stops, predecessors, startX, startY, costs);
+    }
+
+    // Returns the optimal order, or null if no order reaches every stop
+    int[] solve(DistanceMatrix m, int[] predecessors) {
+        int n = m.stopCount();
+        int full = (1 << n) - 1;
+
+        // bit mask of the stop that must be visited before each stop
+        int[] required = new int[n];
+        for (int j = 0; j < n; j++) {
+            required[j] = predecessors != null && predecessors[j] >= 0 ? 1 << predecessors[j] : 0;
+        }
+
+        double[] best = new double[(full + 1) * n];
+        byte[] parent = new byte[(full + 1) * n];
+        Arrays.fill(best, Double.POSITIVE_INFINITY);
+
+        for (int j = 0; j < n; j++) {
+            if (required[j] == 0) {
+                best[(1 << j) * n + j] = m.fromStart(j);
+                parent[(1 << j) * n + j] = -1;
+            }
+        }
+
+        // Masks only grow, so increasing numeric order visits every subset before its supersets
+        for (int mask = 1; mask <= full; mask++) {
+            int base = mask * n;
+            for (int last = 0; last < n; last++) {
+                double cost = best[base + last];
+                if (cost == Double.POSITIVE_INFINITY) continue;
+
+                for (int next = 0; next < n; next++) {
+                    int bit = 1 << next;
+                    if ((mask & bit) != 0 || (mask & required[next]) != required[next]) continue;
+
+                    int target = (mask | bit) * n + next;
+                    double candidate = cost + m.between(last, next);
+                    if (candidate < best[target]) {
+                        best[target] = candidate;
+                        parent[target] = (byte) last;
+                    }
+                }
+            }
+        }
+
+        int last = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < n; j++) {
+            if (best[full * n + j] < bestCost) {
+                bestCost = best[full * n + j];
+                last = j;
+            }
+        }
+        if (last < 0) {
+            return null;
+        }
+
+        // Walk the parent pointers back from the full mask
+        int[] order = new int[n];
+        int mask = full;
+        for (int k = n - 1; k >= 0; k--) {
+            order[k] = last;
+            int previous = parent[mask * n + last];
+            mask &= ~(1 << last);
+            last = previous;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.routeplanner.benchmark;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.DeliveryStopDTO;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.service.RouteService;
+import com.example.routeplanner.strategy.CostOracle;
+import com.example.routeplanner.strategy.InOrderStrategy;
+import com.example.routeplanner.strategy.LocalSearchStrategy;
+import com.example.routeplanner.strategy.NearestNeighborStrategy;
+import com.example.routeplanner.strategy.OptimalStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Time and allocation per call of the delivery strategies on the city map.
+// Road costs come from precomputed distance fields, so only the ordering itself is measured.
+// Run main() (e.g. from the IDE); the GC profiler reports bytes allocated per call (gc.alloc.rate.norm).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeliveryStrategyBenchmark {
+
+    // restaurants + customers; orders come in pairs so the counts are even
+    @Param({"4", "8", "12", "14"})
+    public int stopCount;
+
+    private final InOrderStrategy inOrder = new InOrderStrategy();
+    private final NearestNeighborStrategy nearestNeighbor = new NearestNeighborStrategy();
+    private final LocalSearchStrategy localSearch = new LocalSearchStrategy(nearestNeighbor, 50);
+    private final OptimalStrategy optimal = new OptimalStrategy(localSearch, 16);
+
+    private List<DeliveryStopDTO> stops;
+    private int[] predecessors;
+    private CostOracle costs;
+    private int startX;
+    private int startY;
+
+    @Setup
+    public void setUp() {
+        CityMap cityMap = new CityMap();
+        Grid grid = cityMap.getGrid();
+        RouteService routeService = new RouteService();
+        Random random = new Random(1);
+
+        startX = 1;
+        startY = 4;
+        stops = new ArrayList<>();
+        predecessors = new int[stopCount];
+
+        // pairs of (restaurant, customer), the customer depends on its restaurant
+        List<CityMap.Restaurant> restaurants = cityMap.getRestaurants();
+        for (int i = 0; i < stopCount; i += 2) {
+            CityMap.Restaurant r = restaurants.get(random.nextInt(restaurants.size()));
+            stops.add(new DeliveryStopDTO(r.x(), r.y(), r.name()));
+            predecessors[i] = -1;
+
+            int x;
+            int y;
+            do {
+                x = random.nextInt(grid.getWidth());
+                y = random.nextInt(grid.getHeight());
+            } while (grid.isObstacle(x, y));
+            stops.add(new DeliveryStopDTO(x, y, "customer " + i));
+            predecessors[i + 1] = i;
+        }
+
+        // one distance field per source point
+        Map<Long, double[]> fields = new HashMap<>();
+        fields.put(key(startX, startY), routeService.computeDistanceField(grid, startX, startY));
+        for (DeliveryStopDTO stop : stops) {
+            fields.computeIfAbsent(key(stop.x(), stop.y()),
+                    k -> routeService.computeDistanceField(grid, stop.x(), stop.y()));
+        }
+        int width = grid.getWidth();
+        costs = (fromX, fromY, toX, toY) -> fields.get(key(fromX, fromY))[toY * width + toX];
+    }
+
+    @Benchmark
+    public int[] inOrder() {
+        return inOrder.orderStops(stops, predecessors, startX, startY, costs);
+    }
+
+    @Benchmark
+    public int[] nearestNeighbor() {
+        return nearestNeighbor.orderStops(stops, predecessors, startX, startY, costs);
+    }
+
+    @Benchmark
+    public int[] localSearch() {
+        return localSearch.orderStops(stops, predecessors, startX, startY, costs);
+    }
+
+    @Benchmark
+    public int[] optimal() {
+        return optimal.orderStops(stops, predecessors, startX, startY, costs);
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DeliveryStrategyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
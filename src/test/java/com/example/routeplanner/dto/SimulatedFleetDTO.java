@@ -0,0 +1,9 @@
+package com.example.routeplanner.dto;
+
+public record SimulatedFleetDTO(
+        int couriers,
+        int routeCells,         // size of the shared packed route buffer
+        long ticks,
+        double lastTickMicros
+) {
+}
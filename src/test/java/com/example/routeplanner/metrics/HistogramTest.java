@@ -0,0 +1,40 @@
+package com.example.routeplanner.metrics;
+
+import com.example.routeplanner.dto.HistogramDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void percentilesAreWithinBucketPrecision() {
+        Histogram histogram = new Histogram();
+        for (long v = 1; v <= 1000; v++) {
+            histogram.record(v);
+        }
+
+        HistogramDTO snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.count());
+        assertEquals(500.5, snapshot.mean(), 1e-9);
+        assertEquals(1000, snapshot.max());
+        assertInRange(500, snapshot.p50());
+        assertInRange(950, snapshot.p95());
+        assertInRange(990, snapshot.p99());
+    }
+
+    @Test
+    void everyValueFallsInsideItsBucket() {
+        for (long v = 0; v < 100_000; v += 7) {
+            int bucket = Histogram.bucketOf(v);
+            assertTrue(v <= Histogram.upperBound(bucket));
+            assertTrue(bucket == 0 || v > Histogram.upperBound(bucket - 1));
+        }
+    }
+
+    private static void assertInRange(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.25,
+                "Expected about " + expected + " but was " + actual);
+    }
+}
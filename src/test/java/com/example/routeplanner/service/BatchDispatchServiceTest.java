@@ -0,0 +1,136 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.BatchAssignmentDTO;
+import com.example.routeplanner.dto.CourierDTO;
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchDispatchServiceTest {
+
+    @Mock
+    private CityMap cityMap;
+
+    @Mock
+    private CourierService courierService;
+
+    private OrderService orderService;
+    private BatchDispatchService batchDispatchService;
+
+    @BeforeEach
+    void setUp() {
+        when(cityMap.getGrid()).thenReturn(new Grid(30, 20));
+        orderService = new OrderService(cityMap, new DispatchQueue(false, 100), new OrderArchive(1000, ""));
+        batchDispatchService = build(new RouteMaterializer(0));
+    }
+
+    private BatchDispatchService build(RouteMaterializer materializer) {
+
+        RouteService routeService = new RouteService();
+        RouteCache routeCache = new RouteCache(cityMap, routeService);
+        RoutePlanner routePlanner = new RoutePlanner(cityMap, routeCache, new DistanceFieldCache(cityMap, routeService));
+        DispatchService dispatchService = new DispatchService(
+                orderService, courierService, cityMap, routeCache, routePlanner,
+                new DispatchScorer(routePlanner),
+                new CourierCandidateSelector(cityMap, courierService, routeService,
+                        new CourierRestaurantDistances(cityMap, courierService, routeService), DispatchMode.ALL, 8, 15),
+                materializer
+        );
+        return new BatchDispatchService(
+                orderService, courierService, cityMap, routePlanner, dispatchService
+        );
+    }
+
+    @Test
+    void assignNewOrders_beatsGreedyArrivalOrder() {
+        when(cityMap.findRestaurantById("r1"))
+                .thenReturn(Optional.of(new CityMap.Restaurant("r1", "North", 0, 9)));
+        when(cityMap.findRestaurantById("r2"))
+                .thenReturn(Optional.of(new CityMap.Restaurant("r2", "South", 0, 1)));
+
+        // Greedy in arrival order gives both orders to A (5 + 10 extra cells);
+        // the matching gives the first one to B instead (7 + 5)
+        Courier a = new Courier("a", "A", 0, 5);
+        Courier b = new Courier("b", "B", 0, 15);
+        when(courierService.listCourierEntities()).thenReturn(List.of(a, b));
+        when(courierService.toDTOPublic(any(Courier.class))).thenAnswer(invocation -> {
+            Courier c = invocation.getArgument(0);
+            return new CourierDTO(c.getId(), c.getName(), c.getCurrentX(), c.getCurrentY(),
+                    List.copyOf(c.getAssignedOrderIds()));
+        });
+
+        long north = orderService.createOrder(new CreateOrderRequest("r1", 1, 9, null)).id();
+        long south = orderService.createOrder(new CreateOrderRequest("r2", 1, 1, null)).id();
+
+        BatchAssignmentDTO result = batchDispatchService.assignNewOrders();
+
+        assertEquals(2, result.assignments().size());
+        assertTrue(result.unassignedOrderIds().isEmpty());
+        assertEquals(12.0, result.totalAddedCost(), 1e-9);
+        assertEquals(1, result.rounds());
+
+        Order northOrder = orderService.getOrderEntity(north);
+        Order southOrder = orderService.getOrderEntity(south);
+        assertEquals("b", northOrder.getAssignedCourierId());
+        assertEquals("a", southOrder.getAssignedCourierId());
+        assertEquals(OrderStatus.ASSIGNED, northOrder.getStatus());
+        assertEquals(List.of(south), a.getAssignedOrderIds());
+        assertEquals(2, b.getPlannedStops().size());
+    }
+
+    @Test
+    void assignNewOrders_usesMoreRoundsWhenOrdersOutnumberCouriers() {
+        assignThreeOrdersToOneCourier(batchDispatchService);
+    }
+
+    @Test
+    void assignNewOrders_roundsWaitForRoutesBuiltInTheBackground() {
+        RouteMaterializer materializer = new RouteMaterializer(2);
+        try {
+            assignThreeOrdersToOneCourier(build(materializer));
+        } finally {
+            materializer.shutdown();
+        }
+    }
+
+    private void assignThreeOrdersToOneCourier(BatchDispatchService batchDispatchService) {
+        when(cityMap.findRestaurantById("r1"))
+                .thenReturn(Optional.of(new CityMap.Restaurant("r1", "Only", 5, 5)));
+        Courier a = new Courier("a", "A", 0, 0);
+        when(courierService.listCourierEntities()).thenReturn(List.of(a));
+        when(courierService.toDTOPublic(any(Courier.class))).thenAnswer(invocation -> {
+            Courier c = invocation.getArgument(0);
+            return new CourierDTO(c.getId(), c.getName(), c.getCurrentX(), c.getCurrentY(),
+                    List.copyOf(c.getAssignedOrderIds()));
+        });
+
+        for (int i = 0; i < 3; i++) {
+            orderService.createOrder(new CreateOrderRequest("r1", 10 + i, 5, null));
+        }
+
+        BatchAssignmentDTO result = batchDispatchService.assignNewOrders();
+
+        assertEquals(3, result.assignments().size());
+        assertEquals(3, result.rounds());
+        // Every round scored the plan the previous one installed, so the costs add up to the final route
+        // (whose first cell is where the courier stands)
+        assertEquals(6, a.getPlannedStops().size());
+        assertEquals(a.getActiveRoute().size() - 1, result.totalAddedCost(), 1e-9);
+        assertTrue(orderService.listOrderEntities(OrderStatus.NEW).isEmpty());
+    }
+}
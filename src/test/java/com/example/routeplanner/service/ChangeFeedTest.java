@@ -0,0 +1,138 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.ChangeEventDTO;
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.model.Courier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeFeedTest {
+
+    private final CityMap cityMap = new CityMap();
+    private final OrderService orderService = new OrderService(cityMap, new DispatchQueue(false, 1), new OrderArchive(1000, ""));
+    private final CourierService courierService = new CourierService(cityMap, orderService);
+    private ChangeFeed feed;
+
+    @AfterEach
+    void stop() {
+        feed.stop();
+    }
+
+    @Test
+    void readsChangesInOrderAndResetsOnceTheRingHasMovedOn() {
+        feed = start(4, 2);
+        long first = create();
+        create();
+        orderService.getOrderEntity(first).tryAssign("c1");
+
+        ChangeFeed.Read read = feed.read(0, 100);
+        assertFalse(read.reset());
+        assertEquals(List.of(1L, 2L, 3L), read.events().stream().map(ChangeEventDTO::sequence).toList());
+        assertEquals("NEW", read.events().get(0).order().status());
+        assertEquals("ASSIGNED", read.events().get(2).order().status());
+        assertEquals("c1", read.events().get(2).order().assignedCourierId());
+        assertEquals(List.of(3L), feed.read(2, 100).events().stream().map(ChangeEventDTO::sequence).toList());
+
+        for (int i = 0; i < 4; i++) {
+            create();
+        }
+        // Sequences 4..7 are left; resuming after 2 would miss 3
+        assertTrue(feed.read(2, 100).reset());
+        assertEquals(4, feed.read(3, 100).events().size());
+        assertEquals(7, feed.stats().latestSequence());
+        assertEquals(4, feed.stats().oldestSequence());
+    }
+
+    @Test
+    void streamsStartWithResetThenFollowOrdersAndCouriers() throws Exception {
+        feed = start(1024, 2);
+        create();
+        CapturingEmitter emitter = new CapturingEmitter();
+        feed.subscribe(emitter, null);
+
+        ChangeEventDTO reset = emitter.await(1).get(0);
+        assertEquals("RESET", reset.type());
+        assertEquals(1, reset.sequence());
+
+        long id = create();
+        Courier courier = courierService.getCourier("c1");
+        courier.setActiveRoute(List.of(new int[]{1, 4}, new int[]{2, 4}, new int[]{3, 4}));
+        courierService.stepAllCouriers();
+
+        List<ChangeEventDTO> events = emitter.await(3);
+        assertEquals("ORDER", events.get(1).type());
+        assertEquals(id, events.get(1).order().id());
+        assertEquals("COURIER", events.get(2).type());
+        assertEquals("c1", events.get(2).courier().id());
+        assertEquals(courier.getCurrentX(), events.get(2).courier().x());
+        assertEquals(List.of(1L, 2L, 3L), events.stream().map(ChangeEventDTO::sequence).toList());
+    }
+
+    @Test
+    void streamResumingFromALostSequenceIsToldToStartOver() throws Exception {
+        feed = start(4, 2);
+        for (int i = 0; i < 10; i++) {
+            create();
+        }
+        CapturingEmitter emitter = new CapturingEmitter();
+        feed.subscribe(emitter, 2L);
+
+        ChangeEventDTO reset = emitter.await(1).get(0);
+        assertEquals("RESET", reset.type());
+        assertEquals(10, reset.sequence());
+        assertEquals(1, feed.stats().resets());
+
+        create();
+        assertEquals(11, emitter.await(2).get(1).sequence());
+    }
+
+    @Test
+    void refusesStreamsBeyondTheLimit() {
+        feed = new ChangeFeed(orderService, courierService, 16, 2, 1);
+        feed.start();
+        feed.subscribe(new CapturingEmitter(), null);
+        assertThrows(IllegalStateException.class, () -> feed.subscribe(new CapturingEmitter(), null));
+        assertEquals(1, feed.stats().subscribers());
+    }
+
+    private ChangeFeed start(int capacity, int flushMs) {
+        ChangeFeed started = new ChangeFeed(orderService, courierService, capacity, flushMs, 10);
+        started.start();
+        return started;
+    }
+
+    private long create() {
+        return orderService.createOrder(new CreateOrderRequest("pizzaplanet", 3, 3, null)).id();
+    }
+
+    // Keeps the events instead of writing them to a response
+    private static class CapturingEmitter extends SseEmitter {
+        private final List<ChangeEventDTO> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public synchronized void send(Set<DataWithMediaType> items) {
+            for (DataWithMediaType item : items) {
+                if (item.getData() instanceof ChangeEventDTO event) {
+                    events.add(event);
+                }
+            }
+        }
+
+        List<ChangeEventDTO> await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(count, events.size());
+            return events;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CityLayoutCacheTest {
+
+    private final CityMap cityMap = new CityMap();
+    private final CityLayoutCache cache = new CityLayoutCache(cityMap);
+    private final ObjectMapper json = new ObjectMapper();
+
+    @Test
+    void everyEncodingDescribesTheSameCells() throws Exception {
+        CityMap.CellType[][] types = cityMap.getCellTypes();
+        int width = CityMap.CITY_WIDTH;
+        int height = CityMap.CITY_HEIGHT;
+
+        JsonNode cells = json.readTree(cache.get(CityLayoutEncoding.CELLS).body());
+        assertEquals(width * height, cells.size());
+        for (JsonNode cell : cells) {
+            assertEquals(types[cell.get("y").asInt()][cell.get("x").asInt()].name(), cell.get("type").asText());
+        }
+
+        JsonNode rle = json.readTree(cache.get(CityLayoutEncoding.RLE).body());
+        assertEquals(width, rle.get("width").asInt());
+        assertEquals(height, rle.get("rows").size());
+        for (int y = 0; y < height; y++) {
+            JsonNode row = rle.get("rows").get(y);
+            int x = 0;
+            for (int i = 0; i < row.size(); i += 2) {
+                String type = rle.get("types").get(row.get(i).asInt()).asText();
+                for (int n = 0; n < row.get(i + 1).asInt(); n++) {
+                    assertEquals(types[y][x++].name(), type);
+                }
+            }
+            assertEquals(width, x);
+        }
+
+        JsonNode packed = json.readTree(cache.get(CityLayoutEncoding.BYTES).body());
+        byte[] bytes = Base64.getDecoder().decode(packed.get("cells").asText());
+        assertEquals(width * height, bytes.length);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(types[y][x].name(), packed.get("types").get(bytes[y * width + x]).asText());
+            }
+        }
+        assertTrue(packed.get("rows").isNull());
+    }
+
+    @Test
+    void trafficAndObstacleUpdatesKeepTheCachedLayoutAndItsETag() {
+        CityLayoutCache.Encoded first = cache.get(CityLayoutEncoding.RLE);
+        assertNotEquals(first.etag(), cache.get(CityLayoutEncoding.BYTES).etag());
+
+        cityMap.getGrid().setWeight(3, 3, 5.0);
+        cityMap.getGrid().setObstacle(4, 4, true);
+
+        assertSame(first, cache.get(CityLayoutEncoding.RLE));
+        // The ETag names the layout itself, so another instance of the same map agrees on it
+        assertEquals(first.etag(), new CityLayoutCache(new CityMap()).get(CityLayoutEncoding.RLE).etag());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CourierCandidateSelectorTest {
+
+    @Mock
+    private CityMap cityMap;
+
+    @Mock
+    private CourierService courierService;
+
+    private final Grid grid = new Grid(20, 10);
+
+    @Test
+    void nearestByRoad_keepsOnlyTheKCouriersClosestByRoad() {
+        // Wall at x = 5 with a gap at the bottom: "behind" is 2 cells away as the crow flies but far by road
+        for (int y = 0; y < 9; y++) {
+            grid.setObstacle(5, y, true);
+        }
+        Courier behindWall = new Courier("behind", "Behind", 4, 0);
+        Courier sameSide = new Courier("same", "Same side", 10, 0);
+        Courier nextDoor = new Courier("next", "Next door", 7, 1);
+        Courier farAway = new Courier("far", "Far", 19, 9);
+
+        List<Courier> fleet = List.of(behindWall, sameSide, nextDoor, farAway);
+
+        when(cityMap.getGrid()).thenReturn(grid);
+        when(courierService.courierCount()).thenReturn(fleet.size());
+        when(courierService.couriersAt(anyInt(), anyInt())).thenAnswer(invocation -> {
+            int x = invocation.getArgument(0);
+            int y = invocation.getArgument(1);
+            return fleet.stream().filter(c -> c.getCurrentX() == x && c.getCurrentY() == y).toList();
+        });
+
+        CourierCandidateSelector selector = new CourierCandidateSelector(
+                cityMap, courierService, new RouteService(),
+                new CourierRestaurantDistances(cityMap, courierService, new RouteService()), DispatchMode.NEAREST_BY_ROAD, 2, 15
+        );
+
+        List<Courier> candidates = selector.candidatesFor(6, 0);
+
+        assertEquals(List.of(nextDoor, sameSide), candidates);
+    }
+
+    @Test
+    void allMode_returnsWholeFleet() {
+        List<Courier> fleet = List.of(new Courier("a", "A", 0, 0), new Courier("b", "B", 1, 1));
+        when(courierService.listCourierEntities()).thenReturn(fleet);
+
+        CourierCandidateSelector selector = new CourierCandidateSelector(
+                cityMap, courierService, new RouteService(),
+                new CourierRestaurantDistances(cityMap, courierService, new RouteService()), DispatchMode.ALL, 1, 15
+        );
+
+        assertEquals(fleet, selector.candidatesFor(5, 5));
+        verifyNoInteractions(cityMap);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.PointDTO;
+import com.example.routeplanner.dto.RouteResponse;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class CourierRestaurantDistancesTest {
+
+    private final CityMap cityMap = new CityMap();
+    private final RouteService routeService = new RouteService();
+    private final CourierService courierService = new CourierService(cityMap, new OrderService(cityMap, new DispatchQueue(false, 1), new OrderArchive(1000, "")));
+    private final CourierRestaurantDistances distances = new CourierRestaurantDistances(cityMap, courierService, routeService);
+
+    @Test
+    void staysEqualToAStarWhileCouriersMoveAndTheGridChanges() {
+        distances.register();
+        Grid grid = cityMap.getGrid();
+        Random random = new Random(3);
+
+        for (int tick = 0; tick < 60; tick++) {
+            // Send idle couriers somewhere new, so every tick moves someone
+            for (Courier courier : courierService.listCourierEntities()) {
+                if (courier.getActiveRoute() == null || courier.getActiveRoute().isEmpty()) {
+                    courier.setActiveRoute(randomRoute(grid, courier, random));
+                }
+            }
+            courierService.stepAllCouriers();
+
+            // Road works half way through, and traffic all along: each change must drop every field it can alter
+            if (tick == 30) {
+                grid.setObstacle(7, 4, true);
+            }
+            int x = random.nextInt(grid.getWidth());
+            int y = random.nextInt(grid.getHeight());
+            grid.setWeight(x, y, grid.getWeight(x, y) * (random.nextBoolean() ? 0.5 : 2.0));
+
+            assertMatchesAStar(grid);
+        }
+    }
+
+    @Test
+    void nearestCouriersAreOrderedByRoadDistance() {
+        Grid grid = cityMap.getGrid();
+        List<CityMap.Restaurant> restaurants = cityMap.getRestaurants();
+
+        for (int r = 0; r < restaurants.size(); r++) {
+            CityMap.Restaurant restaurant = restaurants.get(r);
+            assertEquals(r, distances.restaurantIndexAt(restaurant.x(), restaurant.y()));
+
+            List<Courier> expected = new ArrayList<>(courierService.listCourierEntities());
+            expected.sort(Comparator.comparingDouble(c -> aStar(grid, c, restaurant)));
+
+            assertEquals(expected.subList(0, 2), distances.nearestCouriers(r, 2));
+        }
+        assertEquals(-1, distances.restaurantIndexAt(0, 0));
+    }
+
+    @Test
+    void nearestCouriersOnlyRankWhatTheSpatialIndexHandsOut() {
+        Random random = new Random(11);
+        List<Courier> fleet = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            fleet.add(new Courier("f" + i, "Fleet " + i, random.nextInt(30), random.nextInt(20)));
+        }
+        CourierService fleetService = mock(CourierService.class);
+        when(fleetService.nearestCouriers(anyInt(), anyInt(), anyInt())).thenAnswer(call -> {
+            int x = call.getArgument(0);
+            int y = call.getArgument(1);
+            int k = call.getArgument(2);
+            return fleet.stream()
+                    .sorted(Comparator.comparingInt(c -> Math.abs(c.getCurrentX() - x) + Math.abs(c.getCurrentY() - y)))
+                    .limit(k)
+                    .toList();
+        });
+        CourierRestaurantDistances fleetDistances = new CourierRestaurantDistances(cityMap, fleetService, routeService);
+        fleetDistances.register();
+
+        Grid grid = cityMap.getGrid();
+        List<CityMap.Restaurant> restaurants = cityMap.getRestaurants();
+        for (int r = 0; r < restaurants.size(); r++) {
+            CityMap.Restaurant restaurant = restaurants.get(r);
+            List<Double> expected = fleet.stream()
+                    .map(c -> aStar(grid, c, restaurant))
+                    .sorted()
+                    .limit(5)
+                    .toList();
+
+            List<Courier> nearest = fleetDistances.nearestCouriers(r, 5);
+            List<Double> actual = nearest.stream().map(c -> aStar(grid, c, restaurant)).toList();
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), actual.get(i), 1e-9);
+            }
+        }
+        verify(fleetService, never()).listCourierEntities();
+    }
+
+    private void assertMatchesAStar(Grid grid) {
+        List<CityMap.Restaurant> restaurants = cityMap.getRestaurants();
+        for (Courier courier : courierService.listCourierEntities()) {
+            for (int r = 0; r < restaurants.size(); r++) {
+                assertEquals(aStar(grid, courier, restaurants.get(r)), distances.distance(courier, r), 1e-9,
+                        () -> "Courier " + courier.getId() + " at (" + courier.getCurrentX() + ", " + courier.getCurrentY() + ")");
+            }
+        }
+    }
+
+    // Plain Manhattan overestimates on the 0.7 avenues, so compare with the admissible zero heuristic
+    private double aStar(Grid grid, Courier courier, CityMap.Restaurant restaurant) {
+        RouteResponse route = routeService.computeRouteOnGrid(
+                grid, courier.getCurrentX(), courier.getCurrentY(), restaurant.x(), restaurant.y(), "NONE"
+        );
+        return route.path().isEmpty() ? Double.POSITIVE_INFINITY : route.totalDistance();
+    }
+
+    private List<int[]> randomRoute(Grid grid, Courier courier, Random random) {
+        while (true) {
+            int x = random.nextInt(grid.getWidth());
+            int y = random.nextInt(grid.getHeight());
+            RouteResponse route = routeService.computeRouteOnGrid(
+                    grid, courier.getCurrentX(), courier.getCurrentY(), x, y, "MANHATTAN"
+            );
+            if (route.path().size() < 2) continue;
+
+            List<int[]> cells = new ArrayList<>();
+            for (PointDTO point : route.path().subList(1, route.path().size())) {
+                cells.add(new int[]{point.x(), point.y()});
+            }
+            return cells;
+        }
+    }
+}
@@ -9,6 +9,8 @@ import com.example.routeplanner.model.Order;
 import com.example.routeplanner.model.OrderStatus;
 import com.example.routeplanner.model.Grid;
 import com.example.routeplanner.strategy.DeliveryStrategyRegistry;
+import com.example.routeplanner.strategy.InOrderStrategy;
+import com.example.routeplanner.strategy.NearestNeighborStrategy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -34,8 +36,8 @@ class CourierRouteServiceTest {
     @Mock
     private CourierService courierService;
 
-    @Mock
-    private DeliveryStrategyRegistry deliveryStrategyRegistry;
+    private final DeliveryStrategyRegistry deliveryStrategyRegistry =
+            new DeliveryStrategyRegistry(List.of(new InOrderStrategy(), new NearestNeighborStrategy()));
 
     @Mock
     private RouteService routeService;
@@ -49,7 +51,9 @@ class CourierRouteServiceTest {
                 orderService,
                 courierService,
                 deliveryStrategyRegistry,
-                routeService
+                new RouteCache(cityMap, routeService),
+                // distance fields come from a real search, legs from the fake route service below
+                new DistanceFieldCache(cityMap, new RouteService())
         );
     }
 
@@ -100,6 +104,70 @@ class CourierRouteServiceTest {
         when(cityMap.getGrid()).thenReturn(new Grid(50, 50));
 
         // --- Fake route algorithm: simple Manhattan path like before ---
+        stubManhattanRoutes();
+
+        // --- Call method under test ---
+        MultiStopRouteResponse res =
+                courierRouteService.computeRouteForCourier("c1", "MANHATTAN", "IN_ORDER");
+
+        // We expect three legs:
+        // (0,0) -> (5,0) : distance 5
+        // (5,0) -> (10,0): distance 5
+        // (10,0)-> (12,0): distance 2
+        // total = 12
+        assertEquals(12.0, res.totalDistance(), 1e-9);
+
+        // Path should start at courier position and end at last customer
+        assertFalse(res.path().isEmpty());
+        assertEquals(new PointDTO(0, 0), res.path().get(0));
+        assertEquals(new PointDTO(12, 0), res.path().get(res.path().size() - 1));
+
+        // With our path construction and overlap-removal logic, total points should be 13
+        assertEquals(13, res.path().size());
+    }
+
+    @Test
+    void computeRouteForCourier_nearestNeighbor_ordersStopsByRoadCostAndPicksUpFirst() {
+        // Courier stands right next to the customer, but must pick up at the restaurant first
+        Courier courier = new Courier("c1", "Anna", 11, 0);
+        when(courierService.getCourier("c1")).thenReturn(courier);
+
+        Order far = new Order(1L, "r1", 0, 0, "Far");
+        Order near = new Order(2L, "r1", 10, 0, "Near");
+        courier.assignOrder(far.getId());
+        courier.assignOrder(near.getId());
+        when(orderService.getOrderEntity(1L)).thenReturn(far);
+        when(orderService.getOrderEntity(2L)).thenReturn(near);
+
+        when(cityMap.findRestaurantById("r1"))
+                .thenReturn(Optional.of(new CityMap.Restaurant("r1", "R1", 6, 0)));
+        when(cityMap.getGrid()).thenReturn(new Grid(50, 50));
+        stubManhattanRoutes();
+
+        MultiStopRouteResponse res =
+                courierRouteService.computeRouteForCourier("c1", "MANHATTAN", "NEAREST_NEIGHBOR");
+
+        // (11,0) -> restaurant (6,0): 5, -> near (10,0): 4, -> far (0,0): 10
+        assertEquals(19.0, res.totalDistance(), 1e-9);
+        assertEquals(new PointDTO(0, 0), res.path().get(res.path().size() - 1));
+
+        // Stops were ranked from distance fields: only the three legs themselves are searched
+        verify(routeService, times(3))
+                .computeRouteOnGrid(any(), anyInt(), anyInt(), anyInt(), anyInt(), anyString());
+    }
+
+    @Test
+    void computeRouteForCourier_unknownCourier_throwsIllegalArgumentException() {
+        when(courierService.getCourier("unknown")).thenReturn(null);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> courierRouteService.computeRouteForCourier("unknown", "MANHATTAN", "IN_ORDER")
+        );
+    }
+
+    // Fake route algorithm: walk x first, then y, one cost per step
+    private void stubManhattanRoutes() {
         when(routeService.computeRouteOnGrid(
                 any(),
                 anyInt(),
@@ -133,35 +201,6 @@ class CourierRouteServiceTest {
 
             return new RouteResponse(path, steps, path.size(), 0L);
         });
-
-        // --- Call method under test ---
-        MultiStopRouteResponse res =
-                courierRouteService.computeRouteForCourier("c1", "MANHATTAN", "IN_ORDER");
-
-        // We expect three legs:
-        // (0,0) -> (5,0) : distance 5
-        // (5,0) -> (10,0): distance 5
-        // (10,0)-> (12,0): distance 2
-        // total = 12
-        assertEquals(12.0, res.totalDistance(), 1e-9);
-
-        // Path should start at courier position and end at last customer
-        assertFalse(res.path().isEmpty());
-        assertEquals(new PointDTO(0, 0), res.path().get(0));
-        assertEquals(new PointDTO(12, 0), res.path().get(res.path().size() - 1));
-
-        // With our path construction and overlap-removal logic, total points should be 13
-        assertEquals(13, res.path().size());
-    }
-
-    @Test
-    void computeRouteForCourier_unknownCourier_throwsIllegalArgumentException() {
-        when(courierService.getCourier("unknown")).thenReturn(null);
-
-        assertThrows(
-                IllegalArgumentException.class,
-                () -> courierRouteService.computeRouteForCourier("unknown", "MANHATTAN", "IN_ORDER")
-        );
     }
 }
-//         List<CourierDTO> courierDTOs = dispatchService.getAllCouriersWithStatus();
\ No newline at end of file
+//         List<CourierDTO> courierDTOs = dispatchService.getAllCouriersWithStatus();
@@ -2,6 +2,7 @@ package com.example.routeplanner.service;
 
 import com.example.routeplanner.city.CityMap;
 import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.PlannedStop;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -109,4 +110,45 @@ class CourierServiceTest {
         // No interactions with orderService for this courier
         verify(orderService, never()).markOrdersDeliveredForCourier(anyString());
     }
+
+    @Test
+    void stepAllCouriers_handlesPlannedStopsAsTheyAreReached() {
+        Courier courier = courierService.getCourier("c3");
+        int startX = courier.getCurrentX();
+        int startY = courier.getCurrentY();
+
+        // Pickup one cell away, drop-off two cells further
+        PlannedStop pickup = new PlannedStop(7L, true, startX + 1, startY);
+        pickup.setLegLength(2); // starts on the courier's own cell
+        PlannedStop dropoff = new PlannedStop(7L, false, startX + 3, startY);
+        dropoff.setLegLength(2);
+
+        List<int[]> route = List.of(
+                new int[]{startX, startY},
+                new int[]{startX + 1, startY},
+                new int[]{startX + 2, startY},
+                new int[]{startX + 3, startY}
+        );
+        courier.setPlan(route, new double[]{0.0, 1.0, 1.0, 1.0}, List.of(pickup, dropoff));
+        courier.assignOrder(7L);
+
+        courierService.stepAllCouriers();
+        verify(orderService, never()).markPickedUp(anyLong());
+
+        courierService.stepAllCouriers();
+        verify(orderService, times(1)).markPickedUp(7L);
+        assertEquals(1, courier.getPlannedStops().size());
+
+        courierService.stepAllCouriers();
+        verify(orderService, never()).markDelivered(anyLong());
+
+        courierService.stepAllCouriers();
+        verify(orderService, times(1)).markDelivered(7L);
+        assertTrue(courier.getPlannedStops().isEmpty());
+        assertTrue(courier.getAssignedOrderIds().isEmpty());
+        assertEquals(startX + 3, courier.getCurrentX());
+
+        // The spatial index followed the courier
+        assertEquals(List.of(courier), courierService.couriersAt(startX + 3, startY));
+    }
 }
@@ -0,0 +1,95 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.model.Courier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CourierSpatialIndexTest {
+
+    @Test
+    void nearestAndWithinMatchBruteForce() {
+        Random random = new Random(3);
+        CourierSpatialIndex index = new CourierSpatialIndex(4);
+        List<Courier> fleet = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Courier courier = new Courier("c" + i, "Courier " + i, random.nextInt(60), random.nextInt(40));
+            fleet.add(courier);
+            index.add(courier);
+        }
+
+        for (int round = 0; round < 50; round++) {
+            int x = random.nextInt(60);
+            int y = random.nextInt(40);
+
+            List<Integer> expectedNearest = fleet.stream()
+                    .map(c -> distance(c, x, y))
+                    .sorted()
+                    .limit(7)
+                    .toList();
+            List<Integer> nearest = index.nearest(x, y, 7).stream().map(c -> distance(c, x, y)).toList();
+            assertEquals(expectedNearest, nearest);
+
+            long expectedWithin = fleet.stream().filter(c -> distance(c, x, y) <= 5).count();
+            List<Courier> within = index.within(x, y, 5);
+            assertEquals(expectedWithin, within.size());
+            assertTrue(within.stream().allMatch(c -> distance(c, x, y) <= 5));
+        }
+    }
+
+    @Test
+    void movedCourierIsFoundAtItsNewPosition() {
+        CourierSpatialIndex index = new CourierSpatialIndex(4);
+        Courier courier = new Courier("c1", "Anna", 1, 1);
+        index.add(courier);
+
+        courier.setCurrentX(30);
+        courier.setCurrentY(20);
+        index.moved(courier, 1, 1);
+
+        assertTrue(index.at(1, 1).isEmpty());
+        assertEquals(List.of(courier), index.at(30, 20));
+        assertEquals(List.of(courier), index.nearest(0, 0, 3));
+    }
+
+    @Test
+    void bucketsLeftEmptyAreDropped() {
+        CourierSpatialIndex index = new CourierSpatialIndex(2);
+        Courier courier = new Courier("c1", "Anna", 0, 0);
+        Courier other = new Courier("c2", "Ben", 0, 1);
+        index.add(courier);
+        index.add(other);
+
+        // Drive across 50 buckets
+        for (int x = 1; x < 100; x++) {
+            courier.setCurrentX(x);
+            index.moved(courier, x - 1, 0);
+        }
+        assertEquals(2, index.bucketCount());
+
+        index.remove(other);
+        assertEquals(1, index.bucketCount());
+        assertEquals(List.of(courier), index.nearest(0, 0, 3));
+        index.remove(courier);
+        assertEquals(List.of(), index.nearest(0, 0, 3));
+    }
+
+    @Test
+    void nearestReturnsWholeFleetWhenSmallerThanK() {
+        CourierSpatialIndex index = new CourierSpatialIndex(8);
+        Courier far = new Courier("far", "Far", 100, 100);
+        Courier near = new Courier("near", "Near", 2, 2);
+        index.add(far);
+        index.add(near);
+
+        assertEquals(List.of(near, far), index.nearest(0, 0, 5));
+    }
+
+    private static int distance(Courier courier, int x, int y) {
+        return Math.abs(courier.getCurrentX() - x) + Math.abs(courier.getCurrentY() - y);
+    }
+}
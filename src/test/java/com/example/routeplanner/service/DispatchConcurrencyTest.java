@@ -0,0 +1,189 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import com.example.routeplanner.model.PlannedStop;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stress test: many threads dispatch the same orders while the couriers keep stepping and routes are installed
+class DispatchConcurrencyTest {
+
+    private static final int ORDERS = 300;
+
+    @Test
+    void concurrentAssignAndStep_neverDoubleAssignsOrCorruptsPlans() throws Exception {
+        CityMap cityMap = new CityMap();
+        RouteService routeService = new RouteService();
+        RouteCache routeCache = new RouteCache(cityMap, routeService);
+        RoutePlanner planner = new RoutePlanner(cityMap, routeCache, new DistanceFieldCache(cityMap, routeService));
+        OrderService orderService = new OrderService(cityMap, new DispatchQueue(false, 1), new OrderArchive(1000, ""));
+        CourierService courierService = new CourierService(cityMap, orderService);
+        // Routes are built in the background, so stepping also races with route installs
+        RouteMaterializer materializer = new RouteMaterializer(4);
+        DispatchService dispatchService = new DispatchService(
+                orderService, courierService, cityMap, routeCache, planner,
+                new DispatchScorer(planner),
+                new CourierCandidateSelector(cityMap, courierService, routeService,
+                        new CourierRestaurantDistances(cityMap, courierService, routeService), DispatchMode.ALL, 8, 15),
+                materializer
+        );
+
+        List<Long> orderIds = createReachableOrders(cityMap, routeService, orderService);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicIntegerArray successes = new AtomicIntegerArray(ORDERS);
+        ConcurrentLinkedQueue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+
+        // Two dispatchers race for every order
+        for (int i = 0; i < ORDERS; i++) {
+            int index = i;
+            for (int copy = 0; copy < 2; copy++) {
+                pool.submit(() -> {
+                    try {
+                        start.await();
+                        dispatchService.assignOrderToBestCourier(orderIds.get(index));
+                        successes.incrementAndGet(index);
+                    } catch (IllegalArgumentException ex) {
+                        if (!ex.getMessage().contains("not NEW")) unexpected.add(ex);
+                    } catch (Throwable ex) {
+                        unexpected.add(ex);
+                    }
+                });
+            }
+        }
+
+        AtomicBoolean stepping = new AtomicBoolean(true);
+        Thread stepper = new Thread(() -> {
+            try {
+                start.await();
+                while (stepping.get()) {
+                    courierService.stepAllCouriers();
+                }
+            } catch (Throwable ex) {
+                unexpected.add(ex);
+            }
+        });
+        stepper.start();
+
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+        assertTrue(materializer.awaitIdle(60_000));
+        stepping.set(false);
+        stepper.join();
+        materializer.shutdown();
+
+        assertTrue(unexpected.isEmpty(), () -> "Unexpected failures: " + unexpected);
+        for (int i = 0; i < ORDERS; i++) {
+            assertEquals(1, successes.get(i), "Order " + orderIds.get(i) + " must be assigned exactly once");
+        }
+
+        // Every undelivered order sits in exactly one courier's list and plan, and plans are consistent
+        Map<Long, String> holder = new HashMap<>();
+        for (Courier courier : courierService.listCourierEntities()) {
+            int legCells = courier.getPlannedStops().stream().mapToInt(PlannedStop::getLegLength).sum();
+            assertEquals(courier.getActiveRoute().size(), legCells, "Legs must cover the route exactly");
+
+            for (Long id : courier.getAssignedOrderIds()) {
+                assertNull(holder.put(id, courier.getId()), "Order " + id + " held twice");
+                assertTrue(courier.getPlannedStops().stream()
+                        .anyMatch(s -> s.getOrderId() == id && !s.isPickup()), "Drop-off missing for " + id);
+            }
+        }
+        for (long id : orderIds) {
+            Order order = orderService.getOrderEntity(id);
+            assertNotEquals(OrderStatus.NEW, order.getStatus());
+            if (order.getStatus() != OrderStatus.DELIVERED) {
+                assertEquals(order.getAssignedCourierId(), holder.get(id));
+            }
+        }
+    }
+
+    @Test
+    void commitAssignment_returnsBeforeTheRouteIsInstalledAndTheFutureTellsWhenItIs() throws Exception {
+        CityMap cityMap = new CityMap();
+        RouteService routeService = new RouteService();
+        RouteCache routeCache = new RouteCache(cityMap, routeService);
+        RoutePlanner planner = new RoutePlanner(cityMap, routeCache, new DistanceFieldCache(cityMap, routeService));
+        OrderService orderService = new OrderService(cityMap, new DispatchQueue(false, 1), new OrderArchive(1000, ""));
+        CourierService courierService = new CourierService(cityMap, orderService);
+        RouteMaterializer materializer = new RouteMaterializer(1);
+        DispatchService dispatchService = new DispatchService(
+                orderService, courierService, cityMap, routeCache, planner,
+                new DispatchScorer(planner),
+                new CourierCandidateSelector(cityMap, courierService, routeService,
+                        new CourierRestaurantDistances(cityMap, courierService, routeService), DispatchMode.ALL, 8, 15),
+                materializer
+        );
+
+        Courier courier = courierService.getCourier("c1");
+        CityMap.Restaurant pizza = cityMap.findRestaurantById("pizzaplanet").orElseThrow();
+        Order order = orderService.getOrderEntity(
+                orderService.createOrder(new CreateOrderRequest("pizzaplanet", 6, 4, null)).id());
+        RoutePlanner.Insertion scored = planner.cheapestInsertion(courier, pizza.x(), pizza.y(), 6, 4);
+
+        // Hold the courier's queue so the install cannot run yet
+        CountDownLatch release = new CountDownLatch(1);
+        materializer.submit(courier, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        DispatchService.Commit commit = dispatchService.commitAssignment(order, courier, scored, pizza.x(), pizza.y(), false);
+
+        assertEquals(OrderStatus.ASSIGNED, order.getStatus());
+        assertFalse(commit.routeInstalled().isDone());
+        assertTrue(courier.getPlannedStops().isEmpty());
+
+        release.countDown();
+        RoutePlanner.Insertion installed = commit.routeInstalled().get(10, TimeUnit.SECONDS);
+        assertEquals(scored.addedCost(), installed.addedCost(), 1e-9);
+        assertEquals(2, courier.getPlannedStops().size());
+        materializer.shutdown();
+    }
+
+    // Orders at random road cells that can be reached from every restaurant
+    private List<Long> createReachableOrders(CityMap cityMap, RouteService routeService, OrderService orderService) {
+        Grid grid = cityMap.getGrid();
+        List<CityMap.Restaurant> restaurants = cityMap.getRestaurants();
+        List<double[]> fields = new ArrayList<>();
+        for (CityMap.Restaurant r : restaurants) {
+            fields.add(routeService.computeDistanceField(grid, r.x(), r.y()));
+        }
+
+        Random random = new Random(5);
+        List<Long> ids = new ArrayList<>();
+        while (ids.size() < ORDERS) {
+            int x = random.nextInt(grid.getWidth());
+            int y = random.nextInt(grid.getHeight());
+            int cell = y * grid.getWidth() + x;
+            if (fields.stream().anyMatch(f -> !Double.isFinite(f[cell]))) continue;
+
+            CityMap.Restaurant r = restaurants.get(random.nextInt(restaurants.size()));
+            ids.add(orderService.createOrder(new CreateOrderRequest(r.id(), x, y, null)).id());
+        }
+        return ids;
+    }
+}
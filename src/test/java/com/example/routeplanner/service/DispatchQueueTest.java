@@ -0,0 +1,61 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.model.Grid;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DispatchQueueTest {
+
+    @Test
+    void takeBatch_closesAsSoonAsMaxBatchOrdersAreWaiting() throws InterruptedException {
+        DispatchQueue queue = new DispatchQueue(true, 10);
+        for (long id = 1; id <= 5; id++) {
+            queue.offer(id);
+        }
+
+        long start = System.nanoTime();
+        List<DispatchQueue.Entry> batch = queue.takeBatch(3, 10_000, 10_000);
+
+        assertEquals(List.of(1L, 2L, 3L), batch.stream().map(DispatchQueue.Entry::orderId).toList());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L, "Should not wait for the window");
+        assertEquals(2, queue.depth());
+    }
+
+    @Test
+    void takeBatch_closesWhenTheWindowEnds() throws InterruptedException {
+        DispatchQueue queue = new DispatchQueue(true, 10);
+        queue.offer(1L);
+
+        List<DispatchQueue.Entry> batch = queue.takeBatch(50, 20, 1000);
+
+        assertEquals(1, batch.size());
+        assertTrue(queue.takeBatch(50, 20, 10).isEmpty());
+    }
+
+    @Test
+    void createOrder_isRejectedWhenTheQueueIsFull() {
+        CityMap cityMap = mock(CityMap.class);
+        when(cityMap.findRestaurantById("r1"))
+                .thenReturn(Optional.of(new CityMap.Restaurant("r1", "Test", 0, 0)));
+        when(cityMap.getGrid()).thenReturn(new Grid(10, 10));
+
+        DispatchQueue queue = new DispatchQueue(true, 2);
+        OrderService orderService = new OrderService(cityMap, queue, new OrderArchive(1000, ""));
+
+        orderService.createOrder(new CreateOrderRequest("r1", 1, 1, null));
+        orderService.createOrder(new CreateOrderRequest("r1", 2, 2, null));
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> orderService.createOrder(new CreateOrderRequest("r1", 3, 3, null)));
+
+        assertTrue(ex.getMessage().contains("queue is full"));
+        assertEquals(2, orderService.listOrders().size(), "The rejected order must not be kept");
+        assertEquals(1, queue.getRejected());
+    }
+}
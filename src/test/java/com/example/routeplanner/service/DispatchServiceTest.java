@@ -2,14 +2,15 @@ package com.example.routeplanner.service;
 
 import com.example.routeplanner.city.CityMap;
 import com.example.routeplanner.dto.CourierDTO;
-import com.example.routeplanner.dto.MultiStopRouteResponse;
 import com.example.routeplanner.dto.OrderAssignmentDTO;
 import com.example.routeplanner.dto.OrderDTO;
 import com.example.routeplanner.dto.PointDTO;
 import com.example.routeplanner.dto.RouteResponse;
 import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
 import com.example.routeplanner.model.Order;
 import com.example.routeplanner.model.OrderStatus;
+import com.example.routeplanner.model.PlannedStop;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,6 +19,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -39,19 +41,25 @@ class DispatchServiceTest {
     @Mock
     private RouteService routeService;
 
-    @Mock
-    private CourierRouteService courierRouteService;
-
     private DispatchService dispatchService;
 
     @BeforeEach
     void setUp() {
+        RouteCache routeCache = new RouteCache(cityMap, routeService);
+        // Distance fields use a real Dijkstra, the legs come from the mocked A*
+        RoutePlanner routePlanner = new RoutePlanner(
+                cityMap, routeCache, new DistanceFieldCache(cityMap, new RouteService())
+        );
         dispatchService = new DispatchService(
                 orderService,
                 courierService,
                 cityMap,
-                routeService,
-                courierRouteService
+                routeCache,
+                routePlanner,
+                new DispatchScorer(routePlanner),
+                new CourierCandidateSelector(cityMap, courierService, routeService,
+                        new CourierRestaurantDistances(cityMap, courierService, routeService), DispatchMode.ALL, 8, 15),
+                new RouteMaterializer(0)
         );
     }
 
@@ -81,6 +89,7 @@ class DispatchServiceTest {
         CityMap.Restaurant restaurant =
                 new CityMap.Restaurant("r1", "Test Restaurant", 10, 10);
         when(cityMap.findRestaurantById("r1")).thenReturn(Optional.of(restaurant));
+        when(cityMap.getGrid()).thenReturn(new Grid(30, 20));
 
         // --- Couriers setup ---
         Courier c1 = new Courier("c1", "Far Away", 0, 0);
@@ -139,25 +148,11 @@ class DispatchServiceTest {
             return new RouteResponse(path, steps, path.size(), 0L);
         });
 
-        // --- CourierRouteService behaviour for final multi-stop route ---
-        when(courierRouteService.computeRouteForCourier(
-                anyString(),
-                anyString(),
-                anyString()
-        )).thenReturn(
-                new MultiStopRouteResponse(
-                        List.of(new PointDTO(1, 1), new PointDTO(2, 2)),
-                        2.0,
-                        0,
-                        0L
-                )
-        );
-
         // --- Call method under test ---
         OrderAssignmentDTO assignment = dispatchService.assignOrderToBestCourier(orderId);
 
         // --- Assertions ---
-        // c2 is much closer to the restaurant -> should be selected
+        // c2 is much closer to the restaurant -> its plan grows the least
         assertEquals("c2", assignment.courier().id(), "Best courier should be c2");
 
         // Order should now be assigned to c2 and have status ASSIGNED
@@ -167,15 +162,20 @@ class DispatchServiceTest {
         // Courier should have the order id in its assigned list
         assertTrue(c2.getAssignedOrderIds().contains(orderId));
 
-        // CourierRouteService should be called for the chosen courier
-        verify(courierRouteService, times(1))
-                .computeRouteForCourier(eq("c2"), anyString(), anyString());
+        // The pickup and drop-off are inserted into c2's (empty) plan
+        List<PlannedStop> stops = c2.getPlannedStops();
+        assertEquals(2, stops.size());
+        assertTrue(stops.get(0).isPickup());
+        assertFalse(stops.get(1).isPickup());
 
-        // Active route should be translated from MultiStopRouteResponse points
+        // Active route: (9,10) -> restaurant (10,10) -> customer (20,10), joint cell only once
         List<int[]> activeRoute = c2.getActiveRoute();
-        assertEquals(2, activeRoute.size());
-        assertArrayEquals(new int[]{1, 1}, activeRoute.get(0));
-        assertArrayEquals(new int[]{2, 2}, activeRoute.get(1));
+        assertEquals(12, activeRoute.size());
+        assertArrayEquals(new int[]{9, 10}, activeRoute.get(0));
+        assertArrayEquals(new int[]{10, 10}, activeRoute.get(1));
+        assertArrayEquals(new int[]{20, 10}, activeRoute.get(11));
+        assertEquals(2, stops.get(0).getLegLength());
+        assertEquals(10, stops.get(1).getLegLength());
     }
 
     @Test
@@ -192,7 +192,7 @@ class DispatchServiceTest {
         );
 
         assertTrue(ex.getMessage().contains("not NEW"));
-        verifyNoInteractions(courierService, cityMap, routeService, courierRouteService);
+        verifyNoInteractions(courierService, cityMap, routeService);
     }
 
     @Test
@@ -210,17 +210,13 @@ class DispatchServiceTest {
         Courier c1 = new Courier("c1", "Blocked", 0, 0);
         when(courierService.listCourierEntities()).thenReturn(List.of(c1));
 
-        // Any route calculation returns "no path" (infinite dist + empty path)
-        when(routeService.computeRouteOnGrid(
-                any(),
-                anyInt(),
-                anyInt(),
-                anyInt(),
-                anyInt(),
-                anyString()
-        )).thenReturn(
-                new RouteResponse(List.of(), Double.POSITIVE_INFINITY, 0, 0L)
-        );
+        // Wall the restaurant in so no courier can reach it
+        Grid grid = new Grid(30, 20);
+        grid.setObstacle(9, 10, true);
+        grid.setObstacle(11, 10, true);
+        grid.setObstacle(10, 9, true);
+        grid.setObstacle(10, 11, true);
+        when(cityMap.getGrid()).thenReturn(grid);
 
         IllegalStateException ex = assertThrows(
                 IllegalStateException.class,
@@ -229,4 +225,71 @@ class DispatchServiceTest {
 
         assertTrue(ex.getMessage().contains("No courier can reach"));
     }
+
+    @Test
+    void assignOrderToBestCourier_prefersCourierAlreadyPassingByOverNearerIdleOne() {
+        long orderId = 4L;
+        Order order = new Order(orderId, "r1", 14, 10, "On the way");
+        order.setStatus(OrderStatus.NEW);
+        when(orderService.getOrderEntity(orderId)).thenReturn(order);
+        when(orderService.getOrder(orderId)).thenReturn(new OrderDTO(
+                orderId, "r1", 14, 10, "On the way", OrderStatus.ASSIGNED.name(), "busy"));
+
+        when(cityMap.findRestaurantById("r1"))
+                .thenReturn(Optional.of(new CityMap.Restaurant("r1", "Test Restaurant", 10, 10)));
+        when(cityMap.getGrid()).thenReturn(new Grid(30, 20));
+
+        // "busy" already drives (2,10) -> (20,10) and passes the restaurant and the customer.
+        // "idle" is closer to the restaurant (3 cells) than busy (8 cells) but would drive the whole detour.
+        Courier busy = new Courier("busy", "Busy", 2, 10);
+        PlannedStop earlierDrop = new PlannedStop(99L, false, 20, 10);
+        earlierDrop.setLegLength(19);
+        earlierDrop.setLegCost(18.0);
+        List<int[]> route = new ArrayList<>();
+        for (int x = 2; x <= 20; x++) {
+            route.add(new int[]{x, 10});
+        }
+        double[] cellCosts = new double[route.size()];
+        Arrays.fill(cellCosts, 1, cellCosts.length, 1.0); // the first cell is where busy stands
+        busy.setPlan(route, cellCosts, List.of(earlierDrop));
+        busy.assignOrder(99L);
+
+        Courier idle = new Courier("idle", "Idle", 10, 13);
+
+        when(courierService.listCourierEntities()).thenReturn(List.of(idle, busy));
+        when(courierService.toDTOPublic(any(Courier.class))).thenAnswer(invocation -> {
+            Courier c = invocation.getArgument(0);
+            return new CourierDTO(c.getId(), c.getName(), c.getCurrentX(), c.getCurrentY(),
+                    List.copyOf(c.getAssignedOrderIds()));
+        });
+        when(routeService.computeRouteOnGrid(any(), anyInt(), anyInt(), anyInt(), anyInt(), anyString()))
+                .thenAnswer(invocation -> straightRoute(
+                        invocation.getArgument(1), invocation.getArgument(2),
+                        invocation.getArgument(3), invocation.getArgument(4)));
+
+        OrderAssignmentDTO assignment = dispatchService.assignOrderToBestCourier(orderId);
+
+        // Marginal cost: busy 0 extra cells, idle 3 + 4 = 7
+        assertEquals("busy", assignment.courier().id());
+        assertEquals(List.of(10L, 14L, 20L),
+                busy.getPlannedStops().stream().map(s -> (long) s.getX()).toList());
+        assertEquals(19, busy.getActiveRoute().size());
+    }
+
+    // Straight-line x-then-y path, matching Manhattan distance on a grid with unit weights
+    private static RouteResponse straightRoute(int sx, int sy, int ex, int ey) {
+        List<PointDTO> path = new ArrayList<>();
+        int x = sx;
+        int y = sy;
+        path.add(new PointDTO(x, y));
+        while (x != ex) {
+            x += (ex > x) ? 1 : -1;
+            path.add(new PointDTO(x, y));
+        }
+        while (y != ey) {
+            y += (ey > y) ? 1 : -1;
+            path.add(new PointDTO(x, y));
+        }
+        return new RouteResponse(path, path.size() - 1, path.size(), 0L);
+    }
 }
@@ -0,0 +1,29 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.strategy.CostOracle;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceFieldCacheTest {
+
+    private final CityMap cityMap = new CityMap();
+    private final RouteService routeService = new RouteService();
+    private final DistanceFieldCache cache = new DistanceFieldCache(cityMap, routeService);
+
+    @Test
+    void costOracleKeepsOneFieldPerDestinationWhereverTheTripStarts() {
+        Grid grid = cityMap.getGrid();
+        CostOracle costs = cache.costOracle();
+        CityMap.Restaurant pizza = cityMap.findRestaurantById("pizzaplanet").orElseThrow();
+
+        // A courier driving along a street asks from a new cell every step
+        for (int x = 0; x < grid.getWidth(); x++) {
+            double[] forward = routeService.computeDistanceField(grid, x, 4);
+            assertEquals(forward[pizza.y() * grid.getWidth() + pizza.x()], costs.cost(x, 4, pizza.x(), pizza.y()), 1e-9);
+        }
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.OrderStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventDrivenSimulatorTest {
+
+    private static final int ORDERS = 12;
+
+    @Test
+    void jumpingBetweenEventsEndsWhereSteppingDoes() {
+        // Before, between and after pickups and drop-offs
+        for (int ticks : new int[]{1, 7, 23, 60, 150, 400}) {
+            World stepped = new World();
+            World jumped = new World();
+
+            for (int i = 0; i < ticks; i++) {
+                stepped.courierService.stepAllCouriers();
+            }
+            jumped.simulator.run(ticks);
+
+            assertEquals(stepped.snapshot(), jumped.snapshot(), "State after " + ticks + " ticks");
+        }
+    }
+
+    @Test
+    void runsUntilEveryOrderIsDelivered() {
+        World world = new World();
+
+        long events = world.simulator.run(10_000);
+
+        for (long id = 1; id <= ORDERS; id++) {
+            assertEquals(OrderStatus.DELIVERED, world.orderService.getOrderEntity(id).getStatus());
+        }
+        // One event per arrival; stops on the same cell (orders from one restaurant) share it
+        assertTrue(events >= ORDERS && events <= 2 * ORDERS, events + " events");
+        world.courierService.listCourierEntities()
+                .forEach(c -> assertEquals(0, world.courierService.cellsToNextEvent(c)));
+    }
+
+    // The default couriers with the same orders dispatched the same way
+    private static class World {
+        final CityMap cityMap = new CityMap();
+        final OrderService orderService = new OrderService(cityMap, new DispatchQueue(false, 1), new OrderArchive(1000, ""));
+        final CourierService courierService = new CourierService(cityMap, orderService);
+        final EventDrivenSimulator simulator = new EventDrivenSimulator(courierService);
+
+        World() {
+            RouteService routeService = new RouteService();
+            RouteCache routeCache = new RouteCache(cityMap, routeService);
+            RoutePlanner planner = new RoutePlanner(cityMap, routeCache, new DistanceFieldCache(cityMap, routeService));
+            DispatchService dispatchService = new DispatchService(
+                    orderService, courierService, cityMap, routeCache, planner,
+                    new DispatchScorer(planner),
+                    new CourierCandidateSelector(cityMap, courierService, routeService,
+                            new CourierRestaurantDistances(cityMap, courierService, routeService), DispatchMode.ALL, 8, 15),
+                    new RouteMaterializer(0)
+            );
+
+            Grid grid = cityMap.getGrid();
+            List<CityMap.Restaurant> restaurants = cityMap.getRestaurants();
+            Random random = new Random(11);
+            for (int i = 0; i < ORDERS; i++) {
+                int x;
+                int y;
+                do {
+                    x = random.nextInt(grid.getWidth());
+                    y = random.nextInt(grid.getHeight());
+                } while (grid.isObstacle(x, y));
+                String restaurantId = restaurants.get(i % restaurants.size()).id();
+                long id = orderService.createOrder(new CreateOrderRequest(restaurantId, x, y, null)).id();
+                dispatchService.assignOrderToBestCourier(id);
+            }
+        }
+
+        List<String> snapshot() {
+            List<String> state = new ArrayList<>();
+            for (Courier c : courierService.listCourierEntities()) {
+                state.add(c.getId() + "@" + c.getCurrentX() + "," + c.getCurrentY()
+                        + " left=" + c.getRemainingRouteLength() + " stops=" + c.getPlannedStops().size());
+            }
+            for (long id = 1; id <= ORDERS; id++) {
+                state.add(id + ":" + orderService.getOrderEntity(id).getStatus());
+            }
+            return state;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.dto.OptimizerRunDTO;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import com.example.routeplanner.model.PlannedStop;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FleetOptimizerTest {
+
+    @Mock
+    private CityMap cityMap;
+
+    @Mock
+    private CourierService courierService;
+
+    private OrderService orderService;
+    private RoutePlanner routePlanner;
+    private FleetOptimizer optimizer;
+
+    private final Courier a = new Courier("a", "A", 0, 0);
+    private final Courier b = new Courier("b", "B", 20, 0);
+
+    @BeforeEach
+    void setUp() {
+        when(cityMap.getGrid()).thenReturn(new Grid(30, 20));
+        when(cityMap.findRestaurantById(anyString())).thenReturn(Optional.of(new CityMap.Restaurant("r", "R", 0, 0)));
+        when(courierService.listCourierEntities()).thenReturn(List.of(a, b));
+
+        RouteService routeService = new RouteService();
+        DistanceFieldCache fields = new DistanceFieldCache(cityMap, routeService);
+        orderService = new OrderService(cityMap, new DispatchQueue(false, 10), new OrderArchive(1000, ""));
+        routePlanner = new RoutePlanner(cityMap, new RouteCache(cityMap, routeService), fields);
+        optimizer = new FleetOptimizer(courierService, orderService, cityMap, routePlanner, fields, false, 1000, 1000);
+    }
+
+    @Test
+    void swapsOrdersGivenToTheWrongCouriers() {
+        // Each courier got the order next to the other one: 22 + 21 cells, swapped it is 3 + 4
+        Order east = assign(a, 19, 1, 21, 1);
+        Order west = assign(b, 1, 1, 2, 1);
+
+        OptimizerRunDTO run = optimizer.runOnce();
+
+        assertEquals(1, run.movesApplied());
+        assertEquals(36.0, run.distanceSaved(), 1e-9);
+        assertEquals("b", east.getAssignedCourierId());
+        assertEquals("a", west.getAssignedCourierId());
+        assertEquals(List.of(west.getId()), a.getAssignedOrderIds());
+        assertEquals(List.of(east.getId()), b.getAssignedOrderIds());
+        assertEquals(3.0, planCost(a), 1e-9);
+        assertEquals(4.0, planCost(b), 1e-9);
+        assertEquals(1, optimizer.stats().runs());
+        assertEquals(36.0, optimizer.stats().totalDistanceSaved(), 1e-9);
+    }
+
+    @Test
+    void leavesPickedUpOrdersWithTheirCourier() {
+        Order east = assign(a, 19, 1, 21, 1);
+        Order west = assign(b, 1, 1, 2, 1);
+        east.setStatus(OrderStatus.IN_PROGRESS);
+
+        // The west order fits into A's way east for free, so it moves; the picked up one stays
+        OptimizerRunDTO run = optimizer.runOnce();
+
+        assertEquals(1, run.movesApplied());
+        assertEquals(21.0, run.distanceSaved(), 1e-9);
+        assertEquals("a", east.getAssignedCourierId());
+        assertEquals("a", west.getAssignedCourierId());
+        assertTrue(b.getPlannedStops().isEmpty());
+        assertEquals(22.0, planCost(a), 1e-9);
+    }
+
+    private Order assign(Courier courier, int restX, int restY, int x, int y) {
+        long id = orderService.createOrder(new CreateOrderRequest("r", x, y, null)).id();
+        Order order = orderService.getOrderEntity(id);
+        assertTrue(order.tryAssign(courier.getId()));
+        courier.assignOrder(id);
+        routePlanner.insertOrder(courier, order, restX, restY);
+        return order;
+    }
+
+    private static double planCost(Courier courier) {
+        return courier.getPlannedStops().stream().mapToDouble(PlannedStop::getLegCost).sum();
+    }
+}
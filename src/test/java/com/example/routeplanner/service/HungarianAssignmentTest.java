@@ -0,0 +1,65 @@
+package com.example.routeplanner.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HungarianAssignmentTest {
+
+    @Test
+    void matchesBruteForceOnRectangularMatrices() {
+        Random random = new Random(11);
+
+        for (int round = 0; round < 200; round++) {
+            int rows = 1 + random.nextInt(5);
+            int cols = 1 + random.nextInt(5);
+            double[][] cost = new double[rows][cols];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
+                    cost[r][c] = random.nextInt(8) == 0 ? Double.POSITIVE_INFINITY : random.nextInt(50);
+                }
+            }
+
+            int[] match = HungarianAssignment.solve(cost);
+
+            boolean[] usedCols = new boolean[cols];
+            int pairs = 0;
+            double total = 0.0;
+            for (int r = 0; r < rows; r++) {
+                if (match[r] < 0) continue;
+                assertFalse(usedCols[match[r]], "Column assigned twice");
+                usedCols[match[r]] = true;
+                assertTrue(Double.isFinite(cost[r][match[r]]));
+                pairs++;
+                total += cost[r][match[r]];
+            }
+
+            // Most pairs first, then cheapest
+            double[] best = bruteForce(cost, 0, new boolean[cols]);
+            assertEquals(best[0], pairs);
+            assertEquals(best[1], total, 1e-9);
+        }
+    }
+
+    // {number of pairs, cost} of the best matching: as many finite pairs as possible, then the cheapest
+    private double[] bruteForce(double[][] cost, int row, boolean[] usedCols) {
+        if (row == cost.length) {
+            return new double[]{0, 0};
+        }
+        double[] best = bruteForce(cost, row + 1, usedCols); // leave this row unmatched
+        for (int c = 0; c < usedCols.length; c++) {
+            if (usedCols[c] || !Double.isFinite(cost[row][c])) continue;
+            usedCols[c] = true;
+            double[] rest = bruteForce(cost, row + 1, usedCols);
+            usedCols[c] = false;
+            double pairs = rest[0] + 1;
+            double total = rest[1] + cost[row][c];
+            if (pairs > best[0] || (pairs == best[0] && total < best[1])) {
+                best = new double[]{pairs, total};
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.OrderDTO;
+import com.example.routeplanner.dto.OrderImportDTO;
+import com.example.routeplanner.dto.OrderImportErrorDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderImportServiceTest {
+
+    private final OrderService orderService = new OrderService(new CityMap(), new DispatchQueue(false, 1), new OrderArchive(1000, ""));
+    // Small batches, so the tests cross batch boundaries
+    private final OrderImportService importService = new OrderImportService(orderService, 4, 1000);
+
+    @Test
+    void importsNdjsonAndReportsBadLines() {
+        String body = """
+                {"restaurantId":"pizzaplanet","x":3,"y":4,"label":"Alice"}
+                {"restaurantId":"sushihouse","x":10,"y":12}
+
+                {"restaurantId":"nowhere","x":1,"y":1}
+                {"restaurantId":"burgerworld","x":99,"y":1}
+                {"restaurantId":"burgerworld",
+                {"restaurantId":"burgerworld","x":7,"y":8,"extra":true}
+                """;
+
+        OrderImportDTO summary = importService.importOrders(stream(body), OrderImportFormat.NDJSON);
+
+        assertEquals(7, summary.lines());
+        assertEquals(3, summary.imported());
+        assertEquals(3, summary.rejected());
+        assertEquals(List.of(4L, 5L, 6L), summary.errors().stream().map(OrderImportErrorDTO::line).toList());
+        assertTrue(summary.errors().get(0).message().contains("Unknown restaurant id"));
+        assertTrue(summary.errors().get(1).message().contains("out of bounds"));
+        assertTrue(summary.errors().get(2).message().startsWith("Malformed JSON"));
+        assertFalse(summary.errorsTruncated());
+
+        List<OrderDTO> orders = orderService.listOrders();
+        assertEquals(3, orders.size());
+        assertEquals(summary.firstOrderId(), orders.get(0).id());
+        assertEquals(summary.lastOrderId(), orders.get(2).id());
+        assertEquals("Alice", orders.get(0).label());
+        assertEquals("Order #" + orders.get(1).id(), orders.get(1).label());
+        assertEquals("burgerworld", orders.get(2).restaurantId());
+    }
+
+    @Test
+    void importsCsvWithHeaderAndQuotedLabels() {
+        String body = """
+                restaurantId,x,y,label
+                pizzaplanet,3,4,"Smith, John"
+                sushihouse,10,12
+                burgerworld,seven,8
+                burgerworld,7,8,"He said ""hi""\"
+                """;
+
+        OrderImportDTO summary = importService.importOrders(stream(body), OrderImportFormat.CSV);
+
+        assertEquals(5, summary.lines());
+        assertEquals(3, summary.imported());
+        assertEquals(List.of(new OrderImportErrorDTO(4, "x is not a number: seven")), summary.errors());
+        List<OrderDTO> orders = orderService.listOrders();
+        assertEquals("Smith, John", orders.get(0).label());
+        assertEquals(12, orders.get(1).y());
+        assertEquals("He said \"hi\"", orders.get(2).label());
+    }
+
+    @Test
+    void fullDispatchQueueRejectsOnlyTheLinesThatDidNotFit() {
+        OrderService queued = new OrderService(new CityMap(), new DispatchQueue(true, 2), new OrderArchive(1000, ""));
+        OrderImportService importer = new OrderImportService(queued, 4, 1000);
+
+        OrderImportDTO summary = importer.importOrders(
+                stream("pizzaplanet,1,1\npizzaplanet,2,2\npizzaplanet,3,3\n"), OrderImportFormat.CSV);
+
+        assertEquals(2, summary.imported());
+        assertEquals(List.of(new OrderImportErrorDTO(3, "Dispatch queue is full, try again later")), summary.errors());
+        assertEquals(2, queued.listOrders().size());
+    }
+
+    @Test
+    void keepsWhatWasReadWhenTheStreamBreaksOff() {
+        InputStream broken = new SequenceInputStream(stream("pizzaplanet,1,1\nsushihouse,2,2\n"), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+
+        OrderImportDTO summary = importService.importOrders(broken, OrderImportFormat.CSV);
+
+        assertEquals(2, summary.imported());
+        assertEquals(1, summary.rejected());
+        assertEquals(3, summary.errors().get(0).line());
+        assertEquals(2, orderService.listOrders().size());
+    }
+
+    @Test
+    void capsTheErrorListButCountsEveryRejection() {
+        OrderImportService importer = new OrderImportService(orderService, 1024, 10);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            body.append("nowhere,1,1\n");
+        }
+
+        OrderImportDTO summary = importer.importOrders(stream(body.toString()), OrderImportFormat.CSV);
+
+        assertEquals(0, summary.imported());
+        assertEquals(50, summary.rejected());
+        assertEquals(10, summary.errors().size());
+        assertTrue(summary.errorsTruncated());
+        assertNull(summary.firstOrderId());
+    }
+
+    @Test
+    void keepsTheFirstBadLinesWhenRejectionsArriveOutOfOrder() {
+        // The unknown restaurant is only found when the batch is inserted, after the later lines failed to parse
+        OrderImportService importer = new OrderImportService(orderService, 1024, 2);
+
+        OrderImportDTO summary = importer.importOrders(
+                stream("nowhere,1,1\npizzaplanet,one,1\npizzaplanet,two,2\n"), OrderImportFormat.CSV);
+
+        assertEquals(3, summary.rejected());
+        assertEquals(List.of(1L, 2L), summary.errors().stream().map(OrderImportErrorDTO::line).toList());
+        assertTrue(summary.errorsTruncated());
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
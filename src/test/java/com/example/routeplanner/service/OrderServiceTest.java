@@ -0,0 +1,281 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.dto.OrderArchiveDTO;
+import com.example.routeplanner.dto.OrderDTO;
+import com.example.routeplanner.dto.OrderPageDTO;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.OrderStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderServiceTest {
+
+    // Archiving off, so delivered orders stay in the live store and its indexes
+    private final OrderService orderService = new OrderService(new CityMap(), new DispatchQueue(false, 1), new OrderArchive(-1, ""));
+
+    @Test
+    void indexesFollowEveryStateChange() {
+        long pizza1 = create("pizzaplanet");
+        long pizza2 = create("pizzaplanet");
+        long sushi = create("sushihouse");
+
+        orderService.getOrderEntity(pizza1).tryAssign("c1");
+        orderService.getOrderEntity(sushi).tryAssign("c1");
+        orderService.getOrderEntity(sushi).reassign("c1", "c2");
+        orderService.markPickedUp(pizza1);
+
+        assertEquals(List.of(pizza2), ids(orderService.listOrders(OrderStatus.NEW, null, null)));
+        assertEquals(List.of(pizza1), ids(orderService.listOrders(OrderStatus.IN_PROGRESS, null, null)));
+        assertEquals(List.of(pizza1), ids(orderService.listOrders(null, "c1", null)));
+        assertEquals(List.of(sushi), ids(orderService.listOrders(OrderStatus.ASSIGNED, "c2", "sushihouse")));
+        assertEquals(List.of(pizza1, pizza2), ids(orderService.listOrders(null, null, "pizzaplanet")));
+        assertTrue(orderService.listOrders(OrderStatus.DELIVERED, null, null).isEmpty());
+        assertTrue(orderService.listOrders(null, "nobody", null).isEmpty());
+
+        orderService.getOrderEntity(sushi).unassign("c2");
+        assertEquals(List.of(pizza2, sushi), orderService.listOrderEntities(OrderStatus.NEW).stream().map(Order::getId).toList());
+        assertTrue(orderService.listOrderEntitiesForCourier("c2").isEmpty());
+    }
+
+    @Test
+    void deliveringACouriersOrdersLeavesTheOthersAlone() {
+        long mine = create("pizzaplanet");
+        long pickedUp = create("sushihouse");
+        long theirs = create("burgerworld");
+        orderService.getOrderEntity(mine).tryAssign("c1");
+        orderService.getOrderEntity(pickedUp).tryAssign("c1");
+        orderService.markPickedUp(pickedUp);
+        orderService.getOrderEntity(theirs).tryAssign("c2");
+
+        orderService.markOrdersDeliveredForCourier("c1");
+
+        assertEquals(List.of(mine, pickedUp), ids(orderService.listOrders(OrderStatus.DELIVERED, null, null)));
+        assertEquals(List.of(theirs), ids(orderService.listOrders(OrderStatus.ASSIGNED, null, null)));
+    }
+
+    @Test
+    void deliveredOrdersLeaveTheCouriersOpenOrdersButStayListed() {
+        long first = create("pizzaplanet");
+        long second = create("sushihouse");
+        long third = create("burgerworld");
+        for (long id : new long[]{first, second, third}) {
+            orderService.getOrderEntity(id).tryAssign("c1");
+        }
+        orderService.markDelivered(second);
+
+        assertEquals(List.of(first, third),
+                orderService.listOrderEntitiesForCourier("c1").stream().map(Order::getId).toList());
+        assertEquals(List.of(second), ids(orderService.listOrders(OrderStatus.DELIVERED, "c1", null)));
+        assertEquals(List.of(first, third), ids(orderService.listOrders(OrderStatus.ASSIGNED, "c1", null)));
+        assertEquals(List.of(first, second, third), ids(orderService.listOrders(null, "c1", null)));
+
+        // Pages over both of the courier's indexes pick up where the last one stopped
+        OrderPageDTO page = orderService.listOrders(null, "c1", null, null, 2);
+        assertEquals(List.of(first, second), page.orders().stream().map(OrderDTO::id).toList());
+        assertEquals(List.of(third), orderService.listOrders(null, "c1", null, page.nextCursor(), 2)
+                .orders().stream().map(OrderDTO::id).toList());
+    }
+
+    @Test
+    void concurrentChangesLeaveEachOrderInExactlyOneStatusIndex() throws Exception {
+        int count = 2_000;
+        for (int i = 0; i < count; i++) {
+            create("pizzaplanet");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (long id = 1; id <= count; id++) {
+            Order order = orderService.getOrderEntity(id);
+            // Two couriers race for the order while it is picked up and delivered
+            pool.submit(() -> order.tryAssign("c1"));
+            pool.submit(() -> order.tryAssign("c2"));
+            pool.submit(() -> orderService.markPickedUp(order.getId()));
+            pool.submit(() -> orderService.markDelivered(order.getId()));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        int indexed = 0;
+        for (OrderStatus status : OrderStatus.values()) {
+            for (OrderDTO dto : orderService.listOrders(status, null, null)) {
+                assertEquals(status.name(), dto.status());
+                indexed++;
+            }
+        }
+        assertEquals(count, indexed);
+        assertEquals(count, orderService.listOrders(null, "c1", null).size()
+                + orderService.listOrders(null, "c2", null).size()
+                + orderService.listOrders(OrderStatus.NEW, null, null).size());
+    }
+
+    @Test
+    void pagesFollowTheCursorWithoutGapsOrRepeats() {
+        for (int i = 0; i < 25; i++) {
+            long id = create(i % 2 == 0 ? "pizzaplanet" : "sushihouse");
+            if (i % 5 == 0) {
+                orderService.getOrderEntity(id).tryAssign("c1");
+            }
+        }
+
+        List<Long> seen = new ArrayList<>();
+        Long cursor = null;
+        int pages = 0;
+        do {
+            OrderPageDTO page = orderService.listOrders(null, null, null, cursor, 10);
+            seen.addAll(ids(page.orders()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(3, pages);
+        assertEquals(LongStream.rangeClosed(1, 25).boxed().toList(), seen);
+
+        // Filters page through their own index; an exactly full last page has no next cursor
+        OrderPageDTO assigned = orderService.listOrders(OrderStatus.ASSIGNED, null, null, null, 3);
+        assertEquals(List.of(1L, 6L, 11L), ids(assigned.orders()));
+        assertEquals(11L, assigned.nextCursor());
+        OrderPageDTO rest = orderService.listOrders(OrderStatus.ASSIGNED, null, null, 11L, 2);
+        assertEquals(List.of(16L, 21L), ids(rest.orders()));
+        assertNull(rest.nextCursor());
+
+        OrderPageDTO sushi = orderService.listOrders(OrderStatus.NEW, null, "sushihouse", 20L, 10);
+        assertEquals(List.of(22L, 24L), ids(sushi.orders()));
+        assertThrows(IllegalArgumentException.class, () -> orderService.listOrders(null, null, null, null, 0));
+    }
+
+    @Test
+    void deliveredOrdersMoveToTheArchiveAndCanStillBeFetched(@TempDir Path dir) {
+        for (OrderArchive archive : List.of(new OrderArchive(2, ""), new OrderArchive(2, dir.toString()))) {
+            OrderService service = new OrderService(new CityMap(), new DispatchQueue(false, 1), archive);
+            for (int i = 0; i < 6; i++) {
+                long id = service.createOrder(new CreateOrderRequest("sushihouse", i, 3, i == 1 ? "Fragile \u00e9" : null)).id();
+                if (i < 5) {
+                    service.getOrderEntity(id).tryAssign("c" + (i % 2));
+                    service.markDelivered(id);
+                }
+            }
+
+            assertEquals(3, service.archiveDelivered());
+
+            // The newest two delivered and the open order stay live
+            assertEquals(List.of(4L, 5L), ids(service.listOrders(OrderStatus.DELIVERED, null, null)));
+            assertEquals(List.of(4L, 5L, 6L), ids(service.listOrders()));
+            assertNull(service.findOrderEntity(1));
+            assertTrue(service.listOrders(null, "c0", "sushihouse").stream().noneMatch(o -> o.id() < 4));
+
+            assertEquals(new OrderDTO(2, "sushihouse", 1, 3, "Fragile \u00e9", "DELIVERED", "c1"), service.getOrder(2));
+            assertEquals(new OrderDTO(3, "sushihouse", 2, 3, "Order #3", "DELIVERED", "c0"), service.getOrder(3));
+            assertThrows(IllegalArgumentException.class, () -> service.getOrder(99));
+
+            OrderArchiveDTO stats = service.archiveStats();
+            assertEquals(3, stats.archivedOrders());
+            assertEquals(3 * 28 + "Fragile \u00e9".getBytes(StandardCharsets.UTF_8).length, stats.recordBytes());
+            archive.close();
+        }
+    }
+
+    @Test
+    void archiveKeepsLookupsWorkingAcrossSegmentsAndTableGrowth() {
+        OrderArchive archive = new OrderArchive(0, "");
+        OrderService service = new OrderService(new CityMap(), new DispatchQueue(false, 1), archive);
+        int count = 50_000;
+        for (int i = 0; i < count; i++) {
+            long id = create(service, "burgerworld");
+            service.getOrderEntity(id).tryAssign("c3");
+            service.markDelivered(id);
+        }
+        service.archiveDelivered();
+
+        assertTrue(service.listOrders().isEmpty());
+        assertEquals(count, service.archiveStats().archivedOrders());
+        for (long id = 1; id <= count; id += 997) {
+            assertEquals("Order #" + id, service.getOrder(id).label());
+        }
+    }
+
+    @Test
+    void deliveringLeavesArchivingToTheBackgroundSweep() throws InterruptedException {
+        OrderArchive archive = new OrderArchive(0, "");
+        OrderService service = new OrderService(new CityMap(), new DispatchQueue(false, 1), archive);
+        for (int i = 0; i < 300; i++) {
+            long id = create(service, "burgerworld");
+            service.getOrderEntity(id).tryAssign("c3");
+            service.markDelivered(id);
+        }
+        assertEquals(0, service.archiveStats().archivedOrders());
+
+        service.startArchiving();
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (service.archiveStats().archivedOrders() < 300 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(300, service.archiveStats().archivedOrders());
+            assertTrue(service.listOrders().isEmpty());
+        } finally {
+            service.stopArchiving();
+        }
+    }
+
+    @Test
+    void listenersHearTheChangesOfAnOrderInOrderWithoutItsMonitorHeld() throws InterruptedException {
+        Order order = orderService.getOrderEntity(create("pizzaplanet"));
+        order.tryAssign("c0");
+
+        List<String> handOvers = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean monitorHeld = new AtomicBoolean();
+        orderService.addOrderListener((changed, oldStatus, oldCourierId, status, courierId) -> {
+            monitorHeld.compareAndSet(false, Thread.holdsLock(changed));
+            handOvers.add(oldCourierId + ">" + courierId);
+        });
+
+        // Four threads keep passing the order between two couriers
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String from = order.getAssignedCourierId();
+                    order.reassign(from, "c0".equals(from) ? "c1" : "c0");
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertFalse(monitorHeld.get());
+        String holder = "c0";
+        for (String handOver : handOvers) {
+            assertTrue(handOver.startsWith(holder + ">"), () -> "Told out of order: " + handOvers);
+            holder = handOver.substring(handOver.indexOf('>') + 1);
+        }
+        assertEquals(order.getAssignedCourierId(), holder);
+        assertEquals(List.of(order.getId()), ids(orderService.listOrders(null, holder, null)));
+        assertTrue(orderService.listOrders(null, "c0".equals(holder) ? "c1" : "c0", null).isEmpty());
+    }
+
+    private long create(String restaurantId) {
+        return create(orderService, restaurantId);
+    }
+
+    private static long create(OrderService orderService, String restaurantId) {
+        return orderService.createOrder(new CreateOrderRequest(restaurantId, 2, 2, null)).id();
+    }
+
+    private static List<Long> ids(List<OrderDTO> orders) {
+        return orders.stream().map(OrderDTO::id).toList();
+    }
+}
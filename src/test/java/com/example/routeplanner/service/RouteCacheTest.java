@@ -0,0 +1,139 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.RouteResponse;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RouteCacheTest {
+
+    @Mock
+    private CityMap cityMap;
+
+    private final Grid grid = new Grid(10, 10);
+    private RouteService routeService;
+    private RouteCache routeCache;
+
+    @BeforeEach
+    void setUp() {
+        when(cityMap.getGrid()).thenReturn(grid);
+        // Real A*, spied so we can count searches
+        routeService = spy(new RouteService());
+        routeCache = new RouteCache(cityMap, routeService);
+        routeCache.registerWithGrid();
+    }
+
+    @Test
+    void getRoute_secondCallIsServedFromCache() {
+        RouteResponse first = routeCache.getRoute(0, 0, 5, 0, "MANHATTAN");
+        RouteResponse second = routeCache.getRoute(0, 0, 5, 0, "MANHATTAN");
+
+        assertSame(first, second);
+        assertEquals(1, routeCache.getHits());
+        verify(routeService, times(1))
+                .computeRouteOnGrid(any(), anyInt(), anyInt(), anyInt(), anyInt(), anyString());
+    }
+
+    @Test
+    void blockingACell_invalidatesOnlyRoutesThroughIt() {
+        // Row 0 and row 9 legs do not share any cell
+        routeCache.getRoute(0, 0, 5, 0, "MANHATTAN");
+        routeCache.getRoute(0, 9, 5, 9, "MANHATTAN");
+        assertEquals(2, routeCache.size());
+
+        grid.setObstacle(3, 0, true);
+
+        assertEquals(1, routeCache.size(), "Only the leg along row 0 should be dropped");
+
+        // The row 9 leg is still a hit, the row 0 leg is recomputed around the obstacle
+        routeCache.getRoute(0, 9, 5, 9, "MANHATTAN");
+        RouteResponse detour = routeCache.getRoute(0, 0, 5, 0, "MANHATTAN");
+        assertEquals(1, routeCache.getHits());
+        assertEquals(7.0, detour.totalDistance(), 1e-9);
+    }
+
+    @Test
+    void cheaperCell_invalidatesRoutesItCanShorten() {
+        // Wall with a single gap at (9,5) -> long detour from (0,4) to (0,6)
+        for (int x = 0; x < 9; x++) {
+            grid.setObstacle(x, 5, true);
+        }
+        RouteResponse before = routeCache.getRoute(0, 4, 0, 6, "MANHATTAN");
+        routeCache.getRoute(9, 0, 9, 1, "MANHATTAN"); // far away, can not benefit
+        assertEquals(2, routeCache.size());
+
+        // Opening a gap right next to the start makes the detour obsolete
+        grid.setObstacle(0, 5, false);
+
+        assertEquals(1, routeCache.size());
+        RouteResponse after = routeCache.getRoute(0, 4, 0, 6, "MANHATTAN");
+        assertTrue(after.totalDistance() < before.totalDistance());
+    }
+
+    @Test
+    void blockingACourierRoute_notifiesListenerForThatCourierOnly() {
+        List<String> rerouted = new ArrayList<>();
+        routeCache.addCourierRouteListener(rerouted::add);
+
+        routeCache.trackCourierRoute("c1", List.of(new int[]{0, 0}, new int[]{1, 0}, new int[]{2, 0}));
+        routeCache.trackCourierRoute("c2", List.of(new int[]{0, 9}, new int[]{1, 9}));
+
+        grid.setWeight(1, 0, 5.0);
+
+        assertEquals(List.of("c1"), rerouted);
+
+        // A cheaper cell on the way does not force a reroute
+        grid.setWeight(1, 9, 0.5);
+        assertEquals(List.of("c1"), rerouted);
+    }
+
+    @Test
+    void newCheapestCell_widensWhichLegsACheaperCellCanShorten() {
+        Grid big = new Grid(40, 40);
+        CityMap bigMap = mock(CityMap.class);
+        when(bigMap.getGrid()).thenReturn(big);
+        RouteCache cache = new RouteCache(bigMap, routeService);
+        cache.registerWithGrid();
+
+        cache.getRoute(0, 0, 30, 0, "MANHATTAN"); // cost 30, no shortcut possible with every cell costing 1
+        big.setWeight(39, 39, 0.5); // far away, but every leg's lower bound drops with it
+        assertEquals(1, cache.size());
+
+        // Twelve rows off the leg: out of reach at cost 1 per cell, a shortcut at 0.5
+        big.setWeight(15, 12, 0.9);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void drivenCells_noLongerRerouteTheCourier() {
+        List<String> rerouted = new ArrayList<>();
+        routeCache.addCourierRouteListener(rerouted::add);
+
+        List<int[]> route = List.of(new int[]{1, 0}, new int[]{2, 0}, new int[]{3, 0}, new int[]{2, 0});
+        Courier courier = new Courier("c1", "Anna", 0, 0);
+        courier.setActiveRoute(route);
+        routeCache.trackCourierRoute("c1", route);
+
+        courier.stepAlongRoute();
+        courier.stepAlongRoute();
+        routeCache.courierMoved(courier);
+
+        grid.setWeight(1, 0, 5.0); // behind the courier
+        assertEquals(List.of(), rerouted);
+
+        grid.setWeight(2, 0, 5.0); // driven once, but the route comes back through it
+        assertEquals(List.of("c1"), rerouted);
+    }
+}
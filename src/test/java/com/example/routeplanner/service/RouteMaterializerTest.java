@@ -0,0 +1,64 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.model.Courier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteMaterializerTest {
+
+    @Test
+    void runsOneCouriersTasksInOrderAndOneAtATime() throws Exception {
+        RouteMaterializer materializer = new RouteMaterializer(4);
+        Courier a = new Courier("a", "A", 0, 0);
+        Courier b = new Courier("b", "B", 0, 0);
+
+        // Plain lists: any overlap between two tasks of the same courier would show up as a wrong order
+        List<Integer> seenA = new ArrayList<>();
+        List<Integer> seenB = new ArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 200; i++) {
+            int n = i;
+            materializer.submit(a, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                seenA.add(n);
+                running.decrementAndGet();
+            });
+            materializer.submit(b, () -> seenB.add(n));
+            if (i == 100) {
+                materializer.submit(a, () -> {
+                    throw new IllegalStateException("blocked");
+                });
+            }
+        }
+
+        assertTrue(materializer.awaitIdle(10_000));
+        materializer.shutdown();
+
+        assertEquals(1, maxRunning.get());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, seenA.get(i));
+            assertEquals(i, seenB.get(i));
+        }
+    }
+
+    @Test
+    void inlineModeRunsOnTheCallerAndThrows() {
+        RouteMaterializer materializer = new RouteMaterializer(0);
+        Courier courier = new Courier("c", "C", 0, 0);
+        Thread caller = Thread.currentThread();
+
+        materializer.submit(courier, () -> assertSame(caller, Thread.currentThread()));
+
+        assertFalse(materializer.isAsync());
+        assertThrows(IllegalStateException.class, () -> materializer.submit(courier, () -> {
+            throw new IllegalStateException("blocked");
+        }));
+    }
+}
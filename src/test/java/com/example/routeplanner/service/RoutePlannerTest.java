@@ -0,0 +1,150 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.Order;
+import com.example.routeplanner.model.PlannedStop;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoutePlannerTest {
+
+    @Mock
+    private CityMap cityMap;
+
+    private final Grid grid = new Grid(20, 10);
+    private RouteService routeService;
+    private RoutePlanner routePlanner;
+
+    @BeforeEach
+    void setUp() {
+        when(cityMap.getGrid()).thenReturn(grid);
+        // Real A*, spied so we can count leg searches
+        routeService = spy(new RouteService());
+        routePlanner = new RoutePlanner(
+                cityMap,
+                new RouteCache(cityMap, routeService),
+                new DistanceFieldCache(cityMap, new RouteService())
+        );
+    }
+
+    @Test
+    void insertOrder_placesStopsAtCheapestPositionsAndOnlySearchesNewLegs() {
+        Courier courier = new Courier("c1", "Test", 0, 0);
+        routePlanner.insertOrder(courier, new Order(1L, "r1", 10, 0, "far"), 2, 0);
+        clearInvocations(routeService);
+
+        // Both stops of the second order lie on the existing leg (2,0) -> (10,0), so it costs nothing extra
+        RoutePlanner.Insertion insertion =
+                routePlanner.insertOrder(courier, new Order(2L, "r2", 6, 0, "near"), 4, 0);
+
+        assertEquals(1, insertion.pickupIndex());
+        assertEquals(2, insertion.dropoffIndex());
+        assertEquals(0.0, insertion.addedCost(), 1e-9);
+
+        List<PlannedStop> stops = courier.getPlannedStops();
+        assertEquals(List.of(1L, 2L, 2L, 1L), stops.stream().map(PlannedStop::getOrderId).toList());
+
+        // (2,0)->(4,0), (4,0)->(6,0), (6,0)->(10,0); the first leg is reused
+        verify(routeService, times(3))
+                .computeRouteOnGrid(any(), anyInt(), anyInt(), anyInt(), anyInt(), anyString());
+
+        // Still a straight line from the courier to the last customer
+        List<int[]> route = courier.getActiveRoute();
+        assertEquals(11, route.size());
+        for (int x = 0; x <= 10; x++) {
+            assertArrayEquals(new int[]{x, 0}, route.get(x));
+        }
+        assertEquals(route.size(), stops.stream().mapToInt(PlannedStop::getLegLength).sum());
+    }
+
+    @Test
+    void cheapestInsertion_matchesTryingEveryPosition() {
+        Courier courier = new Courier("c1", "Test", 3, 3);
+        routePlanner.insertOrder(courier, new Order(1L, "r1", 15, 8, "a"), 10, 1);
+        routePlanner.insertOrder(courier, new Order(2L, "r2", 1, 9, "b"), 5, 5);
+
+        int px = 12, py = 6, dx = 2, dy = 2;
+        RoutePlanner.Insertion insertion = routePlanner.cheapestInsertion(courier, px, py, dx, dy);
+
+        List<PlannedStop> stops = courier.getPlannedStops();
+        double current = tourCost(courier, stops);
+        double best = Double.POSITIVE_INFINITY;
+        for (int p = 0; p <= stops.size(); p++) {
+            for (int d = p + 1; d <= stops.size() + 1; d++) {
+                List<PlannedStop> candidate = new java.util.ArrayList<>(stops);
+                candidate.add(p, new PlannedStop(3L, true, px, py));
+                candidate.add(d, new PlannedStop(3L, false, dx, dy));
+                best = Math.min(best, tourCost(courier, candidate) - current);
+            }
+        }
+
+        assertEquals(best, insertion.addedCost(), 1e-9);
+    }
+
+    // Manhattan tour length, exact on an open grid with unit weights
+    private double tourCost(Courier courier, List<PlannedStop> stops) {
+        double cost = 0.0;
+        int x = courier.getCurrentX();
+        int y = courier.getCurrentY();
+        for (PlannedStop stop : stops) {
+            cost += Math.abs(stop.getX() - x) + Math.abs(stop.getY() - y);
+            x = stop.getX();
+            y = stop.getY();
+        }
+        return cost;
+    }
+
+    @Test
+    void replanningTwoCouriers_keepsBothPlansWhenEitherCanNotBeRouted() {
+        Courier first = new Courier("c1", "First", 0, 0);
+        Courier second = new Courier("c2", "Second", 0, 9);
+        routePlanner.insertOrder(first, new Order(1L, "r1", 5, 0, "one"), 2, 0);
+        routePlanner.insertOrder(second, new Order(2L, "r2", 5, 9, "two"), 2, 9);
+        List<PlannedStop> firstStops = first.getPlannedStops();
+        List<PlannedStop> secondStops = second.getPlannedStops();
+
+        // (15,5) is walled in, so the second courier's new plan has no route
+        grid.setObstacle(14, 5, true);
+        grid.setObstacle(16, 5, true);
+        grid.setObstacle(15, 4, true);
+        grid.setObstacle(15, 6, true);
+        List<PlannedStop> unreachable = List.of(new PlannedStop(2L, false, 15, 5));
+        boolean[] asked = new boolean[1];
+
+        assertThrows(IllegalStateException.class, () -> routePlanner.replan(
+                first, List.of(firstStops.get(1)), second, unreachable, () -> asked[0] = true));
+
+        assertFalse(asked[0], "Orders must not change hands before both routes are known");
+        assertSame(firstStops, first.getPlannedStops());
+        assertSame(secondStops, second.getPlannedStops());
+        assertEquals(List.of(1L, 1L), first.getPlannedStops().stream().map(PlannedStop::getOrderId).toList());
+    }
+
+    @Test
+    void planCosts_readTheRestOfTheFirstLegFromTheInstalledCellCosts() {
+        grid.setWeight(1, 0, 3.0);
+        Courier courier = new Courier("c1", "Test", 0, 0);
+        routePlanner.insertOrder(courier, new Order(1L, "r1", 8, 0, "one"), 5, 0);
+
+        // (0,0) is the courier's own cell, then 3 + 1 + 1 + 1 + 1 to the pickup
+        assertEquals(7.0, routePlanner.planCosts(courier).legCosts()[0], 1e-9);
+
+        // Two steps in, only (2,0)..(5,0) are left
+        PlannedStop pickup = courier.getPlannedStops().get(0);
+        courier.stepAlongRoute();
+        courier.stepAlongRoute();
+        pickup.setLegLength(pickup.getLegLength() - 2);
+        assertEquals(4.0, routePlanner.planCosts(courier).legCosts()[0], 1e-9);
+    }
+}
@@ -113,4 +113,81 @@ class RouteServiceTest {
         assertEquals(new PointDTO(0, 0), res.path().get(0));
         assertEquals(new PointDTO(4, 0), res.path().get(res.path().size() - 1));
     }
+
+    @Test
+    void distanceFieldMatchesAStarDistances() {
+        Grid grid = new Grid(8, 6);
+        for (int y = 0; y < 5; y++) {
+            grid.setObstacle(3, y, true); // wall with a gap at the bottom
+        }
+        grid.setWeight(5, 2, 3.0);
+
+        double[] field = routeService.computeDistanceField(grid, 1, 1);
+
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                RouteResponse res = routeService.computeRouteOnGrid(grid, 1, 1, x, y, "MANHATTAN");
+                assertEquals(res.totalDistance(), field[y * grid.getWidth() + x], 1e-9,
+                        "Field should match A* for (" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    @Test
+    void reverseDistanceFieldMatchesAStarDistances() {
+        Grid grid = new Grid(8, 6);
+        for (int y = 0; y < 5; y++) {
+            grid.setObstacle(3, y, true); // wall with a gap at the bottom
+        }
+        grid.setWeight(5, 2, 3.0);
+
+        double[] field = routeService.computeReverseDistanceField(grid, 6, 1);
+
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                RouteResponse res = routeService.computeRouteOnGrid(grid, x, y, 6, 1, "MANHATTAN");
+                assertEquals(res.totalDistance(), field[y * grid.getWidth() + x], 1e-9,
+                        "Field should match A* from (" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    @Test
+    void nearestSourcesStopsAfterLimitAndReportsRoadCosts() {
+        Grid grid = new Grid(8, 6);
+        int width = grid.getWidth();
+        // sources at (1,0), (4,0) and (7,5)
+        int[] sources = new int[grid.getWidth() * grid.getHeight()];
+        sources[1] = 1;
+        sources[4] = 1;
+        sources[5 * width + 7] = 1;
+
+        List<RouteService.SettledCell> nearest =
+                routeService.nearestSources(grid, 0, 0, cell -> sources[cell], 2);
+
+        assertEquals(2, nearest.size());
+        assertEquals(new RouteService.SettledCell(1, 0, 1.0), nearest.get(0));
+        assertEquals(new RouteService.SettledCell(4, 0, 4.0), nearest.get(1));
+    }
+
+    @Test
+    void nearestSourcesReusesItsBufferAcrossSearchesAndGridSizes() {
+        Grid small = new Grid(8, 6);
+        Grid large = new Grid(12, 9);
+        large.setWeight(3, 0, 2.0); // still cheaper than going around
+
+        // The first search leaves distances behind; none of them may leak into the next one
+        routeService.nearestSources(small, 0, 0, cell -> cell == 47 ? 1 : 0, 1);
+        List<RouteService.SettledCell> fromCorner =
+                routeService.nearestSources(small, 7, 5, cell -> cell == 0 ? 1 : 0, 1);
+        assertEquals(List.of(new RouteService.SettledCell(0, 0, 12.0)), fromCorner);
+
+        List<RouteService.SettledCell> onLarge =
+                routeService.nearestSources(large, 5, 0, cell -> cell == 0 ? 1 : 0, 1);
+        assertEquals(List.of(new RouteService.SettledCell(0, 0, 6.0)), onLarge);
+
+        List<RouteService.SettledCell> backOnSmall =
+                routeService.nearestSources(small, 7, 5, cell -> cell == 0 ? 1 : 0, 1);
+        assertEquals(fromCorner, backOnSmall);
+    }
 }
@@ -0,0 +1,167 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.PointDTO;
+import com.example.routeplanner.dto.RouteResponse;
+import com.example.routeplanner.dto.SimulatedFleetDTO;
+import com.example.routeplanner.model.Grid;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+// A load-test fixture, not the courier store: real couriers are Courier objects in CourierService, and
+// nothing in the application sees these. This is synthetic traffic of simulated couriers that only drive,
+// to measure a tick loop at fleet sizes the real couriers do not reach, stored as parallel primitive arrays. Every courier loops over one route from a shared pool of
+// round trips, packed back to back into one int buffer of cells (y * width + x), so a courier is just a
+// cursor into that buffer and a tick is a tight loop over int arrays with no allocation. Large fleets are
+// stepped in chunks on all cores. Simulated couriers take no orders and keep their routes when the grid changes.
+public class SimulatedFleet {
+
+    // Below this many couriers a tick runs on the calling thread
+    private static final int PARALLEL_THRESHOLD = 16_384;
+    private static final int CHUNK = 4_096;
+
+    private final CityMap cityMap;
+    private final RouteService routeService;
+    private final int poolSize;
+
+    // Indexed by courier; routeStart/routeEnd are offsets into routeBuffer, cursor is the cell just reached
+    private int size;
+    private int[] cell = new int[0];
+    private int[] routeStart = new int[0];
+    private int[] routeEnd = new int[0];
+    private int[] cursor = new int[0];
+    private int[] routeBuffer = new int[0];
+
+    private long ticks;
+    private long lastTickNanos;
+
+    public SimulatedFleet(CityMap cityMap, RouteService routeService, int poolSize) {
+        this.cityMap = cityMap;
+        this.routeService = routeService;
+        this.poolSize = Math.max(1, poolSize);
+    }
+
+    // Replace the fleet with count couriers spread over the route pool at random points of their loops
+    public synchronized SimulatedFleetDTO spawn(int count, long seed) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative");
+        }
+        Random random = new Random(seed);
+        int[][] pool = count == 0 ? new int[0][] : buildRoutePool(random);
+
+        int total = 0;
+        for (int[] loop : pool) {
+            total += loop.length;
+        }
+        int[] buffer = new int[total];
+        int[] offsets = new int[pool.length + 1];
+        for (int r = 0; r < pool.length; r++) {
+            System.arraycopy(pool[r], 0, buffer, offsets[r], pool[r].length);
+            offsets[r + 1] = offsets[r] + pool[r].length;
+        }
+
+        int[] newCell = new int[count];
+        int[] newStart = new int[count];
+        int[] newEnd = new int[count];
+        int[] newCursor = new int[count];
+        for (int i = 0; i < count; i++) {
+            int r = random.nextInt(pool.length);
+            newStart[i] = offsets[r];
+            newEnd[i] = offsets[r + 1];
+            newCursor[i] = offsets[r] + random.nextInt(pool[r].length);
+            newCell[i] = buffer[newCursor[i]];
+        }
+
+        routeBuffer = buffer;
+        cell = newCell;
+        routeStart = newStart;
+        routeEnd = newEnd;
+        cursor = newCursor;
+        size = count;
+        ticks = 0;
+        lastTickNanos = 0;
+        return stats();
+    }
+
+    // Move every simulated courier one cell along its loop
+    public synchronized void tick() {
+        if (size == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (size < PARALLEL_THRESHOLD) {
+            stepRange(0, size);
+        } else {
+            int chunks = (size + CHUNK - 1) / CHUNK;
+            IntStream.range(0, chunks).parallel()
+                    .forEach(c -> stepRange(c * CHUNK, Math.min(size, (c + 1) * CHUNK)));
+        }
+        ticks++;
+        lastTickNanos = System.nanoTime() - start;
+    }
+
+    private void stepRange(int from, int to) {
+        int[] buffer = routeBuffer;
+        for (int i = from; i < to; i++) {
+            int next = cursor[i] + 1;
+            if (next == routeEnd[i]) {
+                next = routeStart[i]; // round trips end where they start
+            }
+            cursor[i] = next;
+            cell[i] = buffer[next];
+        }
+    }
+
+    public synchronized SimulatedFleetDTO stats() {
+        return new SimulatedFleetDTO(size, routeBuffer.length, ticks, lastTickNanos / 1_000.0);
+    }
+
+    // Current cell of courier i as {x, y}
+    public synchronized int[] positionOf(int index) {
+        int width = cityMap.getGrid().getWidth();
+        return new int[]{cell[index] % width, cell[index] / width};
+    }
+
+    // Round trips between random road cells: there and back, without repeating the turning points,
+    // so consecutive cells (including last -> first) are always neighbours
+    private int[][] buildRoutePool(Random random) {
+        Grid grid = cityMap.getGrid();
+        int width = grid.getWidth();
+        int[][] pool = new int[poolSize][];
+        int built = 0;
+        int attempts = 0;
+        while (built < poolSize && attempts++ < poolSize * 50) {
+            int[] a = randomRoadCell(grid, random);
+            int[] b = randomRoadCell(grid, random);
+            RouteResponse route = routeService.computeRouteOnGrid(grid, a[0], a[1], b[0], b[1], Heuristic.MANHATTAN.name());
+            if (route.path().size() < 2) continue;
+
+            int n = route.path().size();
+            int[] loop = new int[2 * n - 2];
+            for (int i = 0; i < n; i++) {
+                PointDTO p = route.path().get(i);
+                loop[i] = p.y() * width + p.x();
+            }
+            for (int i = 1; i < n - 1; i++) {
+                loop[n - 1 + i] = loop[n - 1 - i];
+            }
+            pool[built++] = loop;
+        }
+        if (built == 0) {
+            throw new IllegalStateException("No drivable routes in the city");
+        }
+        return Arrays.copyOf(pool, built);
+    }
+
+    private static int[] randomRoadCell(Grid grid, Random random) {
+        while (true) {
+            int x = random.nextInt(grid.getWidth());
+            int y = random.nextInt(grid.getHeight());
+            if (!grid.isObstacle(x, y)) {
+                return new int[]{x, y};
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.SimulatedFleetDTO;
+import com.example.routeplanner.model.Grid;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulatedFleetTest {
+
+    private final CityMap cityMap = new CityMap();
+    private final SimulatedFleet fleet = new SimulatedFleet(cityMap, new RouteService(), 16);
+
+    @Test
+    void largeFleetMovesOneRoadCellPerTick() {
+        // Big enough for the parallel path
+        int count = 40_000;
+        fleet.spawn(count, 7);
+        Grid grid = cityMap.getGrid();
+
+        int[][] previous = new int[count][];
+        for (int i = 0; i < count; i++) {
+            previous[i] = fleet.positionOf(i);
+        }
+
+        for (int tick = 0; tick < 25; tick++) {
+            fleet.tick();
+            for (int i = 0; i < count; i++) {
+                int[] now = fleet.positionOf(i);
+                assertEquals(1, Math.abs(now[0] - previous[i][0]) + Math.abs(now[1] - previous[i][1]),
+                        "Courier " + i + " must move to a neighbouring cell");
+                assertFalse(grid.isObstacle(now[0], now[1]));
+                previous[i] = now;
+            }
+        }
+
+        SimulatedFleetDTO stats = fleet.stats();
+        assertEquals(count, stats.couriers());
+        assertEquals(25, stats.ticks());
+    }
+
+    @Test
+    void spawnIsDeterministicAndZeroClearsTheFleet() {
+        fleet.spawn(100, 3);
+        fleet.tick();
+        int[] first = fleet.positionOf(42);
+
+        fleet.spawn(100, 3);
+        fleet.tick();
+        assertArrayEquals(first, fleet.positionOf(42));
+
+        assertEquals(0, fleet.spawn(0, 3).couriers());
+        assertThrows(IllegalArgumentException.class, () -> fleet.spawn(-1, 3));
+    }
+}
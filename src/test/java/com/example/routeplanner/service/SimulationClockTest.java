@@ -0,0 +1,80 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.dto.FastForwardDTO;
+import com.example.routeplanner.dto.SimulationClockDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SimulationClockTest {
+
+    @Mock
+    private CourierService courierService;
+
+    @Mock
+    private EventDrivenSimulator eventDrivenSimulator;
+
+    private SimulationClock clock;
+
+    @AfterEach
+    void tearDown() {
+        clock.shutdown();
+    }
+
+    @Test
+    void fastForwardRunsEveryTickAndReportsTheRate() {
+        clock = new SimulationClock(courierService, eventDrivenSimulator, 2, false);
+
+        FastForwardDTO run = clock.fastForward(500, FastForwardMode.STEP);
+
+        assertEquals(500, run.ticks());
+        assertTrue(run.ticksPerSecond() > 0);
+        verify(courierService, times(500)).stepAllCouriers();
+
+        SimulationClockDTO stats = clock.stats();
+        assertFalse(stats.running());
+        assertEquals(500, stats.ticks());
+        assertEquals(500, stats.tickLatencyMicros().count());
+        assertThrows(IllegalArgumentException.class, () -> clock.fastForward(0, FastForwardMode.STEP));
+    }
+
+    @Test
+    void eventModeHandsTheWholeRunToTheSimulator() {
+        clock = new SimulationClock(courierService, eventDrivenSimulator, 2, false);
+        when(eventDrivenSimulator.run(10_000)).thenReturn(42L);
+
+        FastForwardDTO run = clock.fastForward(10_000, FastForwardMode.EVENTS);
+
+        assertEquals("EVENTS", run.mode());
+        assertEquals(42, run.events());
+        assertEquals(10_000, clock.stats().ticks());
+        verify(courierService, never()).stepAllCouriers();
+    }
+
+    @Test
+    void runsAtTheMultipliedRateUntilPaused() throws Exception {
+        clock = new SimulationClock(courierService, eventDrivenSimulator, 50, false);
+        clock.setMultiplier(4); // 200 ticks per second
+
+        clock.resume();
+        Thread.sleep(300);
+        SimulationClockDTO running = clock.stats();
+        clock.pause();
+
+        assertTrue(running.running());
+        assertTrue(running.ticks() >= 20, "only " + running.ticks() + " ticks");
+        assertTrue(running.achievedTicksPerSecond() > 50);
+
+        long ticksAtPause = clock.stats().ticks();
+        Thread.sleep(50);
+        assertTrue(clock.stats().ticks() <= ticksAtPause + 1); // at most one tick that was already running
+        assertFalse(clock.stats().running());
+        assertThrows(IllegalArgumentException.class, () -> clock.setMultiplier(0));
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.dto.OrderDTO;
+import com.example.routeplanner.dto.WriteAheadLogDTO;
+import com.example.routeplanner.model.Courier;
+import com.example.routeplanner.model.Grid;
+import com.example.routeplanner.model.OrderStatus;
+import com.example.routeplanner.model.PlannedStop;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void restartRecoversOrdersCouriersAndTheirStops() {
+        World before = new World(dir, 1_000_000);
+        before.dispatch(20, 5);
+        before.step(30);
+        List<String> state = before.state();
+        before.wal.close();
+
+        World after = new World(dir, 1_000_000);
+
+        assertEquals(state, after.state());
+        assertTrue(after.wal.stats().recoveredRecords() > 0);
+
+        // Recovered couriers carry on and finish every dispatched order
+        after.step(2_000);
+        for (OrderDTO order : after.orderService.listOrders()) {
+            assertEquals(order.id() % 5 == 0 ? "NEW" : "DELIVERED", order.status(), "Order " + order.id());
+        }
+        // New orders continue the id sequence
+        assertEquals(21, after.orderService.createOrder(new CreateOrderRequest("pizzaplanet", 2, 2, null)).id());
+        after.wal.close();
+    }
+
+    @Test
+    void snapshotsTakenDuringTrafficKeepOnlyTheLatestGeneration() throws IOException {
+        World before = new World(dir, 40);
+        before.dispatch(15, 9);
+        before.step(25);
+        before.wal.snapshot(); // waits for one running in the background
+        before.dispatch(10, 10);
+        before.step(10);
+        List<String> state = before.state();
+        before.wal.close();
+        WriteAheadLogDTO stats = before.wal.stats();
+
+        assertTrue(stats.snapshots() >= 2, stats.snapshots() + " snapshots");
+        assertEquals(stats.recordsAppended(), stats.recordsDurable());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of("snapshot-" + stats.generation() + ".bin", "wal-" + stats.generation() + ".log"),
+                    files.map(f -> f.getFileName().toString()).sorted().toList());
+        }
+
+        assertEquals(state, new World(dir, 40).state());
+    }
+
+    @Test
+    void aTornTailIsIgnored() throws IOException {
+        World before = new World(dir, 1_000_000);
+        before.dispatch(8, 3);
+        before.step(12);
+        List<String> state = before.state();
+        before.wal.close();
+
+        Path wal;
+        try (Stream<Path> files = Files.list(dir)) {
+            wal = files.filter(f -> f.getFileName().toString().startsWith("wal-")).findFirst().orElseThrow();
+        }
+        // Half a record, as left by a crash in the middle of a write
+        Files.write(wal, new byte[]{0, 0, 0, 40, 2, 0, 0}, StandardOpenOption.APPEND);
+
+        World after = new World(dir, 1_000_000);
+        assertEquals(state, after.state());
+        after.wal.close();
+    }
+
+    @Test
+    void creatingAndAssigningReturnOnlyOnceTheirRecordsAreDurable() {
+        // A long group commit window, so a caller that did not wait would see its records still pending
+        World world = new World(dir, 1_000_000, "", 50);
+        long id = world.orderService.createOrder(new CreateOrderRequest("pizzaplanet", 3, 3, null)).id();
+        WriteAheadLogDTO stats = world.wal.stats();
+        assertEquals(stats.recordsAppended(), stats.recordsDurable());
+
+        world.dispatchService.assignOrderToBestCourier(id);
+        stats = world.wal.stats();
+        assertEquals(stats.recordsAppended(), stats.recordsDurable());
+        world.wal.close();
+    }
+
+    @Test
+    void courierPositionsAreLoggedOncePerTick() {
+        World world = new World(dir, 1_000_000);
+        world.dispatch(3, 1); // one order per restaurant, none of them next to a courier
+        long before = world.wal.stats().recordsAppended();
+
+        world.step(1); // every courier moves, none reaches a stop yet
+
+        assertEquals(before + 1, world.wal.stats().recordsAppended());
+        world.wal.close();
+    }
+
+    @Test
+    void aFileArchiveIsRebuiltFromTheLogOnRestart() {
+        Path wals = dir.resolve("wal");
+        String archiveDir = dir.resolve("archive").toString();
+        World before = new World(wals, 1_000_000, archiveDir);
+        before.dispatch(20, 5);
+        before.step(2_000);
+        assertTrue(before.orderService.archiveDelivered() > 0);
+        List<String> state = before.state();
+        long archived = before.orderService.archiveStats().archivedOrders();
+        before.wal.close();
+
+        // The archive file starts empty again and recovery fills it from the log, without duplicates
+        World after = new World(wals, 1_000_000, archiveDir);
+        assertEquals(state, after.state());
+        assertEquals(archived, after.orderService.archiveStats().archivedOrders());
+        after.wal.close();
+    }
+
+    // The default couriers and a write-ahead log in dir; starting it recovers whatever dir holds
+    private static class World {
+        final CityMap cityMap = new CityMap();
+        final OrderService orderService;
+        final CourierService courierService;
+        final DispatchService dispatchService;
+        final WriteAheadLog wal;
+
+        World(Path dir, long snapshotEvery) {
+            this(dir, snapshotEvery, "");
+        }
+
+        World(Path dir, long snapshotEvery, String archiveDir) {
+            this(dir, snapshotEvery, archiveDir, 0);
+        }
+
+        World(Path dir, long snapshotEvery, String archiveDir, long groupCommitMs) {
+            orderService = new OrderService(cityMap, new DispatchQueue(false, 1), new OrderArchive(5, archiveDir));
+            courierService = new CourierService(cityMap, orderService);
+            RouteService routeService = new RouteService();
+            RouteCache routeCache = new RouteCache(cityMap, routeService);
+            RoutePlanner planner = new RoutePlanner(cityMap, routeCache, new DistanceFieldCache(cityMap, routeService));
+            dispatchService = new DispatchService(
+                    orderService, courierService, cityMap, routeCache, planner,
+                    new DispatchScorer(planner),
+                    new CourierCandidateSelector(cityMap, courierService, routeService,
+                            new CourierRestaurantDistances(cityMap, courierService, routeService), DispatchMode.ALL, 8, 15),
+                    new RouteMaterializer(0)
+            );
+            wal = new WriteAheadLog(orderService, courierService, planner, cityMap, dir.toString(), false, groupCommitMs, snapshotEvery);
+            wal.start();
+        }
+
+        void dispatch(int count, long seed) {
+            Grid grid = cityMap.getGrid();
+            Random random = new Random(seed);
+            List<CityMap.Restaurant> restaurants = cityMap.getRestaurants();
+            for (int i = 0; i < count; i++) {
+                int x;
+                int y;
+                do {
+                    x = random.nextInt(grid.getWidth());
+                    y = random.nextInt(grid.getHeight());
+                } while (grid.isObstacle(x, y));
+                String label = i % 4 == 0 ? "Customer " + i : null;
+                long id = orderService.createOrder(new CreateOrderRequest(restaurants.get(i % restaurants.size()).id(), x, y, label)).id();
+                if (i % 5 != 4) {
+                    dispatchService.assignOrderToBestCourier(id); // the rest stay NEW
+                }
+            }
+        }
+
+        void step(int ticks) {
+            for (int i = 0; i < ticks; i++) {
+                courierService.stepAllCouriers();
+            }
+        }
+
+        // Everything recovery must bring back: every order (archived ones by id) and each courier's cell and stops
+        List<String> state() {
+            List<String> state = new ArrayList<>();
+            for (long id = 1; ; id++) {
+                OrderDTO order;
+                try {
+                    order = orderService.getOrder(id);
+                } catch (IllegalArgumentException ex) {
+                    break;
+                }
+                state.add(order.toString());
+            }
+            state.add("NEW=" + orderService.listOrders(OrderStatus.NEW, null, null).size());
+            for (Courier courier : courierService.listCourierEntities()) {
+                StringBuilder stops = new StringBuilder();
+                for (PlannedStop stop : courier.getPlannedStops()) {
+                    stops.append(stop.isPickup() ? " P" : " D").append(stop.getOrderId());
+                }
+                state.add(courier.getId() + "@" + courier.getCurrentX() + "," + courier.getCurrentY()
+                        + " orders=" + courier.getAssignedOrderIds().stream().sorted().toList() + stops);
+            }
+            return state;
+        }
+    }
+}
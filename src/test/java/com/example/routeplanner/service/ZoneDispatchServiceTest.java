@@ -0,0 +1,91 @@
+package com.example.routeplanner.service;
+
+import com.example.routeplanner.city.CityMap;
+import com.example.routeplanner.dto.BatchAssignmentDTO;
+import com.example.routeplanner.dto.CreateOrderRequest;
+import com.example.routeplanner.model.Grid;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ZoneDispatchServiceTest {
+
+    @Mock
+    private CityMap cityMap;
+
+    private OrderService orderService;
+    private ZoneDispatchService zoneDispatchService;
+
+    @BeforeEach
+    void setUp() {
+        when(cityMap.getGrid()).thenReturn(new Grid(30, 20));
+        orderService = new OrderService(cityMap, new DispatchQueue(false, 100), new OrderArchive(1000, ""));
+
+        // Default fleet: c1 at (1, 4), c2 at (10, 10), c3 at (20, 6)
+        CourierService courierService = new CourierService(cityMap, orderService);
+        RouteService routeService = new RouteService();
+        RouteCache routeCache = new RouteCache(cityMap, routeService);
+        RoutePlanner routePlanner = new RoutePlanner(cityMap, routeCache, new DistanceFieldCache(cityMap, routeService));
+        DispatchService dispatchService = new DispatchService(
+                orderService, courierService, cityMap, routeCache, routePlanner,
+                new DispatchScorer(routePlanner),
+                new CourierCandidateSelector(cityMap, courierService, routeService,
+                        new CourierRestaurantDistances(cityMap, courierService, routeService), DispatchMode.ALL, 8, 15),
+                new RouteMaterializer(0)
+        );
+        BatchDispatchService batchDispatchService = new BatchDispatchService(
+                orderService, courierService, cityMap, routePlanner, dispatchService
+        );
+
+        // 10x10 zones with no margin: zone 0 holds c1, zone 2 holds c3, zone 3 (bottom left) holds nobody
+        zoneDispatchService = new ZoneDispatchService(orderService, courierService, cityMap, batchDispatchService, 10, 0, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        zoneDispatchService.shutdown();
+    }
+
+    @Test
+    void matchesOrdersWithinTheirZone() {
+        restaurant("west", 2, 2);
+        restaurant("east", 22, 3);
+        long westOrder = orderService.createOrder(new CreateOrderRequest("west", 3, 2, null)).id();
+        long eastOrder = orderService.createOrder(new CreateOrderRequest("east", 23, 3, null)).id();
+
+        BatchAssignmentDTO result = zoneDispatchService.assignNewOrders();
+
+        assertEquals(2, result.assignments().size());
+        assertTrue(result.unassignedOrderIds().isEmpty());
+        assertEquals("c1", orderService.getOrderEntity(westOrder).getAssignedCourierId());
+        assertEquals("c3", orderService.getOrderEntity(eastOrder).getAssignedCourierId());
+    }
+
+    @Test
+    void handsOffOrdersOfZonesWithoutCouriers() {
+        restaurant("south", 5, 15);
+        long order = orderService.createOrder(new CreateOrderRequest("south", 6, 15, null)).id();
+
+        assertEquals(3, zoneDispatchService.zoneOf(5, 15));
+        assertTrue(zoneDispatchService.localCouriers(3).isEmpty());
+
+        BatchAssignmentDTO result = zoneDispatchService.assignNewOrders();
+
+        // Nobody local, so the whole fleet competes and c2 at (10, 10) is closest
+        assertEquals(1, result.assignments().size());
+        assertEquals("c2", orderService.getOrderEntity(order).getAssignedCourierId());
+    }
+
+    private void restaurant(String id, int x, int y) {
+        when(cityMap.findRestaurantById(id)).thenReturn(Optional.of(new CityMap.Restaurant(id, id, x, y)));
+    }
+}
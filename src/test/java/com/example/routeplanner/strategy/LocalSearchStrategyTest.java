@@ -0,0 +1,95 @@
+package com.example.routeplanner.strategy;
+
+import com.example.routeplanner.dto.DeliveryStopDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalSearchStrategyTest {
+
+    private final NearestNeighborStrategy nearestNeighbor = new NearestNeighborStrategy();
+    private final LocalSearchStrategy localSearch = new LocalSearchStrategy(nearestNeighbor, 1000);
+    private final CostOracle manhattan = CostOracle.manhattan();
+
+    @Test
+    void fixesGreedyZigZagOnALine() {
+        // From x=0 nearest neighbour goes 2 -> -3 -> 10 (2 + 5 + 13 = 20),
+        // going -3 -> 2 -> 10 first is cheaper (3 + 5 + 8 = 16)
+        List<DeliveryStopDTO> stops = List.of(
+                new DeliveryStopDTO(2, 0, "a"),
+                new DeliveryStopDTO(-3, 0, "b"),
+                new DeliveryStopDTO(10, 0, "c")
+        );
+
+        int[] order = localSearch.orderStops(stops, null, 0, 0, manhattan);
+
+        assertArrayEquals(new int[]{1, 0, 2}, order);
+        assertEquals(16.0, manhattan.tourCost(0, 0, stops, order), 1e-9);
+    }
+
+    @Test
+    void neverWorseThanNearestNeighborAndKeepsPickupsBeforeDropOffs() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 200; round++) {
+            int n = 2 + random.nextInt(10);
+            List<DeliveryStopDTO> stops = new ArrayList<>();
+            int[] predecessors = new int[n];
+            for (int i = 0; i < n; i++) {
+                stops.add(new DeliveryStopDTO(random.nextInt(30), random.nextInt(20), "s" + i));
+                // roughly half the stops depend on an earlier stop (a restaurant)
+                predecessors[i] = i > 0 && random.nextBoolean() ? random.nextInt(i) : -1;
+            }
+
+            int[] baseline = nearestNeighbor.orderStops(stops, predecessors, 0, 0, manhattan);
+            int[] order = localSearch.orderStops(stops, predecessors, 0, 0, manhattan);
+
+            assertTrue(manhattan.tourCost(0, 0, stops, order)
+                    <= manhattan.tourCost(0, 0, stops, baseline) + 1e-9);
+
+            int[] pos = new int[n];
+            for (int k = 0; k < n; k++) {
+                pos[order[k]] = k;
+            }
+            for (int i = 0; i < n; i++) {
+                if (predecessors[i] >= 0) {
+                    assertTrue(pos[predecessors[i]] < pos[i],
+                            "Stop " + predecessors[i] + " must come before stop " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void zeroTimeBudgetReturnsNearestNeighborTour() {
+        LocalSearchStrategy noTime = new LocalSearchStrategy(nearestNeighbor, 0);
+        List<DeliveryStopDTO> stops = List.of(
+                new DeliveryStopDTO(2, 0, "a"),
+                new DeliveryStopDTO(-3, 0, "b"),
+                new DeliveryStopDTO(10, 0, "c")
+        );
+
+        assertArrayEquals(
+                nearestNeighbor.orderStops(stops, null, 0, 0, manhattan),
+                noTime.orderStops(stops, null, 0, 0, manhattan)
+        );
+    }
+
+    @Test
+    void improvementIsNullWhenAStopCanNotBeReached() {
+        DeliveryStrategyRegistry registry = new DeliveryStrategyRegistry(List.of(nearestNeighbor, localSearch));
+        List<DeliveryStopDTO> stops = List.of(new DeliveryStopDTO(2, 0, "a"), new DeliveryStopDTO(5, 5, "walled in"));
+        CostOracle blocked = (fromX, fromY, toX, toY) ->
+                toX == 5 && toY == 5 ? Double.POSITIVE_INFINITY : manhattan.cost(fromX, fromY, toX, toY);
+
+        int[] order = localSearch.orderStops(stops, null, 0, 0, blocked);
+
+        assertNull(registry.improvementOverNearestNeighbor(localSearch, stops, null, 0, 0, blocked, order));
+        assertEquals(0.0, registry.improvementOverNearestNeighbor(localSearch, stops, null, 0, 0, manhattan,
+                localSearch.orderStops(stops, null, 0, 0, manhattan)), 1e-9);
+    }
+}
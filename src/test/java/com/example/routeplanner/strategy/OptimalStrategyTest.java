@@ -0,0 +1,81 @@
+package com.example.routeplanner.strategy;
+
+import com.example.routeplanner.dto.DeliveryStopDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimalStrategyTest {
+
+    private final NearestNeighborStrategy nearestNeighbor = new NearestNeighborStrategy();
+    private final LocalSearchStrategy localSearch = new LocalSearchStrategy(nearestNeighbor, 1000);
+    private final OptimalStrategy optimal = new OptimalStrategy(localSearch, 8);
+    private final CostOracle manhattan = CostOracle.manhattan();
+
+    @Test
+    void matchesBruteForceWithPrecedence() {
+        Random random = new Random(7);
+
+        for (int round = 0; round < 100; round++) {
+            int n = 1 + random.nextInt(7);
+            List<DeliveryStopDTO> stops = new ArrayList<>();
+            int[] predecessors = new int[n];
+            for (int i = 0; i < n; i++) {
+                stops.add(new DeliveryStopDTO(random.nextInt(30), random.nextInt(20), "s" + i));
+                predecessors[i] = i > 0 && random.nextBoolean() ? random.nextInt(i) : -1;
+            }
+
+            int[] order = optimal.orderStops(stops, predecessors, 3, 3, manhattan);
+            double expected = bruteForce(stops, predecessors, new int[n], new boolean[n], 0, 3, 3);
+
+            assertEquals(expected, manhattan.tourCost(3, 3, stops, order), 1e-9);
+            assertRespectsPredecessors(order, predecessors);
+        }
+    }
+
+    @Test
+    void fallsBackToLocalSearchAboveThreshold() {
+        List<DeliveryStopDTO> stops = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            stops.add(new DeliveryStopDTO(i * 3 % 11, i * 5 % 7, "s" + i));
+        }
+
+        assertArrayEquals(
+                localSearch.orderStops(stops, null, 0, 0, manhattan),
+                optimal.orderStops(stops, null, 0, 0, manhattan)
+        );
+    }
+
+    // Cheapest cost over every feasible permutation
+    private double bruteForce(List<DeliveryStopDTO> stops, int[] predecessors, int[] order,
+                              boolean[] used, int depth, int startX, int startY) {
+        if (depth == stops.size()) {
+            return manhattan.tourCost(startX, startY, stops, order);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < stops.size(); i++) {
+            if (used[i] || !DeliveryStrategy.isAvailable(predecessors, used, i)) continue;
+            used[i] = true;
+            order[depth] = i;
+            best = Math.min(best, bruteForce(stops, predecessors, order, used, depth + 1, startX, startY));
+            used[i] = false;
+        }
+        return best;
+    }
+
+    private void assertRespectsPredecessors(int[] order, int[] predecessors) {
+        int[] pos = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            pos[order[k]] = k;
+        }
+        for (int i = 0; i < order.length; i++) {
+            if (predecessors[i] >= 0) {
+                assertTrue(pos[predecessors[i]] < pos[i]);
+            }
+        }
+    }
+}